@@ -0,0 +1,4 @@
+#!/bin/bash
+# runs once when the data directory is created, lets the db-replica service stream the WAL
+set -e
+echo "host replication all all scram-sha-256" >> "$PGDATA/pg_hba.conf"
@@ -0,0 +1,12 @@
+#!/bin/bash
+# clones the primary on first start and then runs as a hot standby following it
+set -e
+if [ ! -s "$PGDATA/PG_VERSION" ]; then
+  until pg_basebackup -h db -D "$PGDATA" -R -X stream -c fast; do
+    echo "waiting for the primary"
+    sleep 2
+  done
+fi
+chown -R postgres:postgres "$PGDATA"
+chmod 0700 "$PGDATA"
+exec gosu postgres postgres
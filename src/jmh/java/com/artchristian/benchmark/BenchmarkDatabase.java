@@ -0,0 +1,106 @@
+package com.artchristian.benchmark;
+
+import com.artchristian.Main;
+import org.flywaydb.core.Flyway;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Postgres for the benchmarks. Set BENCHMARK_DB_URL (and BENCHMARK_DB_USERNAME / BENCHMARK_DB_PASSWORD)
+ * to run against an existing database, otherwise a Testcontainers instance is started once per fork.
+ */
+public final class BenchmarkDatabase {
+
+    public static final String SEED_EMAIL_SUFFIX = "@seed.bench";
+    public static final String INSERT_EMAIL_SUFFIX = "@insert.bench";
+
+    private static final String USERNAME = "artchristiangene";
+    private static final String PASSWORD = "password";
+
+    private static PostgreSQLContainer<?> container;
+
+    private BenchmarkDatabase() {
+    }
+
+    public static ConfigurableApplicationContext start(WebApplicationType webApplicationType, String... properties) {
+        SpringApplication application = new SpringApplicationBuilder(Main.class)
+                .web(webApplicationType)
+                .build();
+        // as arguments, default properties would lose to application.yml
+        List<String> arguments = new ArrayList<>(List.of(
+                "spring.datasource.url=" + url(),
+                "spring.datasource.username=" + username(),
+                "spring.datasource.password=" + password(),
+                "spring.jpa.show-sql=false",
+                "spring.main.banner-mode=off",
+                "server.port=0",
+                "logging.level.root=warn"
+        ));
+        arguments.addAll(List.of(properties));
+        ConfigurableApplicationContext context =
+                application.run(arguments.stream().map(argument -> "--" + argument).toArray(String[]::new));
+        // a benchmark measured with an override silently lost measures the wrong thing
+        for (String argument : arguments) {
+            String name = argument.substring(0, argument.indexOf('='));
+            String value = argument.substring(argument.indexOf('=') + 1);
+            String actual = context.getEnvironment().getProperty(name);
+            if (!value.equals(actual)) {
+                context.close();
+                throw new IllegalStateException(
+                        "%s=%s did not take effect, the context has %s".formatted(name, value, actual));
+            }
+        }
+        return context;
+    }
+
+    /**
+     * Runs a statement against the migrated database outside any context, for schema state that has to be
+     * in place before Hibernate reads it at startup.
+     */
+    public static void execute(String sql) {
+        Flyway.configure().dataSource(url(), username(), password()).load().migrate();
+        try (Connection connection = DriverManager.getConnection(url(), username(), password());
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static synchronized PostgreSQLContainer<?> container() {
+        if (container == null) {
+            container = new PostgreSQLContainer<>("postgres:14.1")
+                    .withDatabaseName("artchristiangene-benchmark")
+                    .withUsername(USERNAME)
+                    .withPassword(PASSWORD);
+            container.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(container::stop));
+        }
+        return container;
+    }
+
+    private static String url() {
+        String url = System.getenv("BENCHMARK_DB_URL");
+        return url != null ? url : container().getJdbcUrl();
+    }
+
+    private static String username() {
+        String username = System.getenv("BENCHMARK_DB_USERNAME");
+        return username != null ? username : USERNAME;
+    }
+
+    private static String password() {
+        String password = System.getenv("BENCHMARK_DB_PASSWORD");
+        return password != null ? password : PASSWORD;
+    }
+}
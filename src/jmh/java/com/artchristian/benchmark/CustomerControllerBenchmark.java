@@ -0,0 +1,134 @@
+package com.artchristian.benchmark;
+
+import com.artchristian.customer.Customer;
+import com.artchristian.customer.CustomerDao;
+import com.artchristian.customer.CustomerRegistrationRequest;
+import com.artchristian.customer.CustomerUpdateRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.artchristian.benchmark.BenchmarkDatabase.INSERT_EMAIL_SUFFIX;
+import static com.artchristian.benchmark.BenchmarkDatabase.SEED_EMAIL_SUFFIX;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+
+/**
+ * End-to-end calls through the full application context (service, cache and the configured DAO)
+ * without the network hop, using MockMvc.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerControllerBenchmark {
+
+    private static final String CUSTOMER_URI = "/api/v1/customers";
+
+    @Param({"1000"})
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+    private MockMvc mockMvc;
+    private ObjectMapper objectMapper;
+    private JdbcTemplate jdbcTemplate;
+    private final List<Long> ids = new ArrayList<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkDatabase.start(WebApplicationType.SERVLET);
+        mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).build();
+        objectMapper = context.getBean(ObjectMapper.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        jdbcTemplate.update("DELETE FROM customer WHERE email LIKE ?", "%.bench");
+
+        List<Customer> seed = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            seed.add(new Customer("Seed " + i, "customer" + i + SEED_EMAIL_SUFFIX, 18 + i % 60));
+        }
+        context.getBean("jdbc", CustomerDao.class).insertCustomers(seed);
+        ids.addAll(jdbcTemplate.queryForList(
+                "SELECT id FROM customer WHERE email LIKE ?", Long.class, "%" + SEED_EMAIL_SUFFIX));
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteRegistered() {
+        jdbcTemplate.update("DELETE FROM customer WHERE email LIKE ?", "%" + INSERT_EMAIL_SUFFIX);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        jdbcTemplate.update("DELETE FROM customer WHERE email LIKE ?", "%.bench");
+        context.close();
+    }
+
+    @Benchmark
+    public MvcResult getCustomer() throws Exception {
+        return mockMvc.perform(get(CUSTOMER_URI + "/{id}", randomId())).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult getCustomersPage() throws Exception {
+        return mockMvc.perform(get(CUSTOMER_URI)
+                .param("after", String.valueOf(randomId()))
+                .param("limit", "100")).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult getCustomers() throws Exception {
+        MvcResult started = mockMvc.perform(get(CUSTOMER_URI)).andReturn();
+        return mockMvc.perform(asyncDispatch(started)).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult registerCustomer() throws Exception {
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest(
+                "Insert", "customer" + sequence.incrementAndGet() + INSERT_EMAIL_SUFFIX, 30);
+        return mockMvc.perform(post(CUSTOMER_URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsBytes(request))).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult updateCustomer() throws Exception {
+        CustomerUpdateRequest request = new CustomerUpdateRequest(
+                "Updated " + sequence.incrementAndGet(), null, null);
+        return mockMvc.perform(put(CUSTOMER_URI + "/{id}", randomId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsBytes(request))).andReturn();
+    }
+
+    private Long randomId() {
+        return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+}
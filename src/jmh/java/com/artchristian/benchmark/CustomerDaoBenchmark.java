@@ -0,0 +1,172 @@
+package com.artchristian.benchmark;
+
+import com.artchristian.customer.Customer;
+import com.artchristian.customer.CustomerDao;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.artchristian.benchmark.BenchmarkDatabase.INSERT_EMAIL_SUFFIX;
+import static com.artchristian.benchmark.BenchmarkDatabase.SEED_EMAIL_SUFFIX;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerDaoBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+    private static final int BATCH_SIZE = 100;
+    private static final int LOOKUP_SIZE = 50;
+
+    @Param({"jdbc", "jpa", "list"})
+    public String dao;
+
+    @Param({"1000"})
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+    private CustomerDao customerDao;
+    private JdbcTemplate jdbcTemplate;
+    private final List<Long> ids = new ArrayList<>();
+    private final List<String> emails = new ArrayList<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkDatabase.start(WebApplicationType.NONE, "customer.cache.enabled=false");
+        customerDao = context.getBean(dao, CustomerDao.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        deleteBenchmarkRows();
+
+        List<Customer> seed = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            seed.add(new Customer("Seed " + i, "customer" + i + SEED_EMAIL_SUFFIX, 18 + i % 60));
+        }
+        customerDao.insertCustomers(seed);
+        customerDao.streamAllCustomers(customer -> {
+            if (customer.getEmail().endsWith(SEED_EMAIL_SUFFIX)) {
+                ids.add(customer.getId());
+                emails.add(customer.getEmail());
+            }
+        });
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteInserted() {
+        if ("list".equals(dao)) {
+            List<Long> inserted = new ArrayList<>();
+            customerDao.streamAllCustomers(customer -> {
+                if (customer.getEmail().endsWith(INSERT_EMAIL_SUFFIX)) {
+                    inserted.add(customer.getId());
+                }
+            });
+            customerDao.deleteCustomersByIds(inserted);
+        } else {
+            jdbcTemplate.update("DELETE FROM customer WHERE email LIKE ?", "%" + INSERT_EMAIL_SUFFIX);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        deleteBenchmarkRows();
+        context.close();
+    }
+
+    @Benchmark
+    public List<Customer> selectAllCustomers() {
+        return customerDao.selectAllCustomers();
+    }
+
+    @Benchmark
+    public List<Customer> selectCustomersAfterId() {
+        return customerDao.selectCustomersAfterId(randomId(), PAGE_SIZE);
+    }
+
+    @Benchmark
+    public void streamAllCustomers(Blackhole blackhole) {
+        customerDao.streamAllCustomers(blackhole::consume);
+    }
+
+    @Benchmark
+    public Optional<Customer> selectCustomerById() {
+        return customerDao.selectCustomerById(randomId());
+    }
+
+    @Benchmark
+    public List<Customer> selectCustomersByIds() {
+        List<Long> batch = new ArrayList<>(LOOKUP_SIZE);
+        for (int i = 0; i < LOOKUP_SIZE; i++) {
+            batch.add(randomId());
+        }
+        return customerDao.selectCustomersByIds(batch);
+    }
+
+    @Benchmark
+    public boolean existsPersonWithEmail() {
+        return customerDao.existsPersonWithEmail(emails.get(ThreadLocalRandom.current().nextInt(emails.size())));
+    }
+
+    @Benchmark
+    public boolean existsPersonWithID() {
+        return customerDao.existsPersonWithID(randomId());
+    }
+
+    @Benchmark
+    public void updateCustomer() {
+        Customer changes = new Customer();
+        changes.setId(randomId());
+        changes.setAge(ThreadLocalRandom.current().nextInt(18, 100));
+        customerDao.updateCustomer(changes);
+    }
+
+    @Benchmark
+    public void insertAndDeleteCustomer() {
+        Optional<Long> id = customerDao.insertCustomer(newCustomer());
+        id.ifPresent(customerDao::deleteCustomer);
+    }
+
+    @Benchmark
+    public int[] insertCustomers() {
+        List<Customer> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(newCustomer());
+        }
+        return customerDao.insertCustomers(batch);
+    }
+
+    private Long randomId() {
+        return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+
+    private Customer newCustomer() {
+        return new Customer("Insert", "customer" + sequence.incrementAndGet() + INSERT_EMAIL_SUFFIX, 30);
+    }
+
+    private void deleteBenchmarkRows() {
+        jdbcTemplate.update("DELETE FROM customer WHERE email LIKE ?", "%.bench");
+    }
+}
@@ -0,0 +1,177 @@
+package com.artchristian.benchmark;
+
+import com.artchristian.customer.Customer;
+import com.artchristian.customer.CustomerDao;
+import com.artchristian.customer.CustomerFileDataAccessService;
+import com.artchristian.customer.CustomerFileStore;
+import com.artchristian.customer.CustomerFileStoreProperties;
+import com.artchristian.customer.CustomerImportProperties;
+import com.artchristian.customer.CustomerJDBCDataAccessService;
+import com.artchristian.customer.CustomerRowMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.artchristian.benchmark.BenchmarkDatabase.INSERT_EMAIL_SUFFIX;
+import static com.artchristian.benchmark.BenchmarkDatabase.SEED_EMAIL_SUFFIX;
+
+/**
+ * The file DAO against the jdbc one. The inserts are durable in both: the file store syncs the segment on
+ * every write, Postgres the WAL on every commit. open times how long a fresh process needs before it serves
+ * its first read with rows customers stored, which for the file DAO is the segment replay and for the jdbc
+ * DAO a new connection pool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerFileStoreBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"jdbc", "file"})
+    public String dao;
+
+    @Param({"100000"})
+    public int rows;
+
+    private Path directory;
+    private ConfigurableApplicationContext context;
+    private CustomerDao customerDao;
+    private JdbcTemplate jdbcTemplate;
+    private Long firstId;
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("customer-file-store");
+        context = BenchmarkDatabase.start(
+                WebApplicationType.NONE,
+                "customer.cache.enabled=false",
+                "customer.file-store.enabled=true",
+                "customer.file-store.directory=" + directory.resolve("writes"),
+                "customer.file-store.compaction-interval=0s");
+        customerDao = context.getBean(dao, CustomerDao.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        deleteBenchmarkRows();
+
+        // what open has to read back, a tenth of it updated and a tenth deleted
+        CustomerFileStore recoveryStore = "file".equals(dao) ? new CustomerFileStore(recoveryProperties()) : null;
+        CustomerDao seedDao = recoveryStore == null ? customerDao : new CustomerFileDataAccessService(recoveryStore);
+        List<Customer> seed = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            seed.add(new Customer("Seed " + i, "customer" + i + SEED_EMAIL_SUFFIX, 18 + i % 60));
+        }
+        for (int from = 0; from < rows; from += 1000) {
+            seedDao.insertCustomers(seed.subList(from, Math.min(from + 1000, rows)));
+        }
+        List<Long> ids = new ArrayList<>(rows);
+        seedDao.streamAllCustomers(customer -> {
+            if (customer.getEmail().endsWith(SEED_EMAIL_SUFFIX)) {
+                ids.add(customer.getId());
+            }
+        });
+        for (int i = 0; i < ids.size() / 10; i++) {
+            seedDao.updateCustomer(new Customer(ids.get(i), null, null, 99));
+        }
+        seedDao.deleteCustomersByIds(ids.subList(ids.size() - ids.size() / 10, ids.size()));
+        firstId = ids.get(0);
+        if (recoveryStore != null) {
+            recoveryStore.close();
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteInserted() {
+        if ("jdbc".equals(dao)) {
+            jdbcTemplate.update("DELETE FROM customer WHERE email LIKE ?", "%" + INSERT_EMAIL_SUFFIX);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        deleteBenchmarkRows();
+        context.close();
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public Optional<Long> insertCustomer() {
+        return customerDao.insertCustomer(newCustomer());
+    }
+
+    @Benchmark
+    public int[] insertCustomers() {
+        List<Customer> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(newCustomer());
+        }
+        return customerDao.insertCustomers(batch);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 10)
+    public Optional<Customer> open() throws IOException {
+        if ("file".equals(dao)) {
+            try (CustomerFileStore store = new CustomerFileStore(recoveryProperties())) {
+                return new CustomerFileDataAccessService(store).selectCustomerById(firstId);
+            }
+        }
+        Environment environment = context.getEnvironment();
+        try (HikariDataSource dataSource = new HikariDataSource()) {
+            dataSource.setJdbcUrl(environment.getProperty("spring.datasource.url"));
+            dataSource.setUsername(environment.getProperty("spring.datasource.username"));
+            dataSource.setPassword(environment.getProperty("spring.datasource.password"));
+            return new CustomerJDBCDataAccessService(
+                    new JdbcTemplate(dataSource),
+                    new CustomerRowMapper(),
+                    new CustomerImportProperties(1000, CustomerImportProperties.Mode.BATCH))
+                    .selectCustomerById(firstId);
+        }
+    }
+
+    private CustomerFileStoreProperties recoveryProperties() {
+        return new CustomerFileStoreProperties(true, directory.resolve("recovery").toString(),
+                DataSize.ofMegabytes(64), true, Duration.ZERO, 0.5);
+    }
+
+    private Customer newCustomer() {
+        return new Customer("Insert", "customer" + sequence.incrementAndGet() + INSERT_EMAIL_SUFFIX, 30);
+    }
+
+    private void deleteBenchmarkRows() {
+        jdbcTemplate.update("DELETE FROM customer WHERE email LIKE ?", "%.bench");
+    }
+}
@@ -0,0 +1,101 @@
+package com.artchristian.benchmark;
+
+import com.artchristian.customer.Customer;
+import com.artchristian.customer.CustomerDao;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.artchristian.benchmark.BenchmarkDatabase.INSERT_EMAIL_SUFFIX;
+
+/**
+ * Bulk inserts through the JPA DAO with and without the pooled id allocation of V4. perRow is the old
+ * setup: a sequence stepping by one, allocationSize 1 and so a nextval round trip for every row, and no
+ * JDBC batching. pooled is the current one: blocks of 50 ids from the JPA sequence and inserts sent
+ * in batches of 50.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerJpaInsertBenchmark {
+
+    @Param({"perRow", "pooled"})
+    public String idAllocation;
+
+    @Param({"1000"})
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+    private CustomerDao customerDao;
+    private JdbcTemplate jdbcTemplate;
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (idAllocation.equals("perRow")) {
+            // with the fix strategy Hibernate takes its allocation size from the sequence, so the entity's 50
+            // follows the increment back to 1
+            BenchmarkDatabase.execute("ALTER SEQUENCE customer_jpa_id_seq INCREMENT BY 1");
+            context = BenchmarkDatabase.start(
+                    WebApplicationType.NONE,
+                    "customer.cache.enabled=false",
+                    "customer.change-listener.enabled=false",
+                    "spring.jpa.properties.hibernate.id.sequence.increment_size_mismatch_strategy=fix",
+                    "spring.jpa.properties.hibernate.jdbc.batch_size=1"
+            );
+        } else {
+            context = BenchmarkDatabase.start(
+                    WebApplicationType.NONE,
+                    "customer.cache.enabled=false",
+                    "customer.change-listener.enabled=false",
+                    "spring.jpa.properties.hibernate.jdbc.batch_size=50"
+            );
+        }
+        customerDao = context.getBean("jpa", CustomerDao.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        deleteInserted();
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteInserted() {
+        jdbcTemplate.update("DELETE FROM customer WHERE email LIKE ?", "%" + INSERT_EMAIL_SUFFIX);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        deleteInserted();
+        context.close();
+        BenchmarkDatabase.execute("ALTER SEQUENCE customer_jpa_id_seq INCREMENT BY 50");
+    }
+
+    @Benchmark
+    public int[] insertCustomers() {
+        List<Customer> batch = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            long n = sequence.incrementAndGet();
+            batch.add(new Customer("Insert " + n, "insert" + n + INSERT_EMAIL_SUFFIX, 18 + (int) (n % 60)));
+        }
+        return customerDao.insertCustomers(batch);
+    }
+}
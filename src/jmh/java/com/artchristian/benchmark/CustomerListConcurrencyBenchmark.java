@@ -0,0 +1,69 @@
+package com.artchristian.benchmark;
+
+import com.artchristian.customer.Customer;
+import com.artchristian.customer.CustomerListDataAccessService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Readers and writers hitting the in-memory list DAO at the same time.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CustomerListConcurrencyBenchmark {
+
+    private static final int ROWS = 10_000;
+
+    private CustomerListDataAccessService customerDao;
+
+    @Setup
+    public void setUp() {
+        customerDao = new CustomerListDataAccessService();
+        List<Customer> seed = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            seed.add(new Customer("Seed " + i, "customer" + i + "@gmail.com", 18 + i % 60));
+        }
+        customerDao.insertCustomers(seed);
+    }
+
+    @Benchmark
+    @Group("readHeavy")
+    @GroupThreads(3)
+    public Optional<Customer> selectCustomerById() {
+        return customerDao.selectCustomerById(randomId());
+    }
+
+    @Benchmark
+    @Group("readHeavy")
+    @GroupThreads(1)
+    public void updateCustomer() {
+        Customer changes = new Customer();
+        changes.setId(randomId());
+        changes.setAge(ThreadLocalRandom.current().nextInt(18, 100));
+        customerDao.updateCustomer(changes);
+    }
+
+    private Long randomId() {
+        return ThreadLocalRandom.current().nextLong(1, ROWS + 3);
+    }
+}
@@ -0,0 +1,81 @@
+package com.artchristian.benchmark;
+
+import com.artchristian.customer.Customer;
+import com.artchristian.customer.CustomerListDataAccessService;
+import com.artchristian.customer.CustomerListDurabilityProperties;
+import com.artchristian.customer.CustomerWriteAheadLog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Inserts into the list DAO with its write-ahead log on, each synced before it returns. With eight threads
+ * the writes that queue up behind a sync share the next one; the mean number of records per sync is printed
+ * when the trial ends.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerListDurabilityBenchmark {
+
+    private Path directory;
+    private SimpleMeterRegistry meterRegistry;
+    private CustomerWriteAheadLog writeAheadLog;
+    private CustomerListDataAccessService customerDao;
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("customer-list-wal");
+        meterRegistry = new SimpleMeterRegistry();
+        writeAheadLog = new CustomerWriteAheadLog(new CustomerListDurabilityProperties(
+                true, directory.toString(), 1000, Duration.ofMinutes(1)), meterRegistry);
+        customerDao = new CustomerListDataAccessService(writeAheadLog);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.out.printf("%n%.1f records per sync%n",
+                meterRegistry.get("customer.list.wal.batch.size").summary().mean());
+        writeAheadLog.close();
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public Optional<Long> insertCustomer() {
+        return customerDao.insertCustomer(newCustomer());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Optional<Long> insertCustomerConcurrently() {
+        return customerDao.insertCustomer(newCustomer());
+    }
+
+    private Customer newCustomer() {
+        return new Customer("Insert", "customer" + sequence.incrementAndGet() + "@example.com", 30);
+    }
+}
@@ -0,0 +1,128 @@
+package com.artchristian.benchmark;
+
+import com.artchristian.customer.Customer;
+import com.artchristian.customer.CustomerDao;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.artchristian.benchmark.BenchmarkDatabase.SEED_EMAIL_SUFFIX;
+
+/**
+ * Many concurrent HTTP clients against the running server, comparing the platform thread pool with the
+ * virtual-threads profile. Throughput and sampled latency percentiles are both reported, and answers that
+ * are not 2xx are counted as errors, so a mode that sheds load does not look fast. The cache is off so
+ * every request waits on Postgres.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Threads(400)
+@Fork(1)
+public class CustomerLoadBenchmark {
+
+    @Param({"platform", "virtual-threads"})
+    public String threads;
+
+    @Param({"1000"})
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+    private JdbcTemplate jdbcTemplate;
+    private HttpClient httpClient;
+    private String baseUri;
+    private final List<Long> ids = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkDatabase.start(
+                WebApplicationType.SERVLET,
+                "customer.cache.enabled=false",
+                "spring.profiles.active=" + ("virtual-threads".equals(threads) ? "virtual-threads" : "default")
+        );
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        jdbcTemplate.update("DELETE FROM customer WHERE email LIKE ?", "%.bench");
+
+        List<Customer> seed = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            seed.add(new Customer("Seed " + i, "customer" + i + SEED_EMAIL_SUFFIX, 18 + i % 60));
+        }
+        context.getBean("jdbc", CustomerDao.class).insertCustomers(seed);
+        ids.addAll(jdbcTemplate.queryForList(
+                "SELECT id FROM customer WHERE email LIKE ?", Long.class, "%" + SEED_EMAIL_SUFFIX));
+
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+        baseUri = "http://localhost:" + context.getEnvironment().getProperty("local.server.port")
+                + "/api/v1/customers";
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        jdbcTemplate.update("DELETE FROM customer WHERE email LIKE ?", "%.bench");
+        context.close();
+    }
+
+    @Benchmark
+    public int getCustomer(Errors errors) throws IOException, InterruptedException {
+        return send(baseUri + "/" + randomId(), errors);
+    }
+
+    @Benchmark
+    public int getCustomersPage(Errors errors) throws IOException, InterruptedException {
+        return send(baseUri + "?limit=100&after=" + randomId(), errors);
+    }
+
+    private int send(String uri, Errors errors) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(uri)).GET().build();
+        int status = httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        if (status / 100 != 2) {
+            errors.errors++;
+        }
+        return status;
+    }
+
+    private Long randomId() {
+        return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Errors {
+
+        public long errors;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            errors = 0;
+        }
+    }
+}
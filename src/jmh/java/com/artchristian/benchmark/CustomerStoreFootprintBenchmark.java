@@ -0,0 +1,82 @@
+package com.artchristian.benchmark;
+
+import com.artchristian.customer.Customer;
+import com.artchristian.customer.CustomerDao;
+import com.artchristian.customer.CustomerListDataAccessService;
+import com.artchristian.customer.CustomerOffHeapDataAccessService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The heap list DAO against the off-heap columnar one with the same customers loaded. fullGc times a
+ * stop-the-world collection with the store resident, which is what the pauses scale with. The footprint
+ * per customer is printed once the store is loaded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-XX:+UseG1GC"})
+public class CustomerStoreFootprintBenchmark {
+
+    @Param({"list", "offheap"})
+    public String store;
+
+    @Param({"1000000"})
+    public int rows;
+
+    private CustomerDao customerDao;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        long heapBefore = usedHeap();
+        customerDao = "list".equals(store)
+                ? new CustomerListDataAccessService()
+                : new CustomerOffHeapDataAccessService();
+        for (int i = 0; i < rows; i++) {
+            customerDao.insertCustomer(new Customer(
+                    "Customer " + i, "customer" + i + "@example.com", 18 + i % 60));
+        }
+        long heapBytes = usedHeap() - heapBefore;
+        // buffer capacity, including room not filled yet
+        long offHeapBytes = customerDao instanceof CustomerOffHeapDataAccessService offHeap
+                ? offHeap.offHeapBytes()
+                : 0;
+        System.out.printf("%n%s: %d heap bytes and %d off-heap bytes per customer%n",
+                store, heapBytes / rows, offHeapBytes / rows);
+    }
+
+    @Benchmark
+    public void fullGc() {
+        System.gc();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Optional<Customer> selectCustomerById() {
+        return customerDao.selectCustomerById(ThreadLocalRandom.current().nextLong(1, rows + 1));
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
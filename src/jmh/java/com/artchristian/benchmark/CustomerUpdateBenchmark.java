@@ -0,0 +1,118 @@
+package com.artchristian.benchmark;
+
+import com.artchristian.customer.Customer;
+import com.artchristian.customer.CustomerDao;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.artchristian.benchmark.BenchmarkDatabase.SEED_EMAIL_SUFFIX;
+
+/**
+ * A PUT as the service runs it, the read of the stored row followed by the write of the changed columns.
+ * perColumn is the jdbc DAO's update before it built one statement: an autocommit UPDATE per column, so a
+ * PUT that changes name, email and age costs four round trips. single is the current DAO update, one
+ * statement for any number of columns.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerUpdateBenchmark {
+
+    @Param({"perColumn", "single"})
+    public String statements;
+
+    @Param({"1", "3"})
+    public int columns;
+
+    @Param({"1000"})
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+    private CustomerDao customerDao;
+    private JdbcTemplate jdbcTemplate;
+    private final List<Long> ids = new ArrayList<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkDatabase.start(WebApplicationType.NONE, "customer.cache.enabled=false");
+        customerDao = context.getBean("jdbc", CustomerDao.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        deleteBenchmarkRows();
+
+        List<Customer> seed = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            seed.add(new Customer("Seed " + i, "customer" + i + SEED_EMAIL_SUFFIX, 18 + i % 60));
+        }
+        customerDao.insertCustomers(seed);
+        customerDao.streamAllCustomers(customer -> {
+            if (customer.getEmail().endsWith(SEED_EMAIL_SUFFIX)) {
+                ids.add(customer.getId());
+            }
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        deleteBenchmarkRows();
+        context.close();
+    }
+
+    @Benchmark
+    public void updateCustomer() {
+        Long id = ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+        Customer stored = customerDao.selectCustomerById(id).orElseThrow();
+        long n = sequence.incrementAndGet();
+        Customer changes = new Customer();
+        changes.setId(id);
+        changes.setAge(stored.getAge() % 60 + 18 + 1);
+        if (columns == 3) {
+            changes.setName("Updated " + n);
+            changes.setEmail("updated" + n + SEED_EMAIL_SUFFIX);
+        }
+        if ("single".equals(statements)) {
+            customerDao.updateCustomer(changes);
+        } else {
+            updatePerColumn(changes);
+        }
+    }
+
+    private void updatePerColumn(Customer customer) {
+        if (customer.getName() != null) {
+            jdbcTemplate.update("UPDATE customer SET name = ? WHERE id = ?", customer.getName(), customer.getId());
+        }
+        if (customer.getEmail() != null) {
+            jdbcTemplate.update("UPDATE customer SET email = ? WHERE id = ?", customer.getEmail(), customer.getId());
+        }
+        if (customer.getAge() != null) {
+            jdbcTemplate.update("UPDATE customer SET age = ? WHERE id = ?", customer.getAge(), customer.getId());
+        }
+    }
+
+    private void deleteBenchmarkRows() {
+        jdbcTemplate.update("DELETE FROM customer WHERE email LIKE ?", "%.bench");
+    }
+}
@@ -7,12 +7,14 @@ import com.github.javafaker.Name;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import org.springframework.context.annotation.Bean;
 
 import java.util.List;
 import java.util.Random;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
 public class Main {
 	public static void main(String[] args) {
 
@@ -0,0 +1,147 @@
+package com.artchristian.customer;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class CachingCustomerDao extends ForwardingCustomerDao implements CustomerChangeHandler {
+
+    private final Cache<Long, Customer> cache;
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public CachingCustomerDao(CustomerDao delegate, Cache<Long, Customer> cache) {
+        super(delegate);
+        this.cache = cache;
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id) {
+        // callers such as CustomerService mutate the returned customer, so the cached instance is never handed out
+        Customer cached = cache.get(id, key -> ReplicaRouting.cacheFill(() -> delegate().selectCustomerById(key))
+                .map(Customer::copy)
+                .orElse(null));
+        return Optional.ofNullable(cached).map(Customer::copy);
+    }
+
+    /**
+     * Hits come from the cache, the misses are loaded with one delegate call. Unlike a single-key get the
+     * load does not hold the keys, so an update can commit and invalidate in between, before the loaded
+     * and by then stale row is put. Invalidations are counted before they remove anything, so when the
+     * count moved during the load the entries put from it are taken out again. Like every load that fills the
+     * cache it reads from the primary, never from a replica.
+     */
+    @Override
+    public List<Customer> selectCustomersByIds(List<Long> ids) {
+        Map<Long, Customer> found = new HashMap<>(cache.getAllPresent(ids));
+        List<Long> missing = ids.stream()
+                .filter(id -> !found.containsKey(id))
+                .distinct()
+                .toList();
+        if (missing.isEmpty()) {
+            return copies(ids, found);
+        }
+        long invalidationsBefore = invalidations.get();
+        List<Customer> loaded = new ArrayList<>();
+        for (Customer customer : ReplicaRouting.cacheFill(() -> delegate().selectCustomersByIds(missing))) {
+            Customer copy = customer.copy();
+            loaded.add(copy);
+            found.put(copy.getId(), copy);
+            cache.asMap().putIfAbsent(copy.getId(), copy);
+        }
+        if (invalidations.get() != invalidationsBefore) {
+            for (Customer customer : loaded) {
+                cache.asMap().remove(customer.getId(), customer);
+            }
+        }
+        return copies(ids, found);
+    }
+
+    @Override
+    public boolean existsPersonWithID(Long id) {
+        return cache.getIfPresent(id) != null || super.existsPersonWithID(id);
+    }
+
+    @Override
+    public boolean deleteCustomer(Long id) {
+        try {
+            return super.deleteCustomer(id);
+        } finally {
+            invalidate(id);
+        }
+    }
+
+    @Override
+    public List<Long> deleteCustomersByIds(List<Long> ids) {
+        try {
+            return super.deleteCustomersByIds(ids);
+        } finally {
+            invalidateAll(ids);
+        }
+    }
+
+    @Override
+    public Optional<Long> insertCustomer(Customer customer) {
+        Optional<Long> id = super.insertCustomer(customer);
+        id.ifPresent(this::invalidate);
+        return id;
+    }
+
+    @Override
+    public void updateCustomer(Customer customer) {
+        try {
+            super.updateCustomer(customer);
+        } finally {
+            invalidate(customer.getId());
+        }
+    }
+
+    public void invalidateAll() {
+        invalidations.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    @Override
+    public void customersChanged(Collection<Long> ids) {
+        invalidateAll(ids);
+    }
+
+    @Override
+    public void allCustomersChanged() {
+        invalidateAll();
+    }
+
+    // in the order asked for, as getAll returned them
+    private static List<Customer> copies(List<Long> ids, Map<Long, Customer> customers) {
+        return ids.stream()
+                .distinct()
+                .map(customers::get)
+                .filter(Objects::nonNull)
+                .map(Customer::copy)
+                .toList();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    // counted before the entries go, see selectCustomersByIds
+    private void invalidate(Long id) {
+        if (id != null) {
+            invalidations.incrementAndGet();
+            cache.invalidate(id);
+        }
+    }
+
+    private void invalidateAll(Collection<Long> ids) {
+        invalidations.incrementAndGet();
+        cache.invalidateAll(ids);
+    }
+}
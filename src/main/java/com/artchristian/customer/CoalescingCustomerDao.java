@@ -0,0 +1,212 @@
+package com.artchristian.customer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Collects concurrent selectCustomerById calls into one selectCustomersByIds. The first caller of a batch
+ * waits up to the window (or until the batch is full) and then runs the query for everyone, so no extra
+ * thread is involved. Callers asking for an id that is already being loaded share that load.
+ */
+public class CoalescingCustomerDao extends ForwardingCustomerDao {
+
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition batchFull = lock.newCondition();
+    private final Map<Long, CompletableFuture<Optional<Customer>>> inFlight = new ConcurrentHashMap<>();
+    private final DistributionSummary batchSize;
+    private final Timer batchWait;
+    private final Counter joined;
+    private Batch open;
+
+    public CoalescingCustomerDao(CustomerDao delegate,
+                                 Duration window,
+                                 int maxBatchSize,
+                                 MeterRegistry meterRegistry,
+                                 String dao) {
+        super(delegate);
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        this.batchSize = DistributionSummary.builder("customer.coalescing.batch.size")
+                .description("ids loaded per coalesced query")
+                .tag("dao", dao)
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.batchWait = Timer.builder("customer.coalescing.wait")
+                .description("time a lookup waited for its batch to be dispatched")
+                .tag("dao", dao)
+                .publishPercentiles(0.5, 0.99, 0.999)
+                .register(meterRegistry);
+        this.joined = Counter.builder("customer.coalescing.joined")
+                .description("lookups served by a load already in flight for the same id")
+                .tag("dao", dao)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id) {
+        if (id == null) {
+            return super.selectCustomerById(id);
+        }
+        CompletableFuture<Optional<Customer>> future;
+        Batch led = null;
+        Batch full = null;
+        lock.lock();
+        try {
+            future = inFlight.get(id);
+            if (future != null) {
+                joined.increment();
+            } else {
+                future = new CompletableFuture<>();
+                inFlight.put(id, future);
+                if (open == null) {
+                    open = new Batch();
+                    led = open;
+                }
+                open.add(id, future);
+                if (open.size() >= maxBatchSize) {
+                    full = open;
+                    open = null;
+                    batchFull.signalAll();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (full != null) {
+            dispatch(full);
+        } else if (led != null) {
+            Batch batch = awaitWindow(led);
+            if (batch != null) {
+                dispatch(batch);
+            }
+        }
+        // every waiter gets its own instance, callers may mutate it
+        return await(future).map(Customer::copy);
+    }
+
+    @Override
+    public boolean deleteCustomer(Long id) {
+        try {
+            return super.deleteCustomer(id);
+        } finally {
+            forget(id);
+        }
+    }
+
+    @Override
+    public List<Long> deleteCustomersByIds(List<Long> ids) {
+        try {
+            return super.deleteCustomersByIds(ids);
+        } finally {
+            ids.forEach(this::forget);
+        }
+    }
+
+    @Override
+    public void updateCustomer(Customer customer) {
+        try {
+            super.updateCustomer(customer);
+        } finally {
+            forget(customer.getId());
+        }
+    }
+
+    private Batch awaitWindow(Batch batch) {
+        lock.lock();
+        try {
+            long remaining = windowNanos;
+            while (open == batch && remaining > 0) {
+                try {
+                    remaining = batchFull.awaitNanos(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            if (open != batch) {
+                // filled up and dispatched by another caller
+                return null;
+            }
+            open = null;
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void dispatch(Batch batch) {
+        long dispatchedAt = System.nanoTime();
+        batchSize.record(batch.size());
+        for (long enqueuedAt : batch.enqueuedAt.values()) {
+            batchWait.record(dispatchedAt - enqueuedAt, TimeUnit.NANOSECONDS);
+        }
+
+        Map<Long, Customer> found = new HashMap<>();
+        RuntimeException failure = null;
+        try {
+            for (Customer customer : delegate().selectCustomersByIds(List.copyOf(batch.futures.keySet()))) {
+                found.put(customer.getId(), customer);
+            }
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+
+        for (Map.Entry<Long, CompletableFuture<Optional<Customer>>> entry : batch.futures.entrySet()) {
+            inFlight.remove(entry.getKey(), entry.getValue());
+            if (failure != null) {
+                entry.getValue().completeExceptionally(failure);
+            } else {
+                entry.getValue().complete(Optional.ofNullable(found.get(entry.getKey())));
+            }
+        }
+    }
+
+    private void forget(Long id) {
+        if (id != null) {
+            inFlight.remove(id);
+        }
+    }
+
+    private static Optional<Customer> await(CompletableFuture<Optional<Customer>> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static final class Batch {
+        private final Map<Long, CompletableFuture<Optional<Customer>>> futures = new LinkedHashMap<>();
+        private final Map<Long, Long> enqueuedAt = new HashMap<>();
+
+        void add(Long id, CompletableFuture<Optional<Customer>> future) {
+            futures.put(id, future);
+            enqueuedAt.put(id, System.nanoTime());
+        }
+
+        int size() {
+            return futures.size();
+        }
+    }
+}
@@ -1,10 +1,17 @@
 package com.artchristian.customer;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.util.Objects;
 
 @Entity
+@DynamicUpdate
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Customer.CACHE_REGION)
 @Table(
         name = "customer",
         uniqueConstraints = {
@@ -16,20 +23,25 @@ import java.util.Objects;
 )
 public class Customer {
 
+    static final String CACHE_REGION = "customer";
+    static final String QUERY_CACHE_REGION = "customer-query";
+
+    // matches the increment of the JPA-only sequence from V4, Hibernate hands out the ids of each block without a
+    // round trip; inserts through the other DAOs take single ids from the column default
     @Id
     @SequenceGenerator(
-            name = "customer_id_seq",
-            sequenceName = "customer_id_seq",
-            allocationSize = 1
+            name = "customer_jpa_id_seq",
+            sequenceName = "customer_jpa_id_seq",
+            allocationSize = 50
     )
     @GeneratedValue(
             strategy = GenerationType.SEQUENCE,
-            generator = "customer_id_seq"
+            generator = "customer_jpa_id_seq"
     )
     @Column(
             nullable = false
     )
-    private Integer id;
+    private Long id;
     @Column(
             nullable = false
     )
@@ -42,14 +54,26 @@ public class Customer {
             nullable = false
     )
     private Integer age;
+    // exposed through the ETag header rather than the body
+    @Version
+    @Column(
+            nullable = false
+    )
+    @JsonIgnore
+    private Long version;
 
-    public Customer(Integer id, String name, String email, Integer age) {
+    public Customer(Long id, String name, String email, Integer age) {
         this.id = id;
         this.name = name;
         this.email = email;
         this.age = age;
     }
 
+    public Customer(Long id, String name, String email, Integer age, Long version) {
+        this(id, name, email, age);
+        this.version = version;
+    }
+
     public Customer(String name, String email, Integer age) {
         this.id = id;
         this.name = name;
@@ -60,11 +84,11 @@ public class Customer {
     public Customer() {
     }
 
-    public Integer getId() {
+    public Long getId() {
         return id;
     }
 
-    public void setId(Integer id) {
+    public void setId(Long id) {
         this.id = id;
     }
 
@@ -92,6 +116,18 @@ public class Customer {
         this.age = age;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Customer copy() {
+        return new Customer(id, name, email, age, version);
+    }
+
     @Override
     public String toString() {
         return "Customer{" +
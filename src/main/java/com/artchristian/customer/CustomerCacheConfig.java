@@ -0,0 +1,83 @@
+package com.artchristian.customer;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Puts a CachingCustomerDao in front of the jdbc and jpa DAOs; the in-memory ones answer from their own
+ * indexes at least as fast. Writes that do not go through the cache, from other nodes, the reactive DAO or
+ * plain SQL, are only evicted by CustomerChangeListener, so the listener has to be enabled too.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "customer.cache", name = "enabled", havingValue = "true")
+public class CustomerCacheConfig {
+
+    @Bean
+    static CachingCustomerDaoPostProcessor cachingCustomerDaoPostProcessor(
+            Environment environment,
+            ObjectProvider<MeterRegistry> meterRegistry) {
+        Binder binder = Binder.get(environment);
+        CustomerCacheProperties properties = binder.bindOrCreate("customer.cache", CustomerCacheProperties.class);
+        if (!binder.bindOrCreate("customer.change-listener", CustomerChangeProperties.class).enabled()) {
+            throw new IllegalStateException(
+                    "customer.cache.enabled needs customer.change-listener.enabled to evict other writers' changes");
+        }
+        return new CachingCustomerDaoPostProcessor(properties, meterRegistry);
+    }
+
+    public static class CachingCustomerDaoPostProcessor implements BeanPostProcessor, Ordered {
+
+        private static final Set<String> CACHED = Set.of("jdbc", "jpa");
+
+        private final CustomerCacheProperties properties;
+        private final ObjectProvider<MeterRegistry> meterRegistry;
+        private final Map<String, CachingCustomerDao> caches = new ConcurrentHashMap<>();
+
+        CachingCustomerDaoPostProcessor(CustomerCacheProperties properties,
+                                        ObjectProvider<MeterRegistry> meterRegistry) {
+            this.properties = properties;
+            this.meterRegistry = meterRegistry;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (!(bean instanceof CustomerDao customerDao) || !CACHED.contains(beanName)) {
+                return bean;
+            }
+            Cache<Long, Customer> cache = Caffeine.newBuilder()
+                    .maximumSize(properties.maximumSize())
+                    .expireAfterWrite(properties.expireAfterWrite())
+                    .recordStats()
+                    .build();
+            meterRegistry.ifAvailable(registry ->
+                    CaffeineCacheMetrics.monitor(registry, cache, "customer." + beanName));
+            CachingCustomerDao cachingCustomerDao = new CachingCustomerDao(customerDao, cache);
+            caches.put(beanName, cachingCustomerDao);
+            return cachingCustomerDao;
+        }
+
+        public Map<String, CachingCustomerDao> getCaches() {
+            return Collections.unmodifiableMap(caches);
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.LOWEST_PRECEDENCE;
+        }
+    }
+}
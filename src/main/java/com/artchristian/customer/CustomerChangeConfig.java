@@ -0,0 +1,78 @@
+package com.artchristian.customer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.postgresql.Driver;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Invalidates the CachingCustomerDao caches and the Hibernate second-level cache, and refreshes a memory
+ * replica, on every node when any node writes a customer. The listener connects straight to
+ * spring.datasource, which is the primary even when reads go to replicas, and keeps its connection out of
+ * the pools since it never gives it back. Listening nodes also prune the log.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "customer.change-listener", name = "enabled", havingValue = "true")
+public class CustomerChangeConfig {
+
+    @Bean
+    CustomerChangeLogPruner customerChangeLogPruner(Environment environment, JdbcTemplate jdbcTemplate) {
+        CustomerChangeProperties properties = Binder.get(environment)
+                .bindOrCreate("customer.change-listener", CustomerChangeProperties.class);
+        return new CustomerChangeLogPruner(jdbcTemplate, properties.retention(), properties.pruneInterval());
+    }
+
+    @Bean
+    CustomerChangeListener customerChangeListener(Environment environment,
+                                                  DataSourceProperties dataSourceProperties,
+                                                  List<CustomerDao> customerDaos,
+                                                  ObjectProvider<EntityManagerFactory> entityManagerFactory,
+                                                  ObjectProvider<MeterRegistry> meterRegistry) {
+        CustomerChangeProperties properties = Binder.get(environment)
+                .bindOrCreate("customer.change-listener", CustomerChangeProperties.class);
+
+        List<CustomerChangeHandler> handlers = new ArrayList<>();
+        for (CustomerDao customerDao : customerDaos) {
+            handlers.addAll(handlersOf(customerDao));
+        }
+        entityManagerFactory.ifAvailable(factory -> handlers.add(new CustomerJpaCacheChangeHandler(factory)));
+
+        Properties connectionProperties = new Properties();
+        connectionProperties.setProperty("ApplicationName", "customer-change-listener");
+        SimpleDriverDataSource dataSource = new SimpleDriverDataSource();
+        dataSource.setDriver(new Driver());
+        dataSource.setUrl(dataSourceProperties.determineUrl());
+        dataSource.setUsername(dataSourceProperties.determineUsername());
+        dataSource.setPassword(dataSourceProperties.determinePassword());
+        dataSource.setConnectionProperties(connectionProperties);
+
+        return new CustomerChangeListener(dataSource, handlers, properties, Clock.systemUTC(),
+                meterRegistry.getObject());
+    }
+
+    // innermost first, so a cache is not refilled from a layer below it that has yet to hear of the change
+    private static List<CustomerChangeHandler> handlersOf(CustomerDao customerDao) {
+        List<CustomerChangeHandler> handlers = new ArrayList<>();
+        CustomerDao layer = customerDao;
+        while (layer != null) {
+            if (layer instanceof CustomerChangeHandler handler) {
+                handlers.add(0, handler);
+            }
+            layer = layer instanceof ForwardingCustomerDao forwarding ? forwarding.delegate() : null;
+        }
+        return handlers;
+    }
+}
@@ -0,0 +1,14 @@
+package com.artchristian.customer;
+
+import java.util.Collection;
+
+/**
+ * Receives changes to the customer table made by any node, as delivered by CustomerChangeListener.
+ */
+public interface CustomerChangeHandler {
+
+    void customersChanged(Collection<Long> ids);
+
+    // called when changes may have been missed, for example after a long disconnect
+    void allCustomersChanged();
+}
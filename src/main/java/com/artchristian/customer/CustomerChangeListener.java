@@ -0,0 +1,307 @@
+package com.artchristian.customer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the local caches in step with writes made by every node. The V5 triggers log the customer ids each
+ * statement changed as one customer_change row and announce its seq on the customer_change channel. This
+ * listener holds a dedicated connection on the primary, gathers notifications for a short window, reads
+ * their ids from the log in one query and hands them to the handlers in batches. A TRUNCATE is logged
+ * with no ids and treated as a change to all customers.
+ * <p>
+ * The triggers only log while customer_change_setting is enabled, which the listener does when it connects.
+ * Nothing turns it off again, since other nodes may be listening. CustomerChangeLogPruner trims the log.
+ * <p>
+ * Notifications sent while the connection is down are lost, so every (re)connect resyncs from the log
+ * after the highest seq seen. Seqs are taken when a statement runs but become visible at commit, out of
+ * order, which is why the replay starts resync-overlap seqs early. When nothing has been seen yet, or the
+ * listener was away for longer than the log is kept, all customers are treated as changed.
+ */
+public class CustomerChangeListener implements SmartLifecycle {
+
+    static final String CHANNEL = "customer_change";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerChangeListener.class);
+    private static final long NONE = -1;
+    // a row per logged id, and one with a null id for a TRUNCATE
+    private static final String LOGGED =
+            "SELECT seq, id FROM customer_change LEFT JOIN LATERAL unnest(customer_ids) AS changed(id) ON TRUE ";
+
+    private final DataSource dataSource;
+    private final List<CustomerChangeHandler> handlers;
+    private final CustomerChangeProperties properties;
+    private final Clock clock;
+    private final Counter notifications;
+    private final DistributionSummary batchSize;
+    private final Counter replays;
+    private final Counter fullResyncs;
+
+    private volatile boolean running;
+    private volatile boolean connected;
+    private Thread thread;
+    // only touched by the listener thread
+    private long watermark = NONE;
+    private Instant caughtUpAt;
+
+    public CustomerChangeListener(DataSource dataSource,
+                                  List<CustomerChangeHandler> handlers,
+                                  CustomerChangeProperties properties,
+                                  Clock clock,
+                                  MeterRegistry meterRegistry) {
+        this.dataSource = dataSource;
+        this.handlers = List.copyOf(handlers);
+        this.properties = properties;
+        this.clock = clock;
+        this.notifications = Counter.builder("customer.change.notifications")
+                .description("customer change notifications received from the database, one per statement")
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("customer.change.batch.size")
+                .description("distinct customers handed to the change handlers at once")
+                .register(meterRegistry);
+        this.replays = resyncs(meterRegistry, "replay");
+        this.fullResyncs = resyncs(meterRegistry, "full");
+        Gauge.builder("customer.change.listener.connected", this, listener -> listener.connected ? 1 : 0)
+                .description("whether the change listener is currently listening")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        thread = new Thread(this::run, "customer-change-listener");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(properties.pollTimeout().multipliedBy(2).toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // before the web server, so no request is served from caches nobody is invalidating
+        return 0;
+    }
+
+    boolean isConnected() {
+        return connected;
+    }
+
+    private void run() {
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                enableLog(connection);
+                resync(connection);
+                connected = true;
+                LOGGER.info("Listening for customer changes from seq {}", watermark);
+                listen(connection, connection.unwrap(PGConnection.class));
+            } catch (SQLException | RuntimeException e) {
+                if (running) {
+                    LOGGER.warn("Customer change listener lost its connection, reconnecting in {}",
+                            properties.reconnectBackoff(), e);
+                }
+            } finally {
+                connected = false;
+            }
+            sleep(properties.reconnectBackoff());
+        }
+    }
+
+    private void listen(Connection connection, PGConnection pgConnection) throws SQLException {
+        int pollMillis = (int) Math.max(1, properties.pollTimeout().toMillis());
+        while (running) {
+            Instant polled = clock.instant();
+            PGNotification[] received = pgConnection.getNotifications(pollMillis);
+            if (received != null && received.length > 0) {
+                Set<Long> seqs = new LinkedHashSet<>();
+                add(received, seqs);
+                long deadline = System.nanoTime() + properties.batchWindow().toNanos();
+                while (seqs.size() < properties.maxBatchSize()) {
+                    long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    if (remainingMillis <= 0) {
+                        break;
+                    }
+                    add(pgConnection.getNotifications((int) remainingMillis), seqs);
+                }
+                try (PreparedStatement statement = connection.prepareStatement(
+                        LOGGED + "WHERE seq = ANY(?) ORDER BY seq")) {
+                    statement.setArray(1, connection.createArrayOf("bigint", seqs.toArray()));
+                    applyLogged(statement);
+                }
+            }
+            caughtUpAt = polled;
+        }
+    }
+
+    private void add(PGNotification[] received, Set<Long> seqs) {
+        if (received == null) {
+            return;
+        }
+        for (PGNotification notification : received) {
+            if (!CHANNEL.equals(notification.getName())) {
+                continue;
+            }
+            notifications.increment();
+            String payload = notification.getParameter();
+            try {
+                seqs.add(Long.parseLong(payload));
+            } catch (NumberFormatException e) {
+                LOGGER.warn("Ignoring malformed customer change notification '{}'", payload);
+            }
+        }
+    }
+
+    // a statement that found the log off before this commits leaves no row, so the full resync that follows
+    // waits until every transaction that could have run one has ended
+    private void enableLog(Connection connection) throws SQLException {
+        long horizon;
+        try (Statement statement = connection.createStatement()) {
+            if (statement.executeUpdate("UPDATE customer_change_setting SET enabled = TRUE WHERE NOT enabled") == 0) {
+                return;
+            }
+            try (ResultSet rs = statement.executeQuery("SELECT txid_snapshot_xmax(txid_current_snapshot())")) {
+                rs.next();
+                horizon = rs.getLong(1);
+            }
+        }
+        LOGGER.info("Turned the customer change log on");
+        watermark = NONE;
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT txid_snapshot_xmin(txid_current_snapshot()) >= ?")) {
+            statement.setLong(1, horizon);
+            while (running) {
+                try (ResultSet rs = statement.executeQuery()) {
+                    rs.next();
+                    if (rs.getBoolean(1)) {
+                        return;
+                    }
+                }
+                sleep(properties.batchWindow());
+            }
+        }
+    }
+
+    private void resync(Connection connection) throws SQLException {
+        boolean missedTooMuch = caughtUpAt == null
+                || Duration.between(caughtUpAt, clock.instant()).compareTo(properties.retention()) >= 0;
+        if (watermark == NONE || missedTooMuch) {
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT COALESCE(MAX(seq), 0) FROM customer_change")) {
+                rs.next();
+                watermark = rs.getLong(1);
+            }
+            applyAll();
+            fullResyncs.increment();
+            return;
+        }
+        try (PreparedStatement statement = connection.prepareStatement(
+                LOGGED + "WHERE seq > ? ORDER BY seq")) {
+            statement.setLong(1, Math.max(0, watermark - properties.resyncOverlap()));
+            applyLogged(statement);
+        }
+        replays.increment();
+    }
+
+    // one statement can change any number of customers, so its ids are handed on max-batch-size at a time
+    private void applyLogged(PreparedStatement statement) throws SQLException {
+        Set<Long> ids = new LinkedHashSet<>();
+        try (ResultSet rs = statement.executeQuery()) {
+            while (rs.next()) {
+                watermark = Math.max(watermark, rs.getLong(1));
+                long id = rs.getLong(2);
+                if (rs.wasNull()) {
+                    apply(ids);
+                    ids = new LinkedHashSet<>();
+                    applyAll();
+                    continue;
+                }
+                ids.add(id);
+                if (ids.size() >= properties.maxBatchSize()) {
+                    apply(ids);
+                    ids = new LinkedHashSet<>();
+                }
+            }
+        }
+        apply(ids);
+    }
+
+    private void apply(Set<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        batchSize.record(ids.size());
+        List<Long> changed = new ArrayList<>(ids);
+        for (CustomerChangeHandler handler : handlers) {
+            try {
+                handler.customersChanged(changed);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Customer change handler {} failed, invalidating everything it holds", handler, e);
+                handler.allCustomersChanged();
+            }
+        }
+    }
+
+    private void applyAll() {
+        for (CustomerChangeHandler handler : handlers) {
+            handler.allCustomersChanged();
+        }
+    }
+
+    private void sleep(Duration duration) {
+        if (!running) {
+            return;
+        }
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Counter resyncs(MeterRegistry meterRegistry, String kind) {
+        return Counter.builder("customer.change.resyncs")
+                .description("times the listener caught up from the change log after (re)connecting")
+                .tag("kind", kind)
+                .register(meterRegistry);
+    }
+}
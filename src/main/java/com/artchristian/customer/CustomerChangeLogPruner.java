@@ -0,0 +1,68 @@
+package com.artchristian.customer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes customer_change rows older than the retention every prune interval. Every listening node runs one,
+ * and the DELETE only goes ahead on the node that gets the advisory lock for its transaction, so the nodes do
+ * not queue on each other's row locks; the others skip that round.
+ */
+public class CustomerChangeLogPruner implements SmartLifecycle {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerChangeLogPruner.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration retention;
+    private final Duration interval;
+    private ScheduledExecutorService pruner;
+
+    public CustomerChangeLogPruner(JdbcTemplate jdbcTemplate, Duration retention, Duration interval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.retention = retention;
+        this.interval = interval;
+    }
+
+    @Override
+    public void start() {
+        pruner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "customer-change-log-prune");
+            thread.setDaemon(true);
+            return thread;
+        });
+        pruner.scheduleWithFixedDelay(this::prune, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        if (pruner != null) {
+            pruner.shutdownNow();
+            pruner = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return pruner != null;
+    }
+
+    int prune() {
+        try {
+            return jdbcTemplate.update("""
+                    WITH lock AS (SELECT pg_try_advisory_xact_lock(hashtext('customer_change_prune')) AS held)
+                    DELETE FROM customer_change
+                    WHERE (SELECT held FROM lock) AND changed_at < now() - make_interval(secs => ?)""",
+                    retention.toSeconds());
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not prune the customer change log, trying again in {}", interval, e);
+            return 0;
+        }
+    }
+}
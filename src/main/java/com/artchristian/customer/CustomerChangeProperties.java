@@ -0,0 +1,18 @@
+package com.artchristian.customer;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "customer.change-listener")
+public record CustomerChangeProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("500ms") Duration pollTimeout,
+        @DefaultValue("20ms") Duration batchWindow,
+        @DefaultValue("500") int maxBatchSize,
+        @DefaultValue("1s") Duration reconnectBackoff,
+        @DefaultValue("1000") long resyncOverlap,
+        @DefaultValue("1h") Duration retention,
+        @DefaultValue("1m") Duration pruneInterval) {
+}
@@ -0,0 +1,57 @@
+package com.artchristian.customer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+
+@Configuration
+@ConditionalOnProperty(prefix = "customer.coalescing", name = "enabled", havingValue = "true")
+public class CustomerCoalescingConfig {
+
+    @Bean
+    static CoalescingCustomerDaoPostProcessor coalescingCustomerDaoPostProcessor(
+            Environment environment,
+            ObjectProvider<MeterRegistry> meterRegistry) {
+        CustomerCoalescingProperties properties = Binder.get(environment)
+                .bindOrCreate("customer.coalescing", CustomerCoalescingProperties.class);
+        return new CoalescingCustomerDaoPostProcessor(properties, meterRegistry);
+    }
+
+    public static class CoalescingCustomerDaoPostProcessor implements BeanPostProcessor, Ordered {
+
+        private final CustomerCoalescingProperties properties;
+        private final ObjectProvider<MeterRegistry> meterRegistry;
+
+        CoalescingCustomerDaoPostProcessor(CustomerCoalescingProperties properties,
+                                           ObjectProvider<MeterRegistry> meterRegistry) {
+            this.properties = properties;
+            this.meterRegistry = meterRegistry;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (!(bean instanceof CustomerDao customerDao)) {
+                return bean;
+            }
+            return new CoalescingCustomerDao(
+                    customerDao,
+                    properties.window(),
+                    properties.maxBatchSize(),
+                    meterRegistry.getObject(),
+                    beanName
+            );
+        }
+
+        @Override
+        public int getOrder() {
+            // between the timing and the cache, so only cache misses are batched
+            return Ordered.LOWEST_PRECEDENCE - 1;
+        }
+    }
+}
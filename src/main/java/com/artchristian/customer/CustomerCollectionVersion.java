@@ -0,0 +1,15 @@
+package com.artchristian.customer;
+
+/**
+ * A value that moves on every write to the customer collection, so two reads that see the same value saw the
+ * same customers. In Postgres it is the sum of the counters the customer triggers bump, see SELECT; the in-memory
+ * stores count their own writes from a random start, so a value from before a restart does not come back.
+ */
+public record CustomerCollectionVersion(long value) {
+
+    /**
+     * Reads the 64 counter rows of V6, which every statement writing customers bumps in its own transaction,
+     * so the read costs the same however many customers there are.
+     */
+    static final String SELECT = "SELECT CAST(COALESCE(sum(version), 0) AS BIGINT) FROM customer_collection_version";
+}
@@ -1,7 +1,30 @@
 package com.artchristian.customer;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
 import java.util.List;
 
 @RestController
@@ -9,20 +32,79 @@ import java.util.List;
 public class CustomerController {
 
     private final CustomerService customerService;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter customerWriter;
+    private final ObjectWriter importResultWriter;
+    private final ObjectReader registrationReader;
+    private final CustomerImportProperties importProperties;
 
-    public CustomerController(CustomerService customerService) {
+    public CustomerController(CustomerService customerService,
+                              ObjectMapper objectMapper,
+                              CustomerImportProperties importProperties) {
         this.customerService = customerService;
+        this.objectMapper = objectMapper;
+        this.importProperties = importProperties;
+        this.customerWriter = objectMapper.writerFor(Customer.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.importResultWriter = objectMapper.writerFor(CustomerImportResult.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.registrationReader = objectMapper.readerFor(CustomerRegistrationRequest.class);
     }
 
+    // the version is read before streaming, so a concurrent write can only make the ETag older than the body,
+    // which costs the client one extra full response and never a wrong 304
     @GetMapping
-    public List<Customer> getCustomers() {
-        return customerService.getAllCustomers();
+    public ResponseEntity<StreamingResponseBody> getCustomers(WebRequest request) {
+        if (request.checkNotModified(etag(customerService.getCollectionVersion()))) {
+            return null;
+        }
+        StreamingResponseBody body = outputStream -> {
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream);
+            generator.writeStartArray();
+            customerService.streamAllCustomers(customer -> writeCustomer(generator, customer));
+            generator.writeEndArray();
+            generator.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    // either parameter asks for a page, a missing limit falls back to the default page size
+    @GetMapping(params = "limit")
+    public ResponseEntity<CustomerPage> getCustomersPage(
+            @RequestParam(value = "after", required = false) Long after,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            WebRequest request){
+        CustomerPage page = customerService.getCustomersPage(after, limit);
+        if (request.checkNotModified(etag(page))) {
+            return null;
+        }
+        return ResponseEntity.ok(page);
+    }
+
+    @GetMapping(params = {"after", "!limit"})
+    public ResponseEntity<CustomerPage> getCustomersPageAfter(
+            @RequestParam("after") Long after,
+            WebRequest request){
+        return getCustomersPage(after, null, request);
+    }
+
+    @GetMapping(params = "ids")
+    public CustomerLookup getCustomersByIds(
+            @RequestParam("ids") List<Long> ids){
+        return customerService.getCustomersByIds(ids);
     }
 
     @GetMapping("{customerId}")
-    public Customer getCustomer(
-            @PathVariable("customerId") Integer customerId){
-        return customerService.getCustomer(customerId);
+    public ResponseEntity<Customer> getCustomer(
+            @PathVariable("customerId") Long customerId,
+            WebRequest request){
+        Customer customer = customerService.getCustomer(customerId);
+        if (request.checkNotModified(etag(customer))) {
+            return null;
+        }
+        return ResponseEntity.ok(customer);
     }
 
     @PostMapping
@@ -31,15 +113,130 @@ public class CustomerController {
         customerService.addCustomer(request);
     }
 
+    @PostMapping(value = "batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<CustomerImportResult> registerCustomers(
+            @RequestBody List<CustomerRegistrationRequest> requests){
+        return customerService.addCustomers(requests);
+    }
+
+    // read, inserted and answered batch-size lines at a time, so an import of any size holds one batch; since
+    // earlier batches are in by the time a bad line is read, it is reported INVALID rather than failing the request
+    @PostMapping(value = "batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public void registerCustomersFromNdjson(InputStream body, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        BufferedReader lines = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            generator.writeStartArray();
+            List<CustomerRegistrationRequest> batch = new ArrayList<>(importProperties.batchSize());
+            int offset = 0;
+            String line;
+            while ((line = lines.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                batch.add(readRegistration(line));
+                if (batch.size() >= importProperties.batchSize()) {
+                    offset = writeImported(generator, batch, offset);
+                }
+            }
+            writeImported(generator, batch, offset);
+            generator.writeEndArray();
+        }
+    }
+
+    @DeleteMapping(params = "ids")
+    public CustomerDeletion deleteCustomers(
+            @RequestParam("ids") List<Long> ids){
+        return customerService.deleteCustomersByIds(ids);
+    }
+
     @DeleteMapping("{customerId}")
-    public void deleteCustomer(@PathVariable("customerId") Integer customerId){
+    public void deleteCustomer(@PathVariable("customerId") Long customerId){
         customerService.deleteCustomerByID(customerId);
     }
 
     @PutMapping("{customerId}")
     public  void updateCustomer(
-            @PathVariable("customerId") Integer customerId,
+            @PathVariable("customerId") Long customerId,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @RequestBody CustomerUpdateRequest customerUpdateRequest){
-        customerService.updateCustomerById(customerId, customerUpdateRequest);
+        customerService.updateCustomerById(customerId, customerUpdateRequest, ifMatchVersions(customerId, ifMatch));
+    }
+
+    private static String etag(Customer customer) {
+        return "\"%d-%d\"".formatted(customer.getId(), customer.getVersion());
+    }
+
+    private static String etag(CustomerCollectionVersion version) {
+        return "\"%d\"".formatted(version.value());
+    }
+
+    // a digest of every id and version on the page, which is all the body is made of
+    private static String etag(CustomerPage page) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer entry = ByteBuffer.allocate(Long.BYTES * 2);
+        for (Customer customer : page.customers()) {
+            digest.update(entry.clear().putLong(customer.getId()).putLong(customer.getVersion()).flip());
+        }
+        digest.update(entry.clear().putLong(page.nextCursor() == null ? 0 : page.nextCursor()).flip());
+        return "\"%s\"".formatted(HexFormat.of().formatHex(digest.digest(), 0, 16));
+    }
+
+    // null when there is nothing to check; tags of other customers and weak tags never match
+    private static List<Long> ifMatchVersions(Long customerId, String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        List<Long> versions = new ArrayList<>();
+        String prefix = "\"" + customerId + "-";
+        for (String tag : ifMatch.split(",")) {
+            String trimmed = tag.trim();
+            if (trimmed.startsWith(prefix) && trimmed.endsWith("\"") && trimmed.length() > prefix.length() + 1) {
+                try {
+                    versions.add(Long.parseLong(trimmed.substring(prefix.length(), trimmed.length() - 1)));
+                } catch (NumberFormatException e) {
+                    // not one of our tags
+                }
+            }
+        }
+        return versions;
+    }
+
+    // null stands for a line that is not a registration, which addCustomers reports INVALID
+    private CustomerRegistrationRequest readRegistration(String line) {
+        try {
+            return registrationReader.readValue(line);
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    private int writeImported(JsonGenerator generator,
+                              List<CustomerRegistrationRequest> batch,
+                              int offset) throws IOException {
+        if (batch.isEmpty()) {
+            return offset;
+        }
+        for (CustomerImportResult result : customerService.addCustomers(batch)) {
+            importResultWriter.writeValue(generator, new CustomerImportResult(
+                    offset + result.index(), result.email(), result.status()));
+        }
+        generator.flush();
+        int next = offset + batch.size();
+        batch.clear();
+        return next;
+    }
+
+    private void writeCustomer(JsonGenerator generator, Customer customer) {
+        try {
+            customerWriter.writeValue(generator, customer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 }
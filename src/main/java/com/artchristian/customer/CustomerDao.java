@@ -2,13 +2,20 @@ package com.artchristian.customer;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface CustomerDao {
     List<Customer> selectAllCustomers();
-    Optional<Customer> selectCustomerById(Integer id);
-    void deleteCustomer(Integer id);
-    void insertCustomer(Customer customer);
+    List<Customer> selectCustomersAfterId(Long afterId, int limit);
+    void streamAllCustomers(Consumer<Customer> consumer);
+    Optional<Customer> selectCustomerById(Long id);
+    List<Customer> selectCustomersByIds(List<Long> ids);
+    boolean deleteCustomer(Long id);
+    List<Long> deleteCustomersByIds(List<Long> ids);
+    Optional<Long> insertCustomer(Customer customer);
+    int[] insertCustomers(List<Customer> customers);
     boolean existsPersonWithEmail(String email);
-    boolean existsPersonWithID(Integer id);
+    boolean existsPersonWithID(Long id);
+    CustomerCollectionVersion selectCollectionVersion();
     void updateCustomer(Customer customer);
 }
@@ -0,0 +1,97 @@
+package com.artchristian.customer;
+
+import org.springframework.dao.EmptyResultDataAccessException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * The DAO over CustomerFileStore, for single-node deployments that keep customers on local disk instead of
+ * in a database. Registered as "file" by CustomerFileStoreConfig.
+ */
+public class CustomerFileDataAccessService implements CustomerDao {
+    private final CustomerFileStore customers;
+
+    public CustomerFileDataAccessService(CustomerFileStore customers) {
+        this.customers = customers;
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return customers.snapshot();
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfterId(Long afterId, int limit) {
+        return customers.afterId(afterId, limit);
+    }
+
+    @Override
+    public void streamAllCustomers(Consumer<Customer> consumer) {
+        customers.forEach(consumer);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id) {
+        return customers.get(id);
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(List<Long> ids) {
+        List<Customer> found = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            customers.get(id).ifPresent(found::add);
+        }
+        return found;
+    }
+
+    @Override
+    public boolean deleteCustomer(Long id) {
+        return customers.delete(id);
+    }
+
+    @Override
+    public List<Long> deleteCustomersByIds(List<Long> ids) {
+        List<Long> deleted = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            if (customers.delete(id)) {
+                deleted.add(id);
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    public Optional<Long> insertCustomer(Customer customer) {
+        return customers.insert(customer);
+    }
+
+    @Override
+    public int[] insertCustomers(List<Customer> customers) {
+        return this.customers.insertAll(customers);
+    }
+
+    @Override
+    public boolean existsPersonWithEmail(String email) {
+        return customers.containsEmail(email);
+    }
+
+    @Override
+    public boolean existsPersonWithID(Long id) {
+        return customers.containsId(id);
+    }
+
+    @Override
+    public CustomerCollectionVersion selectCollectionVersion() {
+        return customers.collectionVersion();
+    }
+
+    @Override
+    public void updateCustomer(Customer customer) {
+        if (!customers.update(customer)) {
+            throw new EmptyResultDataAccessException("customer [%s] is not found".formatted(customer.getId()), 1);
+        }
+    }
+}
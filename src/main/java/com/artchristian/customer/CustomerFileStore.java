@@ -0,0 +1,539 @@
+package com.artchristian.customer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
+
+/**
+ * Customers in append-only segment files under one directory, each memory-mapped at its full size. Every
+ * insert, update and delete appends a CRC-checked record to the newest segment, so the segments are their
+ * own write-ahead log and the store is whatever replaying them in order gives. That replay runs on open and
+ * rebuilds the indexes by id and email, which are all that is kept in memory; reads decode the mapped record.
+ * <p>
+ * A record replaced by a later one, and every delete record, is garbage. Once the sealed segments are mostly
+ * garbage their live records are copied to the newest segment and the sealed ones are deleted oldest first,
+ * so a delete record is never gone while the record it deletes is still on disk. Every segment starts with
+ * the next id as it was when the segment was added, and every open appends it again, so ids stay unique
+ * after compaction drops the records of the highest ones.
+ */
+public class CustomerFileStore implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerFileStore.class);
+    private static final int PAGE = 1024;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean syncOnWrite;
+    private final double compactionGarbageRatio;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<Long, CustomerLogSegment> segments = new TreeMap<>();
+    private final TreeMap<Long, Entry> entries = new TreeMap<>();
+    private final Map<String, Long> idsByEmail = new HashMap<>();
+    private final FileChannel lockFile;
+    private final Duration recoveryTime;
+    private final ScheduledExecutorService compactor;
+    private CustomerLogSegment active;
+    private long nextId = 1;
+    // moved by every write, from a random start so a count from before a restart does not come back
+    private long writes = ThreadLocalRandom.current().nextLong();
+
+    public CustomerFileStore(CustomerFileStoreProperties properties) {
+        this.directory = Path.of(properties.directory());
+        this.segmentSize = Math.toIntExact(properties.segmentSize().toBytes());
+        this.syncOnWrite = properties.syncOnWrite();
+        this.compactionGarbageRatio = properties.compactionGarbageRatio();
+        long start = System.nanoTime();
+        try {
+            Files.createDirectories(directory);
+            lockFile = FileChannel.open(directory.resolve("lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("could not open the customer store in " + directory, e);
+        }
+        try {
+            if (lockFile.tryLock() == null) {
+                throw new IllegalStateException("%s is in use by another process".formatted(directory));
+            }
+            recover();
+        } catch (IOException | RuntimeException e) {
+            try {
+                closeFiles();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e instanceof IOException io
+                    ? new UncheckedIOException("could not open the customer store in " + directory, io)
+                    : (RuntimeException) e;
+        }
+        recoveryTime = Duration.ofNanos(System.nanoTime() - start);
+        LOGGER.info("Recovered {} customers from {} segments in {}", entries.size(), segments.size(), recoveryTime);
+
+        if (properties.compactionInterval().isZero()) {
+            compactor = null;
+        } else {
+            compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "customer-file-compactor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = properties.compactionInterval().toMillis();
+            compactor.scheduleWithFixedDelay(this::compactIfMostlyGarbage, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public Duration recoveryTime() {
+        return recoveryTime;
+    }
+
+    public int segmentCount() {
+        lock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // bytes written to the segments that no live customer needs
+    public long garbageBytes() {
+        lock.readLock().lock();
+        try {
+            long garbage = 0;
+            for (CustomerLogSegment segment : segments.values()) {
+                garbage += segment.size() - segment.liveBytes();
+            }
+            return garbage;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    Optional<Customer> get(Long id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        lock.readLock().lock();
+        try {
+            Entry entry = entries.get(id);
+            return entry == null ? Optional.empty() : Optional.of(read(entry));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    boolean containsId(Long id) {
+        if (id == null) {
+            return false;
+        }
+        lock.readLock().lock();
+        try {
+            return entries.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    boolean containsEmail(String email) {
+        if (email == null) {
+            return false;
+        }
+        lock.readLock().lock();
+        try {
+            return idsByEmail.containsKey(email);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    Optional<Long> insert(Customer customer) {
+        lock.writeLock().lock();
+        try {
+            return insert(customer, syncOnWrite);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // one sync for the whole batch
+    int[] insertAll(List<Customer> customers) {
+        int[] counts = new int[customers.size()];
+        lock.writeLock().lock();
+        try {
+            CustomerLogSegment first = active;
+            int from = active.size();
+            for (int i = 0; i < customers.size(); i++) {
+                counts[i] = insert(customers.get(i), false).isPresent() ? 1 : 0;
+            }
+            if (syncOnWrite) {
+                active.force(active == first ? from : 0);
+            }
+            return counts;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    boolean update(Customer changes) {
+        if (changes.getId() == null) {
+            return false;
+        }
+        lock.writeLock().lock();
+        try {
+            Entry entry = entries.get(changes.getId());
+            if (entry == null) {
+                return false;
+            }
+            if (changes.getVersion() != null && changes.getVersion() != entry.version()) {
+                throw new OptimisticLockingFailureException(
+                        "customer [%s] is no longer at version %s".formatted(changes.getId(), changes.getVersion()));
+            }
+            if (changes.getEmail() != null && !changes.getEmail().equals(entry.email())
+                    && idsByEmail.containsKey(changes.getEmail())) {
+                throw new DuplicateKeyException("email already taken");
+            }
+            Customer merged = read(entry);
+            if (changes.getName() != null) {
+                merged.setName(changes.getName());
+            }
+            if (changes.getEmail() != null) {
+                merged.setEmail(changes.getEmail());
+            }
+            if (changes.getAge() != null) {
+                merged.setAge(changes.getAge());
+            }
+            merged.setVersion(entry.version() + 1);
+            put(merged, syncOnWrite);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    boolean delete(Long id) {
+        if (id == null) {
+            return false;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!entries.containsKey(id)) {
+                return false;
+            }
+            ByteBuffer body = CustomerLogRecord.delete(id);
+            int offset = append(segment -> segment.append(body));
+            if (syncOnWrite) {
+                active.force(offset);
+            }
+            forget(id);
+            writes++;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    CustomerCollectionVersion collectionVersion() {
+        lock.readLock().lock();
+        try {
+            return new CustomerCollectionVersion(writes);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    List<Customer> afterId(Long afterId, int limit) {
+        lock.readLock().lock();
+        try {
+            Map<Long, Entry> after = afterId == null ? entries : entries.tailMap(afterId, false);
+            List<Customer> page = new ArrayList<>(Math.min(limit, PAGE));
+            for (Entry entry : after.values()) {
+                if (page.size() == limit) {
+                    break;
+                }
+                page.add(read(entry));
+            }
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // a page at a time, so a slow consumer does not hold off writers
+    void forEach(Consumer<Customer> consumer) {
+        Long after = null;
+        List<Customer> page;
+        do {
+            page = afterId(after, PAGE);
+            page.forEach(consumer);
+            after = page.isEmpty() ? null : page.get(page.size() - 1).getId();
+        } while (page.size() == PAGE);
+    }
+
+    List<Customer> snapshot() {
+        lock.readLock().lock();
+        try {
+            List<Customer> copy = new ArrayList<>(entries.size());
+            for (Entry entry : entries.values()) {
+                copy.add(read(entry));
+            }
+            return copy;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Compacts the sealed segments once more than compaction-garbage-ratio of what they hold is garbage.
+     */
+    boolean compactIfMostlyGarbage() {
+        List<CustomerLogSegment> sealed;
+        long used = 0;
+        long live = 0;
+        lock.readLock().lock();
+        try {
+            sealed = List.copyOf(segments.headMap(active.number()).values());
+            for (CustomerLogSegment segment : sealed) {
+                used += segment.size();
+                live += segment.liveBytes();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (sealed.isEmpty() || used - live <= used * compactionGarbageRatio) {
+            return false;
+        }
+        try {
+            compact(sealed);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not compact the customer store in {}", directory, e);
+            return false;
+        }
+        LOGGER.info("Compacted {} segments holding {} bytes, {} of them live", sealed.size(), used, live);
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (compactor != null) {
+            compactor.shutdownNow();
+        }
+        lock.writeLock().lock();
+        try {
+            if (lockFile.isOpen()) {
+                active.force(0);
+                closeFiles();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // closing the channel releases the directory lock
+    private void closeFiles() throws IOException {
+        for (CustomerLogSegment segment : segments.values()) {
+            segment.close();
+        }
+        lockFile.close();
+    }
+
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            // zero-padded, so name order is segment order
+            files = listing.filter(CustomerLogSegment::isSegment).sorted().toList();
+        }
+        for (int i = 0; i < files.size(); i++) {
+            CustomerLogSegment segment = CustomerLogSegment.open(files.get(i));
+            segments.put(segment.number(), segment);
+            segment.recover(i == files.size() - 1, (offset, recordSize, record) -> {
+                if (record.type() == CustomerLogRecord.Type.NEXT_ID) {
+                    nextId = Math.max(nextId, record.id());
+                    return;
+                }
+                nextId = Math.max(nextId, record.id() + 1);
+                forget(record.id());
+                if (!record.deleted()) {
+                    index(record.id(),
+                            new Entry(segment.number(), offset, recordSize, record.email(), record.version()));
+                }
+            });
+        }
+        if (segments.isEmpty()) {
+            addSegment(1);
+        } else {
+            active = segments.lastEntry().getValue();
+            // compaction never deletes the newest segment, so it carries the next id of segments older than the marks
+            ByteBuffer body = CustomerLogRecord.nextId(nextId);
+            active.force(append(segment -> segment.append(body)));
+        }
+    }
+
+    private Optional<Long> insert(Customer customer, boolean sync) {
+        if (idsByEmail.containsKey(customer.getEmail())) {
+            return Optional.empty();
+        }
+        long id = nextId++;
+        put(new Customer(id, customer.getName(), customer.getEmail(), customer.getAge(), 0L), sync);
+        customer.setId(id);
+        return Optional.of(id);
+    }
+
+    private void put(Customer customer, boolean sync) {
+        ByteBuffer body = CustomerLogRecord.put(customer);
+        int offset = append(segment -> segment.append(body));
+        if (sync) {
+            active.force(offset);
+        }
+        forget(customer.getId());
+        index(customer.getId(), new Entry(active.number(), offset, active.size() - offset,
+                customer.getEmail(), customer.getVersion()));
+        writes++;
+    }
+
+    private int append(ToIntFunction<CustomerLogSegment> write) {
+        int offset = write.applyAsInt(active);
+        if (offset < 0) {
+            roll();
+            offset = write.applyAsInt(active);
+            if (offset < 0) {
+                throw new IllegalArgumentException(
+                        "customer record does not fit in a segment of %d bytes".formatted(segmentSize));
+            }
+        }
+        return offset;
+    }
+
+    // a sealed segment is always on disk in full, so only the newest one can end in a torn record
+    private void roll() {
+        active.force(0);
+        try {
+            addSegment(active.number() + 1);
+        } catch (IOException e) {
+            throw new DataAccessResourceFailureException("could not add a customer segment in " + directory, e);
+        }
+    }
+
+    private void addSegment(long number) throws IOException {
+        CustomerLogSegment segment = CustomerLogSegment.create(directory, number, segmentSize);
+        segments.put(number, segment);
+        active = segment;
+        segment.append(CustomerLogRecord.nextId(nextId));
+        segment.force(0);
+        syncDirectory();
+    }
+
+    // a created or deleted file is only durable once its directory entry is
+    private void syncDirectory() throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    private void index(long id, Entry entry) {
+        entries.put(id, entry);
+        idsByEmail.put(entry.email(), id);
+        segments.get(entry.segment()).retain(entry.recordSize());
+    }
+
+    private void forget(long id) {
+        Entry entry = entries.remove(id);
+        if (entry != null) {
+            idsByEmail.remove(entry.email(), id);
+            segments.get(entry.segment()).release(entry.recordSize());
+        }
+    }
+
+    private Customer read(Entry entry) {
+        return segments.get(entry.segment()).read(entry.offset()).toCustomer();
+    }
+
+    private void compact(List<CustomerLogSegment> sealed) {
+        Set<Long> numbers = new HashSet<>();
+        sealed.forEach(segment -> numbers.add(segment.number()));
+        List<Long> ids = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            entries.forEach((id, entry) -> {
+                if (numbers.contains(entry.segment())) {
+                    ids.add(id);
+                }
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // a page per lock, so writes carry on in between
+        for (int from = 0; from < ids.size(); from += PAGE) {
+            lock.writeLock().lock();
+            try {
+                for (Long id : ids.subList(from, Math.min(from + PAGE, ids.size()))) {
+                    Entry entry = entries.get(id);
+                    if (entry == null || !numbers.contains(entry.segment())) {
+                        continue;
+                    }
+                    CustomerLogSegment source = segments.get(entry.segment());
+                    int offset = append(segment -> segment.copy(source, entry.offset()));
+                    source.release(entry.recordSize());
+                    active.retain(entry.recordSize());
+                    entries.put(id, new Entry(active.number(), offset, entry.recordSize(), entry.email(),
+                            entry.version()));
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            active.force(0);
+            for (CustomerLogSegment segment : sealed) {
+                segments.remove(segment.number());
+                segment.delete();
+                // one at a time, so the oldest-first order holds after a crash as well
+                syncDirectory();
+            }
+        } catch (IOException e) {
+            throw new DataAccessResourceFailureException("could not delete a compacted customer segment", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private record Entry(long segment, int offset, int recordSize, String email, long version) {
+    }
+}
@@ -0,0 +1,48 @@
+package com.artchristian.customer;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adds the "file" DAO, which keeps customers in CustomerFileStore segments under customer.file-store.directory
+ * instead of in Postgres. The store is its own bean so it is closed on shutdown even though the DAO gets wrapped.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "customer.file-store", name = "enabled", havingValue = "true")
+public class CustomerFileStoreConfig {
+
+    @Bean
+    CustomerFileStore customerFileStore(Environment environment, ObjectProvider<MeterRegistry> meterRegistry) {
+        CustomerFileStoreProperties properties = Binder.get(environment)
+                .bindOrCreate("customer.file-store", CustomerFileStoreProperties.class);
+        CustomerFileStore store = new CustomerFileStore(properties);
+        meterRegistry.ifAvailable(registry -> {
+            Gauge.builder("customer.file.store.segments", store, CustomerFileStore::segmentCount)
+                    .description("segment files the file DAO holds")
+                    .register(registry);
+            Gauge.builder("customer.file.store.garbage", store, CustomerFileStore::garbageBytes)
+                    .description("segment bytes no live customer needs")
+                    .baseUnit("bytes")
+                    .register(registry);
+            TimeGauge.builder("customer.file.store.recovery", store, TimeUnit.MILLISECONDS,
+                            fileStore -> fileStore.recoveryTime().toMillis())
+                    .description("time the last open spent replaying the segments")
+                    .register(registry);
+        });
+        return store;
+    }
+
+    @Bean("file")
+    CustomerFileDataAccessService customerFileDataAccessService(CustomerFileStore customerFileStore) {
+        return new CustomerFileDataAccessService(customerFileStore);
+    }
+}
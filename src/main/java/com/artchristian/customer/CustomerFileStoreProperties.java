@@ -0,0 +1,17 @@
+package com.artchristian.customer;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "customer.file-store")
+public record CustomerFileStoreProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("data/customers") String directory,
+        @DefaultValue("64MB") DataSize segmentSize,
+        @DefaultValue("true") boolean syncOnWrite,
+        @DefaultValue("1m") Duration compactionInterval,
+        @DefaultValue("0.5") double compactionGarbageRatio) {
+}
@@ -0,0 +1,15 @@
+package com.artchristian.customer;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "customer.import")
+public record CustomerImportProperties(
+        @DefaultValue("1000") int batchSize,
+        @DefaultValue("batch") Mode mode) {
+
+    public enum Mode {
+        BATCH,
+        COPY
+    }
+}
@@ -0,0 +1,13 @@
+package com.artchristian.customer;
+
+public record CustomerImportResult(
+        int index,
+        String email,
+        Status status) {
+
+    public enum Status {
+        CREATED,
+        DUPLICATE,
+        INVALID
+    }
+}
@@ -1,35 +1,93 @@
 package com.artchristian.customer;
 
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.util.PSQLException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Repository("jdbc")
 public class CustomerJDBCDataAccessService implements CustomerDao{
 
+    private static final int STREAM_FETCH_SIZE = 500;
+
     private final JdbcTemplate jdbcTemplate;
     private final CustomerRowMapper customerRowMapper;
+    private final CustomerImportProperties importProperties;
 
-    public CustomerJDBCDataAccessService(JdbcTemplate jdbcTemplate, CustomerRowMapper customerRowMapper) {
+    public CustomerJDBCDataAccessService(JdbcTemplate jdbcTemplate,
+                                         CustomerRowMapper customerRowMapper,
+                                         CustomerImportProperties importProperties) {
         this.jdbcTemplate = jdbcTemplate;
         this.customerRowMapper = customerRowMapper;
+        this.importProperties = importProperties;
     }
 
     @Override
     public List<Customer> selectAllCustomers() {
         var sql = """
-                SELECT id, name, email, age
+                SELECT id, name, email, age, version
                 FROM customer
                 """;
         return jdbcTemplate.query(sql, customerRowMapper);
     }
 
     @Override
-    public Optional<Customer> selectCustomerById(Integer id) {
+    public List<Customer> selectCustomersAfterId(Long afterId, int limit) {
+        var sql = """
+                SELECT id, name, email, age, version
+                FROM customer
+                WHERE id > ?
+                ORDER BY id
+                LIMIT ?
+                """;
+        return jdbcTemplate.query(sql, customerRowMapper, afterId == null ? 0 : afterId, limit);
+    }
+
+    // Postgres only honours the fetch size inside a transaction, otherwise the driver buffers the whole result
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAllCustomers(Consumer<Customer> consumer) {
+        var sql = """
+                SELECT id, name, email, age, version
+                FROM customer
+                ORDER BY id
+                """;
+        jdbcTemplate.query(
+                connection -> {
+                    PreparedStatement statement = connection.prepareStatement(sql);
+                    statement.setFetchSize(STREAM_FETCH_SIZE);
+                    return statement;
+                },
+                (RowCallbackHandler) rs -> consumer.accept(customerRowMapper.mapRow(rs, rs.getRow()))
+        );
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id) {
         var sql = """
-                SELECT id, name, email, age
+                SELECT id, name, email, age, version
                 FROM customer
                 WHERE id = ?
                 """;
@@ -39,30 +97,166 @@ public class CustomerJDBCDataAccessService implements CustomerDao{
     }
 
     @Override
-    public void deleteCustomer(Integer customerId) {
+    public List<Customer> selectCustomersByIds(List<Long> ids) {
+        var sql = """
+                SELECT id, name, email, age, version
+                FROM customer
+                WHERE id = ANY(?)
+                """;
+        return jdbcTemplate.query(
+                sql,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids.toArray())),
+                customerRowMapper
+        );
+    }
+
+    @Override
+    public boolean deleteCustomer(Long customerId) {
         var sql = """
                 DELETE
                 FROM customer
                 WHERE id = ?
                 """;
-        int result = jdbcTemplate.update(sql, customerId);
-        System.out.println("DeleteCustomerById result = " + result  );
+        return jdbcTemplate.update(sql, customerId) > 0;
+    }
 
+    @Override
+    public List<Long> deleteCustomersByIds(List<Long> ids) {
+        var sql = """
+                DELETE
+                FROM customer
+                WHERE id = ANY(?)
+                RETURNING id
+                """;
+        return jdbcTemplate.query(
+                sql,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids.toArray())),
+                (rs, rowNum) -> rs.getLong(1)
+        );
     }
 
     @Override
-    public void insertCustomer(Customer customer) {
+    public Optional<Long> insertCustomer(Customer customer) {
         var sql = """
                INSERT INTO customer(name, email, age)
                VALUES (?, ?, ?)
+               ON CONFLICT (email) DO NOTHING
+               RETURNING id
                 """;
-        int result = jdbcTemplate.update(
+        return jdbcTemplate.queryForList(
                 sql,
+                Long.class,
                 customer.getName(),
                 customer.getEmail(),
                 customer.getAge()
+        ).stream().findFirst();
+    }
+
+    @Override
+    @Transactional
+    public int[] insertCustomers(List<Customer> customers) {
+        if (customers.isEmpty()) {
+            return new int[0];
+        }
+        return importProperties.mode() == CustomerImportProperties.Mode.COPY
+                ? copyCustomers(customers)
+                : batchInsertCustomers(customers);
+    }
+
+    private int[] batchInsertCustomers(List<Customer> customers) {
+        var sql = """
+               INSERT INTO customer(name, email, age)
+               VALUES (?, ?, ?)
+               ON CONFLICT (email) DO NOTHING
+                """;
+        int[][] counts = jdbcTemplate.batchUpdate(
+                sql,
+                customers,
+                importProperties.batchSize(),
+                (ps, customer) -> {
+                    ps.setString(1, customer.getName());
+                    ps.setString(2, customer.getEmail());
+                    ps.setInt(3, customer.getAge());
+                }
         );
-        System.out.println("jdbcTemplate.update = " + result);
+        return Arrays.stream(counts)
+                .flatMapToInt(Arrays::stream)
+                .toArray();
+    }
+
+    // the staging table is session scoped, so every step has to run on the same connection
+    private int[] copyCustomers(List<Customer> customers) {
+        return jdbcTemplate.execute((ConnectionCallback<int[]>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("""
+                        CREATE TEMPORARY TABLE IF NOT EXISTS customer_import(
+                            position INT NOT NULL,
+                            name TEXT NOT NULL,
+                            email TEXT NOT NULL,
+                            age INT NOT NULL
+                        )
+                        """);
+                statement.execute("TRUNCATE customer_import");
+            }
+            copyIntoStagingTable(connection, customers);
+            Set<String> inserted = mergeStagingTable(connection);
+            int[] counts = new int[customers.size()];
+            for (int i = 0; i < customers.size(); i++) {
+                counts[i] = inserted.remove(customers.get(i).getEmail()) ? 1 : 0;
+            }
+            return counts;
+        });
+    }
+
+    private void copyIntoStagingTable(Connection connection, List<Customer> customers) throws SQLException {
+        CopyIn copyIn = connection.unwrap(PGConnection.class)
+                .getCopyAPI()
+                .copyIn("COPY customer_import(position, name, email, age) FROM STDIN WITH (FORMAT csv)");
+        try {
+            StringBuilder row = new StringBuilder();
+            for (int i = 0; i < customers.size(); i++) {
+                Customer customer = customers.get(i);
+                row.setLength(0);
+                row.append(i).append(',')
+                        .append(csvQuote(customer.getName())).append(',')
+                        .append(csvQuote(customer.getEmail())).append(',')
+                        .append(customer.getAge()).append('\n');
+                byte[] bytes = row.toString().getBytes(StandardCharsets.UTF_8);
+                copyIn.writeToCopy(bytes, 0, bytes.length);
+            }
+            copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    private Set<String> mergeStagingTable(Connection connection) throws SQLException {
+        var sql = """
+                INSERT INTO customer(name, email, age)
+                SELECT name, email, age
+                FROM (
+                    SELECT DISTINCT ON (email) position, name, email, age
+                    FROM customer_import
+                    ORDER BY email, position
+                ) first_occurrence
+                ORDER BY position
+                ON CONFLICT (email) DO NOTHING
+                RETURNING email
+                """;
+        Set<String> inserted = new HashSet<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(sql)) {
+            while (rs.next()) {
+                inserted.add(rs.getString("email"));
+            }
+        }
+        return inserted;
+    }
+
+    private static String csvQuote(String value) {
+        return '"' + value.replace("\"", "\"\"") + '"';
     }
 
     @Override
@@ -77,7 +271,7 @@ public class CustomerJDBCDataAccessService implements CustomerDao{
     }
 
     @Override
-    public boolean existsPersonWithID(Integer id) {
+    public boolean existsPersonWithID(Long id) {
         var sql = """
                 SELECT count(id)
                 FROM customer
@@ -88,46 +282,67 @@ public class CustomerJDBCDataAccessService implements CustomerDao{
     }
 
     @Override
-    public void updateCustomer(Customer customer) {
+    public CustomerCollectionVersion selectCollectionVersion() {
+        return jdbcTemplate.queryForObject(
+                CustomerCollectionVersion.SELECT,
+                (rs, rowNum) -> new CustomerCollectionVersion(rs.getLong(1))
+        );
+    }
 
+    @Override
+    public void updateCustomer(Customer customer) {
+        List<String> assignments = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
         if(customer.getName()!= null){
-            var sql = """
-                UPDATE customer
-                SET name = ?
-                WHERE id = ?
-                """;
-            int result = jdbcTemplate.update(
-                    sql,
-                    customer.getName(),
-                    customer.getId()
-            );
-            System.out.println("Update customer name result " + result);
+            assignments.add("name = ?");
+            args.add(customer.getName());
         }
         if(customer.getEmail()!= null){
-            var sql = """
-                UPDATE customer
-                SET email = ?
-                WHERE id = ?
-                """;
-            int result = jdbcTemplate.update(
-                    sql,
-                    customer.getEmail(),
-                    customer.getId()
-            );
-            System.out.println("Update customer email result " + result);
+            assignments.add("email = ?");
+            args.add(customer.getEmail());
         }
         if(customer.getAge()!= null){
-            var sql = """
+            assignments.add("age = ?");
+            args.add(customer.getAge());
+        }
+        if(assignments.isEmpty()){
+            return;
+        }
+        assignments.add("version = version + 1");
+        args.add(customer.getId());
+        String condition = "id = ?";
+        if(customer.getVersion() != null){
+            condition += " AND version = ?";
+            args.add(customer.getVersion());
+        }
+        var sql = """
                 UPDATE customer
-                SET age = ?
-                WHERE id = ?
-                """;
-            int result = jdbcTemplate.update(
-                    sql,
-                    customer.getAge(),
-                    customer.getId()
-            );
-            System.out.println("Update customer age result " + result);
+                SET %s
+                WHERE %s
+                """.formatted(String.join(", ", assignments), condition);
+        try {
+            int updated = jdbcTemplate.update(sql, args.toArray());
+            // a versioned update also misses a row deleted since the caller read it, only a row still there is stale
+            if(updated == 0 && customer.getVersion() != null && existsPersonWithID(customer.getId())){
+                throw new OptimisticLockingFailureException(
+                        "customer [%s] is no longer at version %s".formatted(customer.getId(), customer.getVersion()));
+            }
+            if(updated == 0){
+                // deleted since the caller read it
+                throw new EmptyResultDataAccessException(
+                        "customer [%s] is not found".formatted(customer.getId()), 1);
+            }
+        } catch (DataIntegrityViolationException e) {
+            if (isEmailConflict(e)) {
+                throw new DuplicateKeyException(e.getMessage(), e);
+            }
+            throw e;
         }
     }
+
+    private static boolean isEmailConflict(DataIntegrityViolationException e) {
+        return e.getMostSpecificCause() instanceof PSQLException psqlException
+                && psqlException.getServerErrorMessage() != null
+                && "customer_email_unique".equals(psqlException.getServerErrorMessage().getConstraint());
+    }
 }
@@ -1,39 +1,126 @@
 package com.artchristian.customer;
 
+import jakarta.persistence.EntityManager;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Repository("jpa")
 public class CustomerJPADataAccessService implements CustomerDao{
 
     private final CustomerRepository customerRepository;
+    private final EntityManager entityManager;
 
-    public CustomerJPADataAccessService(CustomerRepository customerRepository) {
+    public CustomerJPADataAccessService(CustomerRepository customerRepository, EntityManager entityManager) {
         this.customerRepository = customerRepository;
+        this.entityManager = entityManager;
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<Customer> selectAllCustomers() {
+        List<Customer> customers = new ArrayList<>();
+        streamAllCustomers(customers::add);
+        return customers;
+    }
 
-        return customerRepository.findAll();
+    @Override
+    public List<Customer> selectCustomersAfterId(Long afterId, int limit) {
+        return customerRepository.findByIdGreaterThanOrderByIdAsc(
+                afterId == null ? 0 : afterId,
+                PageRequest.of(0, limit)
+        );
+    }
+
+    // Postgres only honours the fetch size inside a transaction, otherwise the driver buffers the whole result.
+    // Each entity is detached before it is handed on so the persistence context stays empty however big the table,
+    // and the scan skips the second-level cache, which it would otherwise flush (Hibernate 6.1 ignores the
+    // cache mode given as a query hint when loading entities, so it is set on the session)
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAllCustomers(Consumer<Customer> consumer) {
+        Session session = entityManager.unwrap(Session.class);
+        CacheMode cacheMode = session.getCacheMode();
+        session.setCacheMode(CacheMode.IGNORE);
+        try (Stream<Customer> customers = customerRepository.streamAllByOrderByIdAsc()) {
+            customers.forEach(customer -> {
+                entityManager.detach(customer);
+                consumer.accept(customer);
+            });
+        } finally {
+            session.setCacheMode(cacheMode);
+        }
     }
 
     @Override
-    public Optional<Customer> selectCustomerById(Integer id) {
+    public Optional<Customer> selectCustomerById(Long id) {
 
         return customerRepository.findById(id);
     }
 
     @Override
-    public void deleteCustomer(Integer id) {
-        customerRepository.deleteById(id);
+    public List<Customer> selectCustomersByIds(List<Long> ids) {
+        return customerRepository.findAllById(ids);
     }
 
     @Override
-    public void insertCustomer(Customer customer) {
-        customerRepository.save(customer);
+    @Transactional
+    public boolean deleteCustomer(Long id) {
+        return customerRepository.deleteCustomerById(id) > 0;
+    }
+
+    @Override
+    @Transactional
+    public List<Long> deleteCustomersByIds(List<Long> ids) {
+        List<Long> found = customerRepository.findIdsByIdIn(ids);
+        customerRepository.deleteAllByIdInBatch(found);
+        return found;
+    }
+
+    @Override
+    public Optional<Long> insertCustomer(Customer customer) {
+        try {
+            return Optional.of(customerRepository.saveAndFlush(customer).getId());
+        } catch (DataIntegrityViolationException e) {
+            if (isEmailConflict(e)) {
+                return Optional.empty();
+            }
+            throw e;
+        }
+    }
+
+    // the taken emails are read up front, a query between saves would flush and break up the insert batches
+    @Override
+    @Transactional
+    public int[] insertCustomers(List<Customer> customers) {
+        int[] counts = new int[customers.size()];
+        Set<String> emails = new HashSet<>(customerRepository.findEmailsByEmailIn(
+                customers.stream().map(Customer::getEmail).toList()));
+        List<Customer> created = new ArrayList<>(customers.size());
+        for (int i = 0; i < customers.size(); i++) {
+            Customer customer = customers.get(i);
+            if (emails.add(customer.getEmail())) {
+                created.add(customer);
+                counts[i] = 1;
+            }
+        }
+        customerRepository.saveAll(created);
+        return counts;
     }
 
     @Override
@@ -43,12 +130,47 @@ public class CustomerJPADataAccessService implements CustomerDao{
     }
 
     @Override
-    public boolean existsPersonWithID(Integer id) {
+    public boolean existsPersonWithID(Long id) {
         return customerRepository.existsCustomerById(id);
     }
 
     @Override
+    public CustomerCollectionVersion selectCollectionVersion() {
+        return new CustomerCollectionVersion(customerRepository.findCollectionVersion());
+    }
+
+    @Override
+    @Transactional
     public void updateCustomer(Customer customer) {
-        customerRepository.save(customer);
+        Customer existing = customerRepository.findById(customer.getId())
+                .orElseThrow(() -> new EmptyResultDataAccessException(
+                        "customer [%s] is not found".formatted(customer.getId()), 1));
+        // a concurrent change after this check is caught by the version condition Hibernate adds on flush
+        if (customer.getVersion() != null && !customer.getVersion().equals(existing.getVersion())) {
+            throw new OptimisticLockingFailureException(
+                    "customer [%s] is no longer at version %s".formatted(customer.getId(), customer.getVersion()));
+        }
+        if (customer.getName() != null) {
+            existing.setName(customer.getName());
+        }
+        if (customer.getEmail() != null) {
+            existing.setEmail(customer.getEmail());
+        }
+        if (customer.getAge() != null) {
+            existing.setAge(customer.getAge());
+        }
+        try {
+            customerRepository.saveAndFlush(existing);
+        } catch (DataIntegrityViolationException e) {
+            if (isEmailConflict(e)) {
+                throw new DuplicateKeyException(e.getMessage(), e);
+            }
+            throw e;
+        }
+    }
+
+    private static boolean isEmailConflict(DataIntegrityViolationException e) {
+        return e.getCause() instanceof ConstraintViolationException violation
+                && "customer_email_unique".equals(violation.getConstraintName());
     }
 }
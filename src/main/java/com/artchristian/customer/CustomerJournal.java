@@ -0,0 +1,43 @@
+package com.artchristian.customer;
+
+/**
+ * Where a CustomerStore records its writes. Every write happens between beginWrite and endWrite and passes
+ * on the customer as it is afterwards, or its id once deleted, while it holds the lock on that id, so the
+ * journal sees the writes to one customer in the order the store applied them. The writer then calls
+ * awaitDurable, still holding the lock, and applies the write only once that returns.
+ */
+interface CustomerJournal {
+
+    CustomerJournal NONE = new CustomerJournal() {
+        @Override
+        public void beginWrite() {
+        }
+
+        @Override
+        public void put(Customer customer) {
+        }
+
+        @Override
+        public void delete(long id) {
+        }
+
+        @Override
+        public void endWrite() {
+        }
+
+        @Override
+        public void awaitDurable() {
+        }
+    };
+
+    void beginWrite();
+
+    void put(Customer customer);
+
+    void delete(long id);
+
+    void endWrite();
+
+    // blocks until the last record this thread added is durable
+    void awaitDurable();
+}
@@ -0,0 +1,34 @@
+package com.artchristian.customer;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+
+import java.util.Collection;
+
+/**
+ * Evicts changed customers from the Hibernate second-level cache. Cached exists queries cannot be evicted
+ * by id, so their region is dropped on every change. Does nothing while the cache is disabled.
+ */
+public class CustomerJpaCacheChangeHandler implements CustomerChangeHandler {
+
+    private final Cache cache;
+
+    public CustomerJpaCacheChangeHandler(EntityManagerFactory entityManagerFactory) {
+        this.cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+    }
+
+    @Override
+    public void customersChanged(Collection<Long> ids) {
+        for (Long id : ids) {
+            cache.evictEntityData(Customer.class, id);
+        }
+        cache.evictQueryRegion(Customer.QUERY_CACHE_REGION);
+    }
+
+    @Override
+    public void allCustomersChanged() {
+        cache.evictEntityData(Customer.class);
+        cache.evictQueryRegion(Customer.QUERY_CACHE_REGION);
+    }
+}
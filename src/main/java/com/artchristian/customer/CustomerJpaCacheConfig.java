@@ -0,0 +1,122 @@
+package com.artchristian.customer;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.cache.CacheManager;
+import java.net.URI;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Hibernate second-level cache for the jpa DAO: Customer entities by id and the exists queries, held in
+ * Caffeine through JCache. Hibernate keeps both up to date for writes made through JPA, including the
+ * bulk deletes. Writes through the other DAOs bypass it and are only picked up once entries expire.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "customer.jpa-cache", name = "enabled", havingValue = "true")
+public class CustomerJpaCacheConfig {
+
+    @Bean(destroyMethod = "close")
+    CacheManager customerJpaCacheManager(Environment environment) {
+        CustomerJpaCacheProperties properties = Binder.get(environment)
+                .bindOrCreate("customer.jpa-cache", CustomerJpaCacheProperties.class);
+        // a manager per context, the provider would otherwise share one by URI across application contexts
+        CacheManager cacheManager = new CaffeineCachingProvider().getCacheManager(
+                URI.create("customer-jpa-cache:" + UUID.randomUUID()),
+                CustomerJpaCacheConfig.class.getClassLoader());
+        cacheManager.createCache(Customer.CACHE_REGION,
+                region(properties.maximumSize(), properties.expireAfterWrite().toNanos()));
+        cacheManager.createCache(Customer.QUERY_CACHE_REGION,
+                region(properties.queryMaximumSize(), properties.expireAfterWrite().toNanos()));
+        cacheManager.createCache(RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME,
+                region(properties.queryMaximumSize(), properties.expireAfterWrite().toNanos()));
+        // one entry per table, must not expire or cached query results would outlive a write
+        cacheManager.createCache(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME,
+                new CaffeineConfiguration<>());
+        return cacheManager;
+    }
+
+    @Bean
+    HibernatePropertiesCustomizer customerJpaCacheCustomizer(CacheManager customerJpaCacheManager) {
+        return hibernateProperties -> {
+            hibernateProperties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+            hibernateProperties.put(AvailableSettings.USE_QUERY_CACHE, true);
+            hibernateProperties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+            hibernateProperties.put(ConfigSettings.CACHE_MANAGER, customerJpaCacheManager);
+            hibernateProperties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+            hibernateProperties.put(AvailableSettings.GENERATE_STATISTICS, true);
+        };
+    }
+
+    @Bean
+    MeterBinder customerJpaCacheMetrics(EntityManagerFactory entityManagerFactory) {
+        return registry -> {
+            Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+            bind(registry, "entity", () -> statistics.getDomainDataRegionStatistics(Customer.CACHE_REGION));
+            bind(registry, "query", () -> statistics.getQueryRegionStatistics(Customer.QUERY_CACHE_REGION));
+        };
+    }
+
+    private static CaffeineConfiguration<Object, Object> region(long maximumSize, long expireAfterWriteNanos) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(maximumSize));
+        configuration.setExpireAfterWrite(OptionalLong.of(expireAfterWriteNanos));
+        return configuration;
+    }
+
+    private static void bind(MeterRegistry registry, String region, Supplier<CacheRegionStatistics> statistics) {
+        FunctionCounter.builder("customer.jpa.cache.requests", statistics,
+                        count(CacheRegionStatistics::getHitCount))
+                .description("second-level cache lookups of the jpa DAO")
+                .tag("region", region)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("customer.jpa.cache.requests", statistics,
+                        count(CacheRegionStatistics::getMissCount))
+                .description("second-level cache lookups of the jpa DAO")
+                .tag("region", region)
+                .tag("result", "miss")
+                .register(registry);
+        Gauge.builder("customer.jpa.cache.hit.ratio", statistics, s -> hitRatio(s.get()))
+                .description("share of second-level cache lookups of the jpa DAO that were hits")
+                .tag("region", region)
+                .register(registry);
+    }
+
+    private static ToDoubleFunction<Supplier<CacheRegionStatistics>> count(
+            ToLongFunction<CacheRegionStatistics> count) {
+        return statistics -> {
+            CacheRegionStatistics current = statistics.get();
+            return current == null ? 0 : count.applyAsLong(current);
+        };
+    }
+
+    private static double hitRatio(CacheRegionStatistics statistics) {
+        if (statistics == null) {
+            return 0;
+        }
+        long requests = statistics.getHitCount() + statistics.getMissCount();
+        return requests == 0 ? 0 : (double) statistics.getHitCount() / requests;
+    }
+}
@@ -0,0 +1,14 @@
+package com.artchristian.customer;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "customer.jpa-cache")
+public record CustomerJpaCacheProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("10000") long maximumSize,
+        @DefaultValue("10000") long queryMaximumSize,
+        @DefaultValue("5m") Duration expireAfterWrite) {
+}
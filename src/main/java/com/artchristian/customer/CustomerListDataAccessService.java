@@ -1,72 +1,125 @@
 package com.artchristian.customer;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.stereotype.Repository;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
+/**
+ * Customers in a CustomerStore. Without a CustomerWriteAheadLog it starts with two demo customers and
+ * forgets everything on shutdown; with one it starts from what the log restores and keeps every write.
+ */
 @Repository("list")
 public class CustomerListDataAccessService implements CustomerDao{
-    private static List<Customer> customers;
+    private final CustomerStore customers;
+
+    @Autowired(required = false)
+    public CustomerListDataAccessService() {
+        customers = new CustomerStore();
+        Customer alex = new Customer(
+                1L,
+                "Art",
+                "art@gmail.com",
+                33
+        );
+        customers.put(alex);
+        Customer mina = new Customer(
+                2L,
+                "Mina",
+                "mina@gmail.com",
+                32
+        );
+        customers.put(mina);
+    }
+
+    @Autowired(required = false)
+    public CustomerListDataAccessService(CustomerWriteAheadLog writeAheadLog) {
+        customers = new CustomerStore(writeAheadLog);
+        writeAheadLog.open(customers);
+    }
 
     @Override
     public List<Customer> selectAllCustomers() {
-        return customers;
+        return customers.snapshot();
     }
 
     @Override
-    public Optional<Customer> selectCustomerById(Integer id) {
-        return customers.stream()
-                .filter(c -> c.getId().equals(id))
-                .findFirst();
+    public List<Customer> selectCustomersAfterId(Long afterId, int limit) {
+        return customers.afterId(afterId, limit);
     }
 
     @Override
-    public void deleteCustomer(Integer id) {
-        customers.stream()
-                .filter(c -> c.getId().equals(id))
-                .findFirst().ifPresent(customers::remove);
+    public void streamAllCustomers(Consumer<Customer> consumer) {
+        customers.forEach(consumer);
     }
 
     @Override
-    public void insertCustomer(Customer customer) {
-        customers.add(customer);
+    public Optional<Customer> selectCustomerById(Long id) {
+        return customers.get(id);
     }
 
     @Override
-    public boolean existsPersonWithEmail(String email) {
-        return customers.stream()
-                .anyMatch(c -> c.getEmail().equals(email));
+    public List<Customer> selectCustomersByIds(List<Long> ids) {
+        List<Customer> found = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            customers.get(id).ifPresent(found::add);
+        }
+        return found;
     }
 
     @Override
-    public boolean existsPersonWithID(Integer id) {
-        return customers.stream()
-                .anyMatch(c -> c.getEmail().equals(id));
+    public boolean deleteCustomer(Long id) {
+        return customers.delete(id);
     }
 
     @Override
-    public void updateCustomer(Customer customer) {
-        customers.add(customer);
+    public List<Long> deleteCustomersByIds(List<Long> ids) {
+        List<Long> deleted = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            if (customers.delete(id)) {
+                deleted.add(id);
+            }
+        }
+        return deleted;
     }
 
+    @Override
+    public Optional<Long> insertCustomer(Customer customer) {
+        return customers.insert(customer);
+    }
 
-    static {
-        customers = new ArrayList<>();
-        Customer alex = new Customer(
-                1,
-                "Art",
-                "art@gmail.com",
-                33
-        );
-        customers.add(alex);
-        Customer mina = new Customer(
-                2,
-                "Mina",
-                "mina@gmail.com",
-                32
-        );
-        customers.add(mina);
+    @Override
+    public int[] insertCustomers(List<Customer> customers) {
+        int[] counts = new int[customers.size()];
+        for (int i = 0; i < customers.size(); i++) {
+            counts[i] = insertCustomer(customers.get(i)).isPresent() ? 1 : 0;
+        }
+        return counts;
+    }
+
+    @Override
+    public boolean existsPersonWithEmail(String email) {
+        return customers.containsEmail(email);
+    }
+
+    @Override
+    public boolean existsPersonWithID(Long id) {
+        return customers.containsId(id);
+    }
+
+    @Override
+    public CustomerCollectionVersion selectCollectionVersion() {
+        return customers.collectionVersion();
+    }
+
+    @Override
+    public void updateCustomer(Customer customer) {
+        if (!customers.update(customer)) {
+            throw new EmptyResultDataAccessException("customer [%s] is not found".formatted(customer.getId()), 1);
+        }
     }
 }
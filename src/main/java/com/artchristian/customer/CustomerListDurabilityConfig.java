@@ -0,0 +1,26 @@
+package com.artchristian.customer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * Gives the list DAO a CustomerWriteAheadLog under customer.list-durability.directory, which the DAO picks up
+ * in place of its demo customers. The log is its own bean so it is closed, with a last snapshot, on shutdown.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "customer.list-durability", name = "enabled", havingValue = "true")
+public class CustomerListDurabilityConfig {
+
+    @Bean
+    CustomerWriteAheadLog customerWriteAheadLog(Environment environment, ObjectProvider<MeterRegistry> meterRegistry) {
+        CustomerListDurabilityProperties properties = Binder.get(environment)
+                .bindOrCreate("customer.list-durability", CustomerListDurabilityProperties.class);
+        return new CustomerWriteAheadLog(properties, meterRegistry.getIfAvailable(SimpleMeterRegistry::new));
+    }
+}
@@ -0,0 +1,14 @@
+package com.artchristian.customer;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "customer.list-durability")
+public record CustomerListDurabilityProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("data/customer-list") String directory,
+        @DefaultValue("1000") int maxBatchSize,
+        @DefaultValue("5m") Duration snapshotInterval) {
+}
@@ -0,0 +1,78 @@
+package com.artchristian.customer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * What a CustomerFileStore segment record holds: a customer as it is after a write, the id of a deleted one,
+ * or the next id the store hands out. Strings are UTF-8 with an int length in front.
+ */
+record CustomerLogRecord(
+        long id,
+        Type type,
+        String name,
+        String email,
+        int age,
+        long version) {
+
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final byte NEXT_ID = 3;
+
+    enum Type { PUT, DELETE, NEXT_ID }
+
+    static ByteBuffer put(Customer customer) {
+        byte[] name = customer.getName().getBytes(StandardCharsets.UTF_8);
+        byte[] email = customer.getEmail().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer body = ByteBuffer.allocate(
+                1 + Long.BYTES * 2 + Integer.BYTES * 3 + name.length + email.length);
+        body.put(PUT)
+                .putLong(customer.getId())
+                .putLong(customer.getVersion())
+                .putInt(customer.getAge())
+                .putInt(name.length).put(name)
+                .putInt(email.length).put(email);
+        return body.flip();
+    }
+
+    static ByteBuffer delete(long id) {
+        return ByteBuffer.allocate(1 + Long.BYTES).put(DELETE).putLong(id).flip();
+    }
+
+    static ByteBuffer nextId(long id) {
+        return ByteBuffer.allocate(1 + Long.BYTES).put(NEXT_ID).putLong(id).flip();
+    }
+
+    static CustomerLogRecord decode(ByteBuffer body) {
+        byte type = body.get();
+        long id = body.getLong();
+        if (type == DELETE) {
+            return new CustomerLogRecord(id, Type.DELETE, null, null, 0, 0L);
+        }
+        if (type == NEXT_ID) {
+            return new CustomerLogRecord(id, Type.NEXT_ID, null, null, 0, 0L);
+        }
+        if (type != PUT) {
+            throw new IllegalStateException("unknown customer record type " + type);
+        }
+        long version = body.getLong();
+        int age = body.getInt();
+        String name = string(body);
+        String email = string(body);
+        return new CustomerLogRecord(id, Type.PUT, name, email, age, version);
+    }
+
+    boolean deleted() {
+        return type == Type.DELETE;
+    }
+
+    Customer toCustomer() {
+        return new Customer(id, name, email, age, version);
+    }
+
+    private static String string(ByteBuffer body) {
+        byte[] utf8 = new byte[body.getInt()];
+        body.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,181 @@
+package com.artchristian.customer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32C;
+
+/**
+ * One CustomerFileStore segment file, mapped at its full size when it is created so the unwritten part reads
+ * as zeros. Each record is an int body length, the CRC32C of the body, and the body. A zero length ends the
+ * segment.
+ */
+final class CustomerLogSegment implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerLogSegment.class);
+    private static final Pattern FILE_NAME = Pattern.compile("\\d{20}\\.segment");
+    private static final int HEADER_BYTES = Integer.BYTES * 2;
+    private static final byte[] ZEROS = new byte[64 * 1024];
+
+    private final long number;
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private int size;
+    private long liveBytes;
+
+    private CustomerLogSegment(long number, Path path, FileChannel channel, MappedByteBuffer buffer) {
+        this.number = number;
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    static CustomerLogSegment create(Path directory, long number, int capacity) throws IOException {
+        Path path = directory.resolve("%020d.segment".formatted(number));
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new CustomerLogSegment(number, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity));
+    }
+
+    static CustomerLogSegment open(Path path) throws IOException {
+        String fileName = path.getFileName().toString();
+        long number = Long.parseLong(fileName.substring(0, fileName.indexOf('.')));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new CustomerLogSegment(number, path, channel,
+                channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+    }
+
+    static boolean isSegment(Path path) {
+        return FILE_NAME.matcher(path.getFileName().toString()).matches();
+    }
+
+    /**
+     * Replays the records in file order up to the first zero length. A record that fails its checksum can
+     * only be the torn last write before a crash when this is the newest segment, so it and everything after
+     * it are zeroed; in any other segment it is corruption.
+     */
+    void recover(boolean newest, RecordConsumer consumer) {
+        int offset = 0;
+        while (offset + HEADER_BYTES <= buffer.capacity()) {
+            int length = buffer.getInt(offset);
+            if (length == 0) {
+                break;
+            }
+            if (length < 0 || length > buffer.capacity() - offset - HEADER_BYTES || !checksumMatches(offset, length)) {
+                if (!newest) {
+                    throw new IllegalStateException("%s is corrupt at offset %d".formatted(path, offset));
+                }
+                LOGGER.warn("Dropping the torn record at offset {} of {}", offset, path);
+                zeroFrom(offset);
+                break;
+            }
+            consumer.accept(offset, HEADER_BYTES + length,
+                    CustomerLogRecord.decode(buffer.slice(offset + HEADER_BYTES, length)));
+            offset += HEADER_BYTES + length;
+        }
+        size = offset;
+    }
+
+    /**
+     * Returns the offset the record was written at, or -1 when it does not fit.
+     */
+    int append(ByteBuffer body) {
+        int length = body.remaining();
+        if (length > buffer.capacity() - size - HEADER_BYTES) {
+            return -1;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(body.duplicate());
+        int offset = size;
+        buffer.put(offset + HEADER_BYTES, body, body.position(), length);
+        buffer.putInt(offset + Integer.BYTES, (int) crc.getValue());
+        buffer.putInt(offset, length);
+        size += HEADER_BYTES + length;
+        return offset;
+    }
+
+    // the record as it is, checksum included
+    int copy(CustomerLogSegment from, int offset) {
+        int recordSize = HEADER_BYTES + from.buffer.getInt(offset);
+        if (recordSize > buffer.capacity() - size) {
+            return -1;
+        }
+        int target = size;
+        buffer.put(target, from.buffer, offset, recordSize);
+        size += recordSize;
+        return target;
+    }
+
+    CustomerLogRecord read(int offset) {
+        return CustomerLogRecord.decode(buffer.slice(offset + HEADER_BYTES, buffer.getInt(offset)));
+    }
+
+    void force(int from) {
+        if (size > from) {
+            buffer.force(from, size - from);
+        }
+    }
+
+    long number() {
+        return number;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return buffer.capacity();
+    }
+
+    long liveBytes() {
+        return liveBytes;
+    }
+
+    void retain(int recordSize) {
+        liveBytes += recordSize;
+    }
+
+    void release(int recordSize) {
+        liveBytes -= recordSize;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // the mapping itself goes away once the buffer is collected
+    void delete() throws IOException {
+        close();
+        Files.delete(path);
+    }
+
+    private boolean checksumMatches(int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(offset + HEADER_BYTES, length));
+        return (int) crc.getValue() == buffer.getInt(offset + Integer.BYTES);
+    }
+
+    private void zeroFrom(int offset) {
+        for (int position = offset; position < buffer.capacity(); position += ZEROS.length) {
+            buffer.put(position, ZEROS, 0, Math.min(ZEROS.length, buffer.capacity() - position));
+        }
+        buffer.force(offset, buffer.capacity() - offset);
+    }
+
+    @FunctionalInterface
+    interface RecordConsumer {
+        void accept(int offset, int recordSize, CustomerLogRecord record);
+    }
+}
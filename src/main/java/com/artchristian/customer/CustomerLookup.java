@@ -0,0 +1,8 @@
+package com.artchristian.customer;
+
+import java.util.List;
+
+public record CustomerLookup(
+        List<Customer> customers,
+        List<Long> missingIds) {
+}
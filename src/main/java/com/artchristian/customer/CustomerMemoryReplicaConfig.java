@@ -0,0 +1,163 @@
+package com.artchristian.customer;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.actuate.endpoint.SecurityContext;
+import org.springframework.boot.actuate.health.AdditionalHealthEndpointPath;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthEndpointGroup;
+import org.springframework.boot.actuate.health.HealthEndpointGroups;
+import org.springframework.boot.actuate.health.HealthEndpointGroupsPostProcessor;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.HttpCodeStatusMapper;
+import org.springframework.boot.actuate.health.StatusAggregator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Puts a MemoryReplicaCustomerDao in front of the jdbc DAO for read-heavy nodes. The copy is loaded and kept
+ * current by CustomerChangeListener, so the listener has to be enabled too. The customerMemoryReplica health
+ * indicator joins the readiness group and stays out of service until the first load is done.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "customer.memory-replica", name = "enabled", havingValue = "true")
+public class CustomerMemoryReplicaConfig {
+
+    @Bean
+    static MemoryReplicaCustomerDaoPostProcessor memoryReplicaCustomerDaoPostProcessor(
+            Environment environment,
+            ObjectProvider<JdbcTemplate> jdbcTemplate,
+            ObjectProvider<CustomerRowMapper> customerRowMapper,
+            ObjectProvider<MeterRegistry> meterRegistry) {
+        Binder binder = Binder.get(environment);
+        CustomerMemoryReplicaProperties properties = binder
+                .bindOrCreate("customer.memory-replica", CustomerMemoryReplicaProperties.class);
+        if (!binder.bindOrCreate("customer.change-listener", CustomerChangeProperties.class).enabled()) {
+            throw new IllegalStateException(
+                    "customer.memory-replica.enabled needs customer.change-listener.enabled to load and stay current");
+        }
+        return new MemoryReplicaCustomerDaoPostProcessor(properties, jdbcTemplate, customerRowMapper, meterRegistry);
+    }
+
+    @Bean
+    HealthIndicator customerMemoryReplicaHealthIndicator(MemoryReplicaCustomerDaoPostProcessor postProcessor) {
+        return () -> postProcessor.getMemoryReplica()
+                .map(replica -> (replica.isLoaded() ? Health.up() : Health.outOfService())
+                        .withDetail("customers", replica.size())
+                        .withDetail("lastLoad", replica.lastLoad().map(Object::toString).orElse("none"))
+                        .build())
+                .orElseGet(() -> Health.unknown().build());
+    }
+
+    // added here rather than in application.yml, where the group would name an indicator that only exists with
+    // this configuration
+    @Bean
+    HealthEndpointGroupsPostProcessor customerMemoryReplicaReadiness() {
+        return groups -> {
+            HealthEndpointGroup readiness = groups.get("readiness");
+            if (readiness == null) {
+                return groups;
+            }
+            Map<String, HealthEndpointGroup> named = new LinkedHashMap<>();
+            for (String name : groups.getNames()) {
+                named.put(name, groups.get(name));
+            }
+            named.put("readiness", new WithMember(readiness, "customerMemoryReplica"));
+            return HealthEndpointGroups.of(groups.getPrimary(), named);
+        };
+    }
+
+    private record WithMember(HealthEndpointGroup group, String member) implements HealthEndpointGroup {
+
+        @Override
+        public boolean isMember(String name) {
+            return member.equals(name) || group.isMember(name);
+        }
+
+        @Override
+        public boolean showComponents(SecurityContext securityContext) {
+            return group.showComponents(securityContext);
+        }
+
+        @Override
+        public boolean showDetails(SecurityContext securityContext) {
+            return group.showDetails(securityContext);
+        }
+
+        @Override
+        public StatusAggregator getStatusAggregator() {
+            return group.getStatusAggregator();
+        }
+
+        @Override
+        public HttpCodeStatusMapper getHttpCodeStatusMapper() {
+            return group.getHttpCodeStatusMapper();
+        }
+
+        @Override
+        public AdditionalHealthEndpointPath getAdditionalPath() {
+            return group.getAdditionalPath();
+        }
+    }
+
+    public static class MemoryReplicaCustomerDaoPostProcessor implements BeanPostProcessor, Ordered {
+
+        private final CustomerMemoryReplicaProperties properties;
+        private final ObjectProvider<JdbcTemplate> jdbcTemplate;
+        private final ObjectProvider<CustomerRowMapper> customerRowMapper;
+        private final ObjectProvider<MeterRegistry> meterRegistry;
+        private volatile MemoryReplicaCustomerDao memoryReplica;
+
+        MemoryReplicaCustomerDaoPostProcessor(CustomerMemoryReplicaProperties properties,
+                                              ObjectProvider<JdbcTemplate> jdbcTemplate,
+                                              ObjectProvider<CustomerRowMapper> customerRowMapper,
+                                              ObjectProvider<MeterRegistry> meterRegistry) {
+            this.properties = properties;
+            this.jdbcTemplate = jdbcTemplate;
+            this.customerRowMapper = customerRowMapper;
+            this.meterRegistry = meterRegistry;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            // writes have to reach the table the copy is loaded from
+            if (!(bean instanceof CustomerDao customerDao) || !"jdbc".equals(beanName)) {
+                return bean;
+            }
+            MemoryReplicaCustomerDao replica = new MemoryReplicaCustomerDao(
+                    customerDao,
+                    jdbcTemplate.getObject(),
+                    customerRowMapper.getObject(),
+                    properties.chunkSize(),
+                    properties.loadThreads());
+            meterRegistry.ifAvailable(registry ->
+                    Gauge.builder("customer.memory.replica.size", replica, MemoryReplicaCustomerDao::size)
+                            .description("customers held by the in-memory replica")
+                            .register(registry));
+            memoryReplica = replica;
+            return replica;
+        }
+
+        public Optional<MemoryReplicaCustomerDao> getMemoryReplica() {
+            return Optional.ofNullable(memoryReplica);
+        }
+
+        @Override
+        public int getOrder() {
+            // inside the routing, a read it answers never asks for a connection; the timing is inside it, so such
+            // a read is not counted as a DAO call
+            return Ordered.LOWEST_PRECEDENCE - 5;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.artchristian.customer;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "customer.memory-replica")
+public record CustomerMemoryReplicaProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("10000") long chunkSize,
+        @DefaultValue("4") int loadThreads) {
+}
@@ -0,0 +1,53 @@
+package com.artchristian.customer;
+
+import io.micrometer.core.aop.CountedAspect;
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+@Configuration
+public class CustomerMetricsConfig {
+
+    @Bean
+    static TimedCustomerDaoPostProcessor timedCustomerDaoPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new TimedCustomerDaoPostProcessor(meterRegistry);
+    }
+
+    @Bean
+    TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+
+    @Bean
+    CountedAspect countedAspect(MeterRegistry meterRegistry) {
+        return new CountedAspect(meterRegistry);
+    }
+
+    public static class TimedCustomerDaoPostProcessor implements BeanPostProcessor, Ordered {
+
+        private final ObjectProvider<MeterRegistry> meterRegistry;
+
+        TimedCustomerDaoPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+            this.meterRegistry = meterRegistry;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (!(bean instanceof CustomerDao customerDao)) {
+                return bean;
+            }
+            return new TimedCustomerDao(customerDao, meterRegistry.getObject(), beanName);
+        }
+
+        @Override
+        public int getOrder() {
+            // innermost of the decorators, inside the memory replica and the routing too, so only calls that reach
+            // the implementation are timed
+            return Ordered.LOWEST_PRECEDENCE - 6;
+        }
+    }
+}
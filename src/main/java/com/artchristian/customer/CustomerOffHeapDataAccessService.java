@@ -0,0 +1,119 @@
+package com.artchristian.customer;
+
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * The list DAO over OffHeapCustomerStore, for data sets large enough that a heap object per customer hurts.
+ */
+@Repository("offheap")
+public class CustomerOffHeapDataAccessService implements CustomerDao{
+    private final OffHeapCustomerStore customers = new OffHeapCustomerStore();
+
+    public CustomerOffHeapDataAccessService() {
+        Customer alex = new Customer(
+                1L,
+                "Art",
+                "art@gmail.com",
+                33
+        );
+        customers.put(alex);
+        Customer mina = new Customer(
+                2L,
+                "Mina",
+                "mina@gmail.com",
+                32
+        );
+        customers.put(mina);
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return customers.snapshot();
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfterId(Long afterId, int limit) {
+        return customers.afterId(afterId, limit);
+    }
+
+    @Override
+    public void streamAllCustomers(Consumer<Customer> consumer) {
+        customers.forEach(consumer);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id) {
+        return customers.get(id);
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(List<Long> ids) {
+        List<Customer> found = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            customers.get(id).ifPresent(found::add);
+        }
+        return found;
+    }
+
+    @Override
+    public boolean deleteCustomer(Long id) {
+        return customers.delete(id);
+    }
+
+    @Override
+    public List<Long> deleteCustomersByIds(List<Long> ids) {
+        List<Long> deleted = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            if (customers.delete(id)) {
+                deleted.add(id);
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    public Optional<Long> insertCustomer(Customer customer) {
+        return customers.insert(customer);
+    }
+
+    @Override
+    public int[] insertCustomers(List<Customer> customers) {
+        int[] counts = new int[customers.size()];
+        for (int i = 0; i < customers.size(); i++) {
+            counts[i] = insertCustomer(customers.get(i)).isPresent() ? 1 : 0;
+        }
+        return counts;
+    }
+
+    @Override
+    public boolean existsPersonWithEmail(String email) {
+        return customers.containsEmail(email);
+    }
+
+    @Override
+    public boolean existsPersonWithID(Long id) {
+        return customers.containsId(id);
+    }
+
+    @Override
+    public CustomerCollectionVersion selectCollectionVersion() {
+        return customers.collectionVersion();
+    }
+
+    @Override
+    public void updateCustomer(Customer customer) {
+        if (!customers.update(customer)) {
+            throw new EmptyResultDataAccessException("customer [%s] is not found".formatted(customer.getId()), 1);
+        }
+    }
+
+    public long offHeapBytes() {
+        return customers.offHeapBytes();
+    }
+}
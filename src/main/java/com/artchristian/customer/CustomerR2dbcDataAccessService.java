@@ -0,0 +1,185 @@
+package com.artchristian.customer;
+
+import io.r2dbc.postgresql.api.PostgresqlException;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Repository("r2dbc")
+public class CustomerR2dbcDataAccessService implements ReactiveCustomerDao {
+
+    private static final int STREAM_FETCH_SIZE = 500;
+
+    private final DatabaseClient databaseClient;
+
+    public CustomerR2dbcDataAccessService(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    // the fetch size lets the driver pull rows in chunks as subscribers request them
+    @Override
+    public Flux<Customer> selectAllCustomers() {
+        var sql = """
+                SELECT id, name, email, age, version
+                FROM customer
+                ORDER BY id
+                """;
+        return databaseClient.sql(sql)
+                .filter(statement -> statement.fetchSize(STREAM_FETCH_SIZE))
+                .map(CustomerR2dbcDataAccessService::mapRow)
+                .all();
+    }
+
+    @Override
+    public Flux<Customer> selectCustomersAfterId(Long afterId, int limit) {
+        var sql = """
+                SELECT id, name, email, age, version
+                FROM customer
+                WHERE id > :afterId
+                ORDER BY id
+                LIMIT :limit
+                """;
+        return databaseClient.sql(sql)
+                .bind("afterId", afterId == null ? 0 : afterId)
+                .bind("limit", limit)
+                .map(CustomerR2dbcDataAccessService::mapRow)
+                .all();
+    }
+
+    @Override
+    public Mono<Customer> selectCustomerById(Long id) {
+        var sql = """
+                SELECT id, name, email, age, version
+                FROM customer
+                WHERE id = :id
+                """;
+        return databaseClient.sql(sql)
+                .bind("id", id)
+                .map(CustomerR2dbcDataAccessService::mapRow)
+                .one();
+    }
+
+    @Override
+    public Mono<Boolean> deleteCustomer(Long id) {
+        var sql = """
+                DELETE
+                FROM customer
+                WHERE id = :id
+                """;
+        return databaseClient.sql(sql)
+                .bind("id", id)
+                .fetch()
+                .rowsUpdated()
+                .map(count -> count > 0);
+    }
+
+    @Override
+    public Mono<Long> insertCustomer(Customer customer) {
+        var sql = """
+                INSERT INTO customer(name, email, age)
+                VALUES (:name, :email, :age)
+                ON CONFLICT (email) DO NOTHING
+                RETURNING id
+                """;
+        return databaseClient.sql(sql)
+                .bind("name", customer.getName())
+                .bind("email", customer.getEmail())
+                .bind("age", customer.getAge())
+                .map((row, metadata) -> row.get("id", Long.class))
+                .one()
+                .doOnNext(customer::setId);
+    }
+
+    @Override
+    public Mono<Boolean> existsPersonWithID(Long id) {
+        var sql = """
+                SELECT EXISTS (SELECT 1 FROM customer WHERE id = :id) AS found
+                """;
+        return databaseClient.sql(sql)
+                .bind("id", id)
+                .map((row, metadata) -> row.get("found", Boolean.class))
+                .one();
+    }
+
+    @Override
+    public Mono<Void> updateCustomer(Customer customer) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        if(customer.getName()!= null){
+            values.put("name", customer.getName());
+        }
+        if(customer.getEmail()!= null){
+            values.put("email", customer.getEmail());
+        }
+        if(customer.getAge()!= null){
+            values.put("age", customer.getAge());
+        }
+        if(values.isEmpty()){
+            return Mono.empty();
+        }
+        List<String> assignments = new ArrayList<>();
+        values.keySet().forEach(column -> assignments.add(column + " = :" + column));
+        assignments.add("version = version + 1");
+        String condition = customer.getVersion() == null ? "id = :id" : "id = :id AND version = :version";
+        var sql = """
+                UPDATE customer
+                SET %s
+                WHERE %s
+                """.formatted(String.join(", ", assignments), condition);
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql).bind("id", customer.getId());
+        if (customer.getVersion() != null) {
+            spec = spec.bind("version", customer.getVersion());
+        }
+        for (Map.Entry<String, Object> value : values.entrySet()) {
+            spec = spec.bind(value.getKey(), value.getValue());
+        }
+        return spec.fetch()
+                .rowsUpdated()
+                .onErrorMap(
+                        DataIntegrityViolationException.class,
+                        e -> isEmailConflict(e) ? new DuplicateKeyException(e.getMessage(), e) : e)
+                .flatMap(updated -> {
+                    if (updated > 0) {
+                        return Mono.empty();
+                    }
+                    // a versioned update also misses a row deleted since the caller read it
+                    Mono<Boolean> stale = customer.getVersion() == null
+                            ? Mono.just(false)
+                            : existsPersonWithID(customer.getId());
+                    return stale.flatMap(exists -> Mono.error(exists
+                            ? new OptimisticLockingFailureException(
+                                    "customer [%s] is no longer at version %s".formatted(
+                                            customer.getId(), customer.getVersion()))
+                            : new EmptyResultDataAccessException(
+                                    "customer [%s] is not found".formatted(customer.getId()), 1)));
+                })
+                .then();
+    }
+
+    private static Customer mapRow(Row row, RowMetadata metadata) {
+        return new Customer(
+                row.get("id", Long.class),
+                row.get("name", String.class),
+                row.get("email", String.class),
+                row.get("age", Integer.class),
+                row.get("version", Long.class)
+        );
+    }
+
+    private static boolean isEmailConflict(DataIntegrityViolationException e) {
+        return e.getMostSpecificCause() instanceof PostgresqlException postgresqlException
+                && "customer_email_unique".equals(
+                        postgresqlException.getErrorDetails().getConstraintName().orElse(null));
+    }
+}
@@ -0,0 +1,125 @@
+package com.artchristian.customer;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.time.Clock;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replaces the auto-configured pool with a routing data source over the spring.datasource primary and the
+ * customer.replicas pools. Flyway, JPA and the JDBC DAO all go through it; only the reads marked by
+ * ReplicaRoutingCustomerDao ever reach a replica. Nothing that fills a cache reads from a replica: the
+ * customer cache loads its misses from the primary, and with the second-level cache on the jpa DAO is left
+ * unmarked. The R2DBC DAO keeps its own connection factory.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "customer.replicas", name = "enabled", havingValue = "true")
+public class CustomerReplicaConfig {
+
+    @Bean
+    ReplicaRoutingDataSource dataSource(DataSourceProperties dataSourceProperties,
+                                        Environment environment,
+                                        ObjectProvider<MeterRegistry> meterRegistry) {
+        CustomerReplicaProperties properties = bind(environment);
+        MeterRegistry registry = meterRegistry.getObject();
+
+        HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        primary.setPoolName(ReplicaRoutingDataSource.PRIMARY);
+        primary.setMetricRegistry(registry);
+
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        List<CustomerReplicaProperties.Pool> pools = properties.pools();
+        for (int i = 0; i < pools.size(); i++) {
+            CustomerReplicaProperties.Pool pool = pools.get(i);
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("replica-" + i);
+            replica.setJdbcUrl(pool.url());
+            replica.setUsername(pool.username());
+            replica.setPassword(pool.password());
+            replica.setMaximumPoolSize(pool.maximumPoolSize());
+            replica.setReadOnly(true);
+            replica.setMetricRegistry(registry);
+            replicas.put(replica.getPoolName(), replica);
+        }
+
+        ReplicaRoutingDataSource dataSource = new ReplicaRoutingDataSource(
+                primary, replicas, properties.maxLag(), registry);
+        dataSource.startLagChecks(properties.lagCheckInterval());
+        return dataSource;
+    }
+
+    @Bean
+    WebMvcConfigurer primaryStickiness(Environment environment) {
+        PrimaryStickinessInterceptor interceptor = new PrimaryStickinessInterceptor(
+                bind(environment).stickiness(), Clock.systemUTC());
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(InterceptorRegistry registry) {
+                registry.addInterceptor(interceptor);
+            }
+
+            @Override
+            public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+                configurer.registerCallableInterceptors(interceptor);
+            }
+        };
+    }
+
+    @Bean
+    static ReplicaRoutingCustomerDaoPostProcessor replicaRoutingCustomerDaoPostProcessor(Environment environment) {
+        return new ReplicaRoutingCustomerDaoPostProcessor(
+                environment.getProperty("customer.jpa-cache.enabled", Boolean.class, false));
+    }
+
+    private static CustomerReplicaProperties bind(Environment environment) {
+        return Binder.get(environment).bindOrCreate("customer.replicas", CustomerReplicaProperties.class);
+    }
+
+    public static class ReplicaRoutingCustomerDaoPostProcessor implements BeanPostProcessor, Ordered {
+
+        private final boolean jpaCacheEnabled;
+
+        ReplicaRoutingCustomerDaoPostProcessor(boolean jpaCacheEnabled) {
+            this.jpaCacheEnabled = jpaCacheEnabled;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (!(bean instanceof CustomerDao customerDao)) {
+                return bean;
+            }
+            if (jpaCacheEnabled && beanName.equals("jpa")) {
+                // Hibernate puts every row it reads into the second-level cache, where a row from a lagging
+                // replica would stay until it expires, so the jpa DAO keeps reading from the primary
+                return bean;
+            }
+            return new ReplicaRoutingCustomerDao(customerDao);
+        }
+
+        @Override
+        public int getOrder() {
+            // inside every decorator but the timing, so a read is marked however it reaches the implementation
+            return Ordered.LOWEST_PRECEDENCE - 4;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.artchristian.customer;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+@ConfigurationProperties(prefix = "customer.replicas")
+public record CustomerReplicaProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("5s") Duration maxLag,
+        @DefaultValue("1s") Duration lagCheckInterval,
+        @DefaultValue List<Pool> pools) {
+
+    public record Pool(
+            String url,
+            String username,
+            String password,
+            @DefaultValue("10") int maximumPoolSize) {
+    }
+
+    /**
+     * How long a client reads from the primary after its own write. Replicas further behind than the
+     * max lag are skipped, and the lag is at most one check interval old, so this covers both.
+     */
+    public Duration stickiness() {
+        return maxLag.plus(lagCheckInterval);
+    }
+}
@@ -1,11 +1,54 @@
 package com.artchristian.customer;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.stream.Stream;
 
 //@Repository
 public interface CustomerRepository
-        extends JpaRepository<Customer, Integer>{
+        extends JpaRepository<Customer, Long>{
 
+    // only used when the second-level cache is enabled, results are dropped on any write to the table
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = Customer.QUERY_CACHE_REGION)
+    })
     boolean existsCustomerByEmail(String email);
-    boolean existsCustomerById(Integer id);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = Customer.QUERY_CACHE_REGION)
+    })
+    boolean existsCustomerById(Long id);
+
+    List<Customer> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    // read-only skips the dirty-checking snapshots
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select c from Customer c order by c.id")
+    Stream<Customer> streamAllByOrderByIdAsc();
+
+    @Modifying
+    @Query("delete from Customer c where c.id = :id")
+    int deleteCustomerById(@Param("id") Long id);
+
+    @Query(value = CustomerCollectionVersion.SELECT, nativeQuery = true)
+    long findCollectionVersion();
+
+    @Query("select c.email from Customer c where c.email in :emails")
+    List<String> findEmailsByEmailIn(@Param("emails") List<String> emails);
+
+    @Query("select c.id from Customer c where c.id in :ids")
+    List<Long> findIdsByIdIn(@Param("ids") List<Long> ids);
 }
@@ -2,15 +2,36 @@ package com.artchristian.customer;
 
 import com.artchristian.exception.BadRequestException;
 import com.artchristian.exception.DuplicateResourceException;
+import com.artchristian.exception.PreconditionFailedException;
 import com.artchristian.exception.ResourceNotFoundException;
+import io.micrometer.core.annotation.Counted;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Service
+@Timed(value = "customer.service", percentiles = {0.5, 0.99, 0.999}, histogram = true)
 public class CustomerService {
 
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_LOOKUP_SIZE = 1000;
+    private static final String FAILURES = "customer.service.failures";
+
     private final CustomerDao customerDao;
 
     public CustomerService(@Qualifier("jdbc") CustomerDao customerDao) {
@@ -21,59 +42,156 @@ public class CustomerService {
         return customerDao.selectAllCustomers();
     }
 
-    public Customer getCustomer(Integer id){
+    public CustomerPage getCustomersPage(Long after, Integer limit){
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        if(pageSize < 1 || pageSize > MAX_PAGE_SIZE){
+            throw new BadRequestException(
+                    "limit must be between 1 and %s".formatted(MAX_PAGE_SIZE));
+        }
+        List<Customer> customers = customerDao.selectCustomersAfterId(after, pageSize);
+        Long nextCursor = customers.size() < pageSize
+                ? null
+                : customers.get(customers.size() - 1).getId();
+        return new CustomerPage(customers, nextCursor);
+    }
+
+    public void streamAllCustomers(Consumer<Customer> consumer){
+        customerDao.streamAllCustomers(consumer);
+    }
+
+    public CustomerCollectionVersion getCollectionVersion(){
+        return customerDao.selectCollectionVersion();
+    }
+
+    @Counted(value = FAILURES, recordFailuresOnly = true)
+    public Customer getCustomer(Long id){
         return customerDao.selectCustomerById(id)
                 .orElseThrow(
                 ()-> new ResourceNotFoundException(
                 "Customer with ID [%s] is not found".formatted(id)));
     }
 
-    public void addCustomer(CustomerRegistrationRequest customerRegistrationRequest) {
-        //check if email exists
-        String email  = customerRegistrationRequest.email();
-        if(customerDao.existsPersonWithEmail(email)){
-            throw new DuplicateResourceException(
-                    "email already taken");
+    public CustomerLookup getCustomersByIds(List<Long> ids){
+        Set<Long> requested = distinctIds(ids);
+
+        Map<Long, Customer> found = new HashMap<>();
+        for (Customer customer : customerDao.selectCustomersByIds(List.copyOf(requested))) {
+            found.put(customer.getId(), customer);
         }
+
+        List<Customer> customers = new ArrayList<>(found.size());
+        List<Long> missingIds = new ArrayList<>();
+        for (Long id : requested) {
+            Customer customer = found.get(id);
+            if (customer == null) {
+                missingIds.add(id);
+            } else {
+                customers.add(customer);
+            }
+        }
+        return new CustomerLookup(customers, missingIds);
+    }
+
+    @Counted(value = FAILURES, recordFailuresOnly = true)
+    public void addCustomer(CustomerRegistrationRequest customerRegistrationRequest) {
         Customer customer = new Customer(
                 customerRegistrationRequest.name(),
                 customerRegistrationRequest.email(),
                 customerRegistrationRequest.age()
         );
-        customerDao.insertCustomer(customer);
+        //the unique email constraint decides, no separate exists check
+        if(customerDao.insertCustomer(customer).isEmpty()){
+            throw new DuplicateResourceException(
+                    "email already taken");
+        }
     }
 
-    public void deleteCustomerByID(Integer id){
-        if(customerDao.existsPersonWithID(id)){
-            customerDao.deleteCustomer(id);
+    public List<CustomerImportResult> addCustomers(List<CustomerRegistrationRequest> customerRegistrationRequests) {
+        CustomerImportResult[] results = new CustomerImportResult[customerRegistrationRequests.size()];
+        List<Customer> customers = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < customerRegistrationRequests.size(); i++) {
+            CustomerRegistrationRequest request = customerRegistrationRequests.get(i);
+            if (request == null || request.name() == null || request.email() == null || request.age() == null) {
+                results[i] = new CustomerImportResult(
+                        i,
+                        request == null ? null : request.email(),
+                        CustomerImportResult.Status.INVALID);
+                continue;
+            }
+            customers.add(new Customer(request.name(), request.email(), request.age()));
+            positions.add(i);
+        }
+
+        if (!customers.isEmpty()) {
+            int[] counts = customerDao.insertCustomers(customers);
+            for (int j = 0; j < customers.size(); j++) {
+                int i = positions.get(j);
+                results[i] = new CustomerImportResult(
+                        i,
+                        customers.get(j).getEmail(),
+                        counts[j] > 0
+                                ? CustomerImportResult.Status.CREATED
+                                : CustomerImportResult.Status.DUPLICATE);
+            }
         }
-        else {
+        return Arrays.asList(results);
+    }
+
+    @Counted(value = FAILURES, recordFailuresOnly = true)
+    public void deleteCustomerByID(Long id){
+        if(!customerDao.deleteCustomer(id)){
             throw new ResourceNotFoundException("Customer with ID [%s] is not found".formatted(id));
         }
     }
 
-    public void updateCustomerById(Integer id,
+    public CustomerDeletion deleteCustomersByIds(List<Long> ids){
+        Set<Long> requested = distinctIds(ids);
+        Set<Long> deleted = new HashSet<>(customerDao.deleteCustomersByIds(List.copyOf(requested)));
+
+        List<Long> deletedIds = new ArrayList<>(deleted.size());
+        List<Long> missingIds = new ArrayList<>();
+        for (Long id : requested) {
+            (deleted.contains(id) ? deletedIds : missingIds).add(id);
+        }
+        return new CustomerDeletion(deletedIds, missingIds);
+    }
+
+    @Counted(value = FAILURES, recordFailuresOnly = true)
+    public void updateCustomerById(Long id,
                                    CustomerUpdateRequest customerUpdateRequest){
+        updateCustomerById(id, customerUpdateRequest, null);
+    }
+
+    /**
+     * Applies the update only if the customer is still at one of the given versions, taken from If-Match.
+     * A null collection means the request carried no precondition.
+     */
+    @Counted(value = FAILURES, recordFailuresOnly = true)
+    public void updateCustomerById(Long id,
+                                   CustomerUpdateRequest customerUpdateRequest,
+                                   Collection<Long> expectedVersions){
         Customer customerData = getCustomer(id);
 
+        Customer changes = new Customer();
+        changes.setId(id);
+        if(expectedVersions != null){
+            changes.setVersion(expectedVersion(id, customerData, expectedVersions));
+        }
         boolean isChanged = false;
 
         if(customerUpdateRequest.name()!= null && !customerUpdateRequest.name().equals(customerData.getName())){
-            customerData.setName(customerUpdateRequest.name());
+            changes.setName(customerUpdateRequest.name());
             isChanged = true;
         }
 
         if(customerUpdateRequest.email()!= null && !customerUpdateRequest.email().equals(customerData.getEmail())){
-            if(customerDao.existsPersonWithEmail(customerUpdateRequest.email())){
-                throw new DuplicateResourceException(
-                        "email already taken");
-            }
-            customerData.setEmail(customerUpdateRequest.email());
+            changes.setEmail(customerUpdateRequest.email());
             isChanged = true;
         }
 
         if(customerUpdateRequest.age()!= null && !customerUpdateRequest.age().equals(customerData.getAge())){
-            customerData.setAge(customerUpdateRequest.age());
+            changes.setAge(customerUpdateRequest.age());
             isChanged = true;
         }
 
@@ -81,7 +199,44 @@ public class CustomerService {
             throw new BadRequestException("no data changes found");
         }
 
-        customerDao.updateCustomer(customerData);
+        try {
+            customerDao.updateCustomer(changes);
+        } catch (DuplicateKeyException e) {
+            throw new DuplicateResourceException(
+                    "email already taken");
+        } catch (OptimisticLockingFailureException e) {
+            throw new PreconditionFailedException(
+                    "Customer with ID [%s] was modified by another request".formatted(id));
+        } catch (EmptyResultDataAccessException e) {
+            // deleted since it was read above
+            throw new ResourceNotFoundException(
+                    "Customer with ID [%s] is not found".formatted(id));
+        }
+    }
+
+    private static Long expectedVersion(Long id, Customer customerData, Collection<Long> expectedVersions){
+        if(expectedVersions.contains(customerData.getVersion())){
+            return customerData.getVersion();
+        }
+        // the read may come from a stale cache entry, so a single version is left to the database to judge
+        if(expectedVersions.size() == 1){
+            return expectedVersions.iterator().next();
+        }
+        throw new PreconditionFailedException(
+                "Customer with ID [%s] does not match If-Match".formatted(id));
+    }
+
+    private static Set<Long> distinctIds(List<Long> ids){
+        Set<Long> distinct = new LinkedHashSet<>();
+        for (Long id : ids) {
+            if (id != null) {
+                distinct.add(id);
+            }
+        }
+        if(distinct.isEmpty() || distinct.size() > MAX_LOOKUP_SIZE){
+            throw new BadRequestException(
+                    "ids must contain between 1 and %s ids".formatted(MAX_LOOKUP_SIZE));
+        }
+        return distinct;
     }
 }
-
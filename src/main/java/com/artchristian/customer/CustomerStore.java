@@ -0,0 +1,319 @@
+package com.artchristian.customer;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Concurrent in-memory customer table: O(1) lookups by id and email, an ordered id index for keyset
+ * pages, and optimistic snapshots that retry while writers are active instead of taking a lock.
+ * Stored customers are private copies and are copied again on the way out. Writes are recorded in the
+ * CustomerJournal it is given, if any, and only become visible once the journal has them on disk, so a
+ * write that fails there is never seen.
+ */
+class CustomerStore {
+
+    private static final int SNAPSHOT_ATTEMPTS = 16;
+    private static final int ID_LOCKS = 64;
+
+    private final ConcurrentHashMap<Long, Customer> customersById = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> idsByEmail = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Long> orderedIds = new ConcurrentSkipListSet<>();
+    // emails of inserts and updates that are waiting for the journal
+    private final ConcurrentHashMap<String, Long> reservedEmails = new ConcurrentHashMap<>();
+    private final ReentrantLock[] idLocks = new ReentrantLock[ID_LOCKS];
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final AtomicLong writesInFlight = new AtomicLong();
+    // moved by every write, from a random start so a count from before a restart does not come back
+    private final AtomicLong version = new AtomicLong(ThreadLocalRandom.current().nextLong());
+    private final CustomerJournal journal;
+
+    CustomerStore() {
+        this(CustomerJournal.NONE);
+    }
+
+    CustomerStore(CustomerJournal journal) {
+        this.journal = journal;
+        for (int i = 0; i < idLocks.length; i++) {
+            idLocks[i] = new ReentrantLock();
+        }
+    }
+
+    Optional<Customer> get(Long id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(customersById.get(id)).map(Customer::copy);
+    }
+
+    boolean containsId(Long id) {
+        return id != null && customersById.containsKey(id);
+    }
+
+    boolean containsEmail(String email) {
+        return email != null && idsByEmail.containsKey(email);
+    }
+
+    int size() {
+        return customersById.size();
+    }
+
+    Optional<Long> insert(Customer customer) {
+        long id = nextId.getAndIncrement();
+        String email = customer.getEmail();
+        beginWrite();
+        try {
+            if (!reserveEmail(email, id)) {
+                return Optional.empty();
+            }
+            try {
+                Customer stored = customer.copy();
+                stored.setId(id);
+                stored.setVersion(0L);
+                // nobody can see the id yet, so it needs no lock of its own
+                journal.put(stored);
+                journal.awaitDurable();
+                publish(() -> {
+                    customersById.put(id, stored);
+                    idsByEmail.put(email, id);
+                    orderedIds.add(id);
+                });
+            } finally {
+                reservedEmails.remove(email, id);
+            }
+        } finally {
+            endWrite();
+        }
+        customer.setId(id);
+        return Optional.of(id);
+    }
+
+    // a copy read before a later version was put must not replace it, so the later version is kept
+    void put(Customer customer) {
+        Customer stored = customer.copy();
+        if (stored.getVersion() == null) {
+            stored.setVersion(0L);
+        }
+        long id = stored.getId();
+        ReentrantLock lock = lockFor(id);
+        lock.lock();
+        beginWrite();
+        try {
+            Customer previous = customersById.get(id);
+            if (previous != null && previous.getVersion() > stored.getVersion()) {
+                return;
+            }
+            journal.put(stored);
+            journal.awaitDurable();
+            publish(() -> {
+                customersById.put(id, stored);
+                if (previous != null && !previous.getEmail().equals(stored.getEmail())) {
+                    idsByEmail.remove(previous.getEmail(), id);
+                }
+                idsByEmail.put(stored.getEmail(), id);
+                orderedIds.add(id);
+                nextId.accumulateAndGet(id + 1, Math::max);
+            });
+        } finally {
+            endWrite();
+            lock.unlock();
+        }
+    }
+
+    boolean update(Customer changes) {
+        if (changes.getId() == null) {
+            return false;
+        }
+        long id = changes.getId();
+        ReentrantLock lock = lockFor(id);
+        lock.lock();
+        beginWrite();
+        try {
+            Customer existing = customersById.get(id);
+            if (existing == null) {
+                return false;
+            }
+            if (changes.getVersion() != null && !changes.getVersion().equals(existing.getVersion())) {
+                throw new OptimisticLockingFailureException(
+                        "customer [%s] is no longer at version %s".formatted(id, changes.getVersion()));
+            }
+            Customer merged = existing.copy();
+            if (changes.getName() != null) {
+                merged.setName(changes.getName());
+            }
+            if (changes.getAge() != null) {
+                merged.setAge(changes.getAge());
+            }
+            String newEmail = changes.getEmail() != null && !changes.getEmail().equals(existing.getEmail())
+                    ? changes.getEmail()
+                    : null;
+            if (newEmail != null) {
+                if (!reserveEmail(newEmail, id)) {
+                    throw new DuplicateKeyException("email already taken");
+                }
+                merged.setEmail(newEmail);
+            }
+            merged.setVersion(existing.getVersion() + 1);
+            try {
+                journal.put(merged);
+                journal.awaitDurable();
+                publish(() -> {
+                    customersById.put(id, merged);
+                    if (newEmail != null) {
+                        idsByEmail.put(newEmail, id);
+                        idsByEmail.remove(existing.getEmail(), id);
+                    }
+                });
+            } finally {
+                if (newEmail != null) {
+                    reservedEmails.remove(newEmail, id);
+                }
+            }
+            return true;
+        } finally {
+            endWrite();
+            lock.unlock();
+        }
+    }
+
+    boolean delete(Long id) {
+        if (id == null) {
+            return false;
+        }
+        ReentrantLock lock = lockFor(id);
+        lock.lock();
+        beginWrite();
+        try {
+            Customer existing = customersById.get(id);
+            if (existing == null) {
+                return false;
+            }
+            journal.delete(id);
+            journal.awaitDurable();
+            publish(() -> {
+                customersById.remove(id);
+                idsByEmail.remove(existing.getEmail(), id);
+                orderedIds.remove(id);
+            });
+            return true;
+        } finally {
+            endWrite();
+            lock.unlock();
+        }
+    }
+
+    CustomerCollectionVersion collectionVersion() {
+        return new CustomerCollectionVersion(version.get());
+    }
+
+    long nextId() {
+        return nextId.get();
+    }
+
+    // keeps a deleted id from being handed out again after a restart
+    void reserveIdsBelow(long id) {
+        nextId.accumulateAndGet(id, Math::max);
+    }
+
+    List<Customer> afterId(Long afterId, int limit) {
+        List<Customer> page = new ArrayList<>(Math.min(limit, 1024));
+        Iterator<Long> ids = afterId == null
+                ? orderedIds.iterator()
+                : orderedIds.tailSet(afterId, false).iterator();
+        while (ids.hasNext() && page.size() < limit) {
+            Customer customer = customersById.get(ids.next());
+            if (customer != null) {
+                page.add(customer.copy());
+            }
+        }
+        return page;
+    }
+
+    void forEach(Consumer<Customer> consumer) {
+        for (Long id : orderedIds) {
+            Customer customer = customersById.get(id);
+            if (customer != null) {
+                consumer.accept(customer.copy());
+            }
+        }
+    }
+
+    List<Customer> snapshot() {
+        for (int attempt = 0; attempt < SNAPSHOT_ATTEMPTS; attempt++) {
+            long before = version.get();
+            if (writesInFlight.get() == 0) {
+                List<Customer> copy = copyAll();
+                if (writesInFlight.get() == 0 && version.get() == before) {
+                    return copy;
+                }
+            }
+            Thread.onSpinWait();
+        }
+        // a constant stream of writers, fall back to a weakly consistent copy
+        return copyAll();
+    }
+
+    void clear() {
+        beginWrite();
+        try {
+            publish(() -> {
+                customersById.clear();
+                idsByEmail.clear();
+                orderedIds.clear();
+            });
+        } finally {
+            endWrite();
+        }
+    }
+
+    private List<Customer> copyAll() {
+        List<Customer> copy = new ArrayList<>(customersById.size());
+        forEach(copy::add);
+        return copy;
+    }
+
+    // taken once it is stored, or while a write giving it to another customer waits for the journal
+    private boolean reserveEmail(String email, long id) {
+        if (reservedEmails.putIfAbsent(email, id) != null) {
+            return false;
+        }
+        Long owner = idsByEmail.get(email);
+        if (owner != null && owner != id) {
+            reservedEmails.remove(email, id);
+            return false;
+        }
+        return true;
+    }
+
+    private ReentrantLock lockFor(long id) {
+        return idLocks[Long.hashCode(id) & (idLocks.length - 1)];
+    }
+
+    private void beginWrite() {
+        journal.beginWrite();
+    }
+
+    private void publish(Runnable write) {
+        writesInFlight.incrementAndGet();
+        try {
+            write.run();
+        } finally {
+            version.incrementAndGet();
+            writesInFlight.decrementAndGet();
+        }
+    }
+
+    private void endWrite() {
+        journal.endWrite();
+    }
+}
@@ -0,0 +1,540 @@
+package com.artchristian.customer;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Makes the list DAO's CustomerStore survive restarts. Every write is queued as a CustomerLogRecord for a
+ * single writer thread, which takes everything queued since its last sync, appends it to the current log file
+ * and syncs once, so concurrent writers share an fsync. A writer returns once the sync covering its record is
+ * done.
+ * <p>
+ * Every snapshot-interval the log moves on to a new generation while writes are held for a moment, and the
+ * store is then copied into a snapshot in the background. The snapshot covers every older log, which is
+ * deleted. Opening loads the newest snapshot and replays the logs from its generation on. A record holds the
+ * customer as it is after the write, so replaying one the snapshot already has changes nothing.
+ */
+public class CustomerWriteAheadLog implements CustomerJournal, Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerWriteAheadLog.class);
+    private static final Pattern LOG_FILE = Pattern.compile("(\\d{20})\\.log");
+    private static final Pattern SNAPSHOT_FILE = Pattern.compile("(\\d{20})\\.snapshot");
+    private static final int HEADER_BYTES = Integer.BYTES * 2;
+    private static final int SNAPSHOT_BUFFER_BYTES = 1024 * 1024;
+    // queued in place of a record to start the next log generation
+    private static final ByteBuffer ROLL = ByteBuffer.allocate(0);
+
+    private final Path directory;
+    private final int maxBatchSize;
+    private final Duration snapshotInterval;
+    private final ReentrantReadWriteLock cut = new ReentrantReadWriteLock();
+    private final ReentrantLock monitor = new ReentrantLock();
+    private final Condition queued = monitor.newCondition();
+    private final Condition synced = monitor.newCondition();
+    private final ArrayDeque<ByteBuffer> pending = new ArrayDeque<>();
+    private final ThreadLocal<long[]> lastAdded = ThreadLocal.withInitial(() -> new long[1]);
+    private final DistributionSummary batchSize;
+    private final Timer syncTime;
+    private final Timer snapshotTime;
+    private volatile boolean recording;
+    private volatile long durable;
+    private long added;
+    private boolean closing;
+    private IOException failure;
+    private long cutGeneration;
+    private long addedAtLastCut;
+    private CustomerStore store;
+    private FileChannel lockFile;
+    private FileChannel log;
+    private long generation;
+    private Thread writer;
+    private ScheduledExecutorService snapshotter;
+
+    public CustomerWriteAheadLog(CustomerListDurabilityProperties properties, MeterRegistry meterRegistry) {
+        this.directory = Path.of(properties.directory());
+        this.maxBatchSize = properties.maxBatchSize();
+        this.snapshotInterval = properties.snapshotInterval();
+        this.batchSize = DistributionSummary.builder("customer.list.wal.batch.size")
+                .description("records written per log sync")
+                .register(meterRegistry);
+        this.syncTime = Timer.builder("customer.list.wal.sync")
+                .description("time to write and sync one batch of the list DAO log")
+                .register(meterRegistry);
+        this.snapshotTime = Timer.builder("customer.list.wal.snapshot")
+                .description("time to write a snapshot of the list DAO")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Restores the store from the directory and starts recording its writes.
+     */
+    void open(CustomerStore store) {
+        this.store = store;
+        long start = System.nanoTime();
+        try {
+            Files.createDirectories(directory);
+            lockFile = FileChannel.open(directory.resolve("lock"),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            if (lockFile.tryLock() == null) {
+                lockFile.close();
+                throw new IllegalStateException("%s is in use by another process".formatted(directory));
+            }
+            long replayed = recover();
+            // a replayed log is worth a snapshot even before the next write
+            addedAtLastCut = replayed > 0 ? -1 : 0;
+            log = FileChannel.open(logPath(generation), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            syncDirectory();
+        } catch (IOException e) {
+            throw new UncheckedIOException("could not open the customer log in " + directory, e);
+        }
+        cutGeneration = generation;
+        LOGGER.info("Restored {} customers from {} in {}",
+                store.size(), directory, Duration.ofNanos(System.nanoTime() - start));
+
+        recording = true;
+        writer = new Thread(this::writeBatches, "customer-wal-writer");
+        writer.setDaemon(true);
+        writer.start();
+        snapshotter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "customer-wal-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = snapshotInterval.toMillis();
+        snapshotter.scheduleWithFixedDelay(this::snapshotQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void beginWrite() {
+        cut.readLock().lock();
+    }
+
+    @Override
+    public void put(Customer customer) {
+        if (recording) {
+            add(CustomerLogRecord.put(customer));
+        }
+    }
+
+    @Override
+    public void delete(long id) {
+        if (recording) {
+            add(CustomerLogRecord.delete(id));
+        }
+    }
+
+    @Override
+    public void endWrite() {
+        cut.readLock().unlock();
+    }
+
+    @Override
+    public void awaitDurable() {
+        awaitDurable(lastAdded.get()[0]);
+    }
+
+    /**
+     * Starts a new log generation, writes a snapshot that covers the older ones and deletes them. Does
+     * nothing when there has been no write since the last snapshot.
+     */
+    public void snapshot() throws IOException {
+        long snapshotGeneration;
+        long rolled;
+        cut.writeLock().lock();
+        try {
+            // every write queued for the older logs has reached the store by now
+            monitor.lock();
+            try {
+                if (added == addedAtLastCut) {
+                    return;
+                }
+                pending.add(ROLL);
+                rolled = ++added;
+                addedAtLastCut = added;
+                queued.signal();
+            } finally {
+                monitor.unlock();
+            }
+            snapshotGeneration = ++cutGeneration;
+        } finally {
+            cut.writeLock().unlock();
+        }
+        awaitDurable(rolled);
+
+        long start = System.nanoTime();
+        writeSnapshot(snapshotGeneration);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                long fileGeneration = generationOf(file, LOG_FILE, generationOf(file, SNAPSHOT_FILE, Long.MAX_VALUE));
+                if (fileGeneration < snapshotGeneration) {
+                    Files.delete(file);
+                }
+            }
+        }
+        snapshotTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writer == null || !log.isOpen()) {
+            return;
+        }
+        snapshotter.shutdown();
+        try {
+            snapshotter.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        monitor.lock();
+        boolean healthy;
+        try {
+            healthy = failure == null && !closing;
+        } finally {
+            monitor.unlock();
+        }
+        // the next open then has a snapshot to load and an empty log to replay
+        if (healthy) {
+            snapshot();
+        }
+        monitor.lock();
+        try {
+            closing = true;
+            queued.signal();
+        } finally {
+            monitor.unlock();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.close();
+        lockFile.close();
+    }
+
+    private void add(ByteBuffer record) {
+        monitor.lock();
+        try {
+            if (failure != null) {
+                throw new DataAccessResourceFailureException("the customer log failed", failure);
+            }
+            if (closing) {
+                throw new IllegalStateException("the customer log is closed");
+            }
+            pending.add(record);
+            lastAdded.get()[0] = ++added;
+            queued.signal();
+        } finally {
+            monitor.unlock();
+        }
+    }
+
+    private void awaitDurable(long position) {
+        if (position <= durable) {
+            return;
+        }
+        monitor.lock();
+        try {
+            while (durable < position) {
+                if (failure != null) {
+                    throw new DataAccessResourceFailureException("could not write the customer log", failure);
+                }
+                // the store applies the write only once this returns
+                synced.awaitUninterruptibly();
+            }
+        } finally {
+            monitor.unlock();
+        }
+    }
+
+    private void writeBatches() {
+        List<ByteBuffer> batch = new ArrayList<>(maxBatchSize);
+        Frames frames = new Frames();
+        while (true) {
+            long last;
+            monitor.lock();
+            try {
+                while (pending.isEmpty() && !closing) {
+                    queued.awaitUninterruptibly();
+                }
+                if (pending.isEmpty()) {
+                    return;
+                }
+                while (!pending.isEmpty() && batch.size() < maxBatchSize) {
+                    batch.add(pending.poll());
+                }
+                last = durable + batch.size();
+            } finally {
+                monitor.unlock();
+            }
+            long start = System.nanoTime();
+            try {
+                for (ByteBuffer record : batch) {
+                    if (record == ROLL) {
+                        sync(frames);
+                        roll();
+                    } else {
+                        frames.add(record);
+                    }
+                }
+                sync(frames);
+            } catch (IOException e) {
+                LOGGER.error("Could not write the customer log in {}, list DAO writes fail from now on", directory, e);
+                monitor.lock();
+                try {
+                    failure = e;
+                    synced.signalAll();
+                } finally {
+                    monitor.unlock();
+                }
+                return;
+            }
+            syncTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            batchSize.record(batch.size());
+            monitor.lock();
+            try {
+                durable = last;
+                synced.signalAll();
+            } finally {
+                monitor.unlock();
+            }
+            batch.clear();
+        }
+    }
+
+    private void sync(Frames frames) throws IOException {
+        if (frames.isEmpty()) {
+            return;
+        }
+        frames.writeTo(log);
+        log.force(false);
+    }
+
+    private void roll() throws IOException {
+        log.close();
+        generation++;
+        log = FileChannel.open(logPath(generation), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        syncDirectory();
+    }
+
+    private void writeSnapshot(long snapshotGeneration) throws IOException {
+        Path temporary = directory.resolve("%020d.snapshot.tmp".formatted(snapshotGeneration));
+        try (FileChannel channel = FileChannel.open(temporary,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Long.BYTES).putLong(store.nextId()).flip());
+            Frames frames = new Frames();
+            try {
+                store.forEach(customer -> {
+                    frames.add(CustomerLogRecord.put(customer));
+                    if (frames.size() >= SNAPSHOT_BUFFER_BYTES) {
+                        try {
+                            frames.writeTo(channel);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            frames.writeTo(channel);
+            channel.force(true);
+        }
+        Files.move(temporary, directory.resolve("%020d.snapshot".formatted(snapshotGeneration)),
+                StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory();
+    }
+
+    /**
+     * Sets the generation to write next and returns the number of log records replayed.
+     */
+    private long recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            // zero-padded, so name order is generation order
+            files = listing.sorted().toList();
+        }
+        long snapshotGeneration = files.stream()
+                .mapToLong(file -> generationOf(file, SNAPSHOT_FILE, 0))
+                .max()
+                .orElse(0);
+        if (snapshotGeneration > 0) {
+            loadSnapshot(directory.resolve("%020d.snapshot".formatted(snapshotGeneration)));
+        }
+        List<Path> logs = files.stream()
+                .filter(file -> generationOf(file, LOG_FILE, -1) >= snapshotGeneration)
+                .toList();
+        long replayed = 0;
+        for (int i = 0; i < logs.size(); i++) {
+            replayed += replay(logs.get(i), i == logs.size() - 1);
+        }
+        // what a snapshot that was cut short, or the cleanup after one, left behind
+        for (Path file : files) {
+            boolean covered = generationOf(file, LOG_FILE, Long.MAX_VALUE) < snapshotGeneration
+                    || generationOf(file, SNAPSHOT_FILE, Long.MAX_VALUE) < snapshotGeneration;
+            if (covered || file.getFileName().toString().endsWith(".tmp")) {
+                Files.delete(file);
+            }
+        }
+        long lastLog = logs.isEmpty() ? 0 : generationOf(logs.get(logs.size() - 1), LOG_FILE, 0);
+        generation = Math.max(snapshotGeneration, lastLog) + 1;
+        return replayed;
+    }
+
+    private void loadSnapshot(Path snapshot) throws IOException {
+        ByteBuffer content = read(snapshot);
+        store.reserveIdsBelow(content.getLong());
+        while (content.hasRemaining()) {
+            ByteBuffer body = frame(content);
+            if (body == null) {
+                throw new IllegalStateException("%s is corrupt at offset %d".formatted(snapshot, content.position()));
+            }
+            store.put(CustomerLogRecord.decode(body).toCustomer());
+        }
+    }
+
+    /**
+     * Applies the records in file order. A record that fails its checksum can only be the torn last write
+     * before a crash when this is the newest log, so the file is cut off there; in any other log it is
+     * corruption.
+     */
+    private long replay(Path log, boolean newest) throws IOException {
+        ByteBuffer content = read(log);
+        long replayed = 0;
+        while (content.hasRemaining()) {
+            int offset = content.position();
+            ByteBuffer body = frame(content);
+            if (body == null) {
+                if (!newest) {
+                    throw new IllegalStateException("%s is corrupt at offset %d".formatted(log, offset));
+                }
+                LOGGER.warn("Dropping the torn record at offset {} of {}", offset, log);
+                try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+                    channel.truncate(offset);
+                    channel.force(true);
+                }
+                return replayed;
+            }
+            CustomerLogRecord record = CustomerLogRecord.decode(body);
+            if (record.deleted()) {
+                store.delete(record.id());
+                store.reserveIdsBelow(record.id() + 1);
+            } else {
+                store.put(record.toCustomer());
+            }
+            replayed++;
+        }
+        return replayed;
+    }
+
+    // the next record's body, or null when what follows is not a whole record with a matching checksum
+    private static ByteBuffer frame(ByteBuffer content) {
+        if (content.remaining() < HEADER_BYTES) {
+            return null;
+        }
+        int length = content.getInt(content.position());
+        int checksum = content.getInt(content.position() + Integer.BYTES);
+        if (length <= 0 || length > content.remaining() - HEADER_BYTES) {
+            return null;
+        }
+        ByteBuffer body = content.slice(content.position() + HEADER_BYTES, length);
+        CRC32C crc = new CRC32C();
+        crc.update(body.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+        content.position(content.position() + HEADER_BYTES + length);
+        return body;
+    }
+
+    private static ByteBuffer read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static long generationOf(Path file, Pattern pattern, long otherwise) {
+        Matcher matcher = pattern.matcher(file.getFileName().toString());
+        return matcher.matches() ? Long.parseLong(matcher.group(1)) : otherwise;
+    }
+
+    private Path logPath(long logGeneration) {
+        return directory.resolve("%020d.log".formatted(logGeneration));
+    }
+
+    // so a new or renamed file is still there after a crash
+    private void syncDirectory() throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Could not snapshot the customer log in {}", directory, e);
+        }
+    }
+
+    private static final class Frames {
+        private ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+
+        void add(ByteBuffer record) {
+            int length = record.remaining();
+            if (buffer.remaining() < HEADER_BYTES + length) {
+                ByteBuffer larger = ByteBuffer.allocate(
+                        Math.max(buffer.capacity() * 2, buffer.position() + HEADER_BYTES + length));
+                buffer.flip();
+                buffer = larger.put(buffer);
+            }
+            CRC32C crc = new CRC32C();
+            crc.update(record.duplicate());
+            buffer.putInt(length).putInt((int) crc.getValue()).put(record.duplicate());
+        }
+
+        int size() {
+            return buffer.position();
+        }
+
+        boolean isEmpty() {
+            return buffer.position() == 0;
+        }
+
+        void writeTo(FileChannel channel) throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.artchristian.customer;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+public abstract class ForwardingCustomerDao implements CustomerDao {
+
+    private final CustomerDao delegate;
+
+    protected ForwardingCustomerDao(CustomerDao delegate) {
+        this.delegate = delegate;
+    }
+
+    protected CustomerDao delegate() {
+        return delegate;
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return delegate.selectAllCustomers();
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfterId(Long afterId, int limit) {
+        return delegate.selectCustomersAfterId(afterId, limit);
+    }
+
+    @Override
+    public void streamAllCustomers(Consumer<Customer> consumer) {
+        delegate.streamAllCustomers(consumer);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id) {
+        return delegate.selectCustomerById(id);
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(List<Long> ids) {
+        return delegate.selectCustomersByIds(ids);
+    }
+
+    @Override
+    public boolean deleteCustomer(Long id) {
+        return delegate.deleteCustomer(id);
+    }
+
+    @Override
+    public List<Long> deleteCustomersByIds(List<Long> ids) {
+        return delegate.deleteCustomersByIds(ids);
+    }
+
+    @Override
+    public Optional<Long> insertCustomer(Customer customer) {
+        return delegate.insertCustomer(customer);
+    }
+
+    @Override
+    public int[] insertCustomers(List<Customer> customers) {
+        return delegate.insertCustomers(customers);
+    }
+
+    @Override
+    public boolean existsPersonWithEmail(String email) {
+        return delegate.existsPersonWithEmail(email);
+    }
+
+    @Override
+    public boolean existsPersonWithID(Long id) {
+        return delegate.existsPersonWithID(id);
+    }
+
+    @Override
+    public CustomerCollectionVersion selectCollectionVersion() {
+        return delegate.selectCollectionVersion();
+    }
+
+    @Override
+    public void updateCustomer(Customer customer) {
+        delegate.updateCustomer(customer);
+    }
+}
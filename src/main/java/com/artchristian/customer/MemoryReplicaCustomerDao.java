@@ -0,0 +1,256 @@
+package com.artchristian.customer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Serves every read from a full in-memory copy of the customer table and passes writes through to the
+ * database. The copy is loaded in parallel id ranges of chunkSize rows whenever CustomerChangeListener
+ * reports that all customers may have changed, which includes its first connect, and the ids it reports
+ * after that are re-read one batch at a time. Because the listener is already listening when it asks for a load, a row
+ * changed behind a range that was already read comes back as a notification once the load is done.
+ * <p>
+ * A reload builds a new copy while reads carry on against the old one. Until the first load completes
+ * reads go to the database.
+ */
+public class MemoryReplicaCustomerDao extends ForwardingCustomerDao implements CustomerChangeHandler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MemoryReplicaCustomerDao.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CustomerRowMapper customerRowMapper;
+    private final long chunkSize;
+    private final int loadThreads;
+    private final ReentrantLock refreshes = new ReentrantLock();
+    private volatile CustomerStore customers;
+    private volatile Duration lastLoad;
+
+    public MemoryReplicaCustomerDao(CustomerDao delegate,
+                                    JdbcTemplate jdbcTemplate,
+                                    CustomerRowMapper customerRowMapper,
+                                    long chunkSize,
+                                    int loadThreads) {
+        super(delegate);
+        this.jdbcTemplate = jdbcTemplate;
+        this.customerRowMapper = customerRowMapper;
+        this.chunkSize = chunkSize;
+        this.loadThreads = loadThreads;
+    }
+
+    public boolean isLoaded() {
+        return customers != null;
+    }
+
+    public int size() {
+        CustomerStore current = customers;
+        return current == null ? 0 : current.size();
+    }
+
+    public Optional<Duration> lastLoad() {
+        return Optional.ofNullable(lastLoad);
+    }
+
+    @Override
+    public void allCustomersChanged() {
+        long start = System.nanoTime();
+        CustomerStore loaded = load();
+        customers = loaded;
+        lastLoad = Duration.ofNanos(System.nanoTime() - start);
+        LOGGER.info("Loaded {} customers into memory in {}", loaded.size(), lastLoad);
+    }
+
+    @Override
+    public void customersChanged(Collection<Long> ids) {
+        CustomerStore current = customers;
+        if (current != null) {
+            refresh(current, ids);
+        }
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        CustomerStore current = customers;
+        return current == null ? super.selectAllCustomers() : current.snapshot();
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfterId(Long afterId, int limit) {
+        CustomerStore current = customers;
+        return current == null ? super.selectCustomersAfterId(afterId, limit) : current.afterId(afterId, limit);
+    }
+
+    @Override
+    public void streamAllCustomers(Consumer<Customer> consumer) {
+        CustomerStore current = customers;
+        if (current == null) {
+            super.streamAllCustomers(consumer);
+        } else {
+            current.forEach(consumer);
+        }
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id) {
+        CustomerStore current = customers;
+        return current == null ? super.selectCustomerById(id) : current.get(id);
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(List<Long> ids) {
+        CustomerStore current = customers;
+        if (current == null) {
+            return super.selectCustomersByIds(ids);
+        }
+        List<Customer> found = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            current.get(id).ifPresent(found::add);
+        }
+        return found;
+    }
+
+    @Override
+    public boolean existsPersonWithEmail(String email) {
+        CustomerStore current = customers;
+        return current == null ? super.existsPersonWithEmail(email) : current.containsEmail(email);
+    }
+
+    @Override
+    public boolean existsPersonWithID(Long id) {
+        CustomerStore current = customers;
+        return current == null ? super.existsPersonWithID(id) : current.containsId(id);
+    }
+
+    @Override
+    public CustomerCollectionVersion selectCollectionVersion() {
+        CustomerStore current = customers;
+        return current == null
+                ? super.selectCollectionVersion()
+                : current.collectionVersion();
+    }
+
+    // writes are applied locally as well, so this node reads them back before the notification arrives
+
+    @Override
+    public boolean deleteCustomer(Long id) {
+        boolean deleted = super.deleteCustomer(id);
+        CustomerStore current = customers;
+        if (deleted && current != null) {
+            current.delete(id);
+        }
+        return deleted;
+    }
+
+    @Override
+    public List<Long> deleteCustomersByIds(List<Long> ids) {
+        List<Long> deleted = super.deleteCustomersByIds(ids);
+        CustomerStore current = customers;
+        if (current != null) {
+            deleted.forEach(current::delete);
+        }
+        return deleted;
+    }
+
+    @Override
+    public Optional<Long> insertCustomer(Customer customer) {
+        Optional<Long> id = super.insertCustomer(customer);
+        CustomerStore current = customers;
+        if (id.isPresent() && current != null) {
+            refresh(current, List.of(id.get()));
+        }
+        return id;
+    }
+
+    @Override
+    public void updateCustomer(Customer customer) {
+        super.updateCustomer(customer);
+        CustomerStore current = customers;
+        if (current != null) {
+            refresh(current, List.of(customer.getId()));
+        }
+    }
+
+    // Local writes and the listener both refresh. Reading and applying under one lock means a refresh that read
+    // a row before it changed is applied before the refresh triggered by that change reads it, so an old copy can
+    // neither replace a newer version nor bring back a deleted customer.
+    private void refresh(CustomerStore store, Collection<Long> ids) {
+        List<Long> changed = List.copyOf(ids);
+        Set<Long> missing = new HashSet<>(changed);
+        refreshes.lock();
+        try {
+            for (Customer customer : super.selectCustomersByIds(changed)) {
+                store.put(customer);
+                missing.remove(customer.getId());
+            }
+            missing.forEach(store::delete);
+        } finally {
+            refreshes.unlock();
+        }
+    }
+
+    private CustomerStore load() {
+        CustomerStore store = new CustomerStore();
+        // chunks start at every chunkSize-th existing id, so sparse ids cannot blow up the number of chunks
+        List<Long> starts = jdbcTemplate.queryForList("""
+                SELECT id
+                FROM (SELECT id, row_number() OVER (ORDER BY id) AS n FROM customer) ids
+                WHERE n % ? = 1
+                ORDER BY id
+                """, Long.class, chunkSize);
+        var range = """
+                SELECT id, name, email, age, version
+                FROM customer
+                WHERE id >= ? AND id < ?
+                """;
+        var tail = """
+                SELECT id, name, email, age, version
+                FROM customer
+                WHERE id >= ?
+                """;
+        ExecutorService executor = Executors.newFixedThreadPool(loadThreads, runnable -> {
+            Thread thread = new Thread(runnable, "customer-memory-load");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            RowCallbackHandler loadRow = rs -> store.put(customerRowMapper.mapRow(rs, rs.getRow()));
+            List<Future<?>> chunks = new ArrayList<>();
+            for (int i = 0; i < starts.size(); i++) {
+                Long fromId = starts.get(i);
+                if (i + 1 < starts.size()) {
+                    Long toId = starts.get(i + 1);
+                    chunks.add(executor.submit(() -> jdbcTemplate.query(range, loadRow, fromId, toId)));
+                } else {
+                    // the last chunk is open-ended, so rows inserted since the starts were read are not skipped
+                    chunks.add(executor.submit(() -> jdbcTemplate.query(tail, loadRow, fromId)));
+                }
+            }
+            for (Future<?> chunk : chunks) {
+                chunk.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while loading customers", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("could not load customers", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return store;
+    }
+}
@@ -0,0 +1,645 @@
+package com.artchristian.customer;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * The CustomerStore table kept in direct buffers, so the GC sees a handful of buffer objects instead of
+ * several objects per customer. Id, age, version and liveness are columns indexed by row. Name and email
+ * are UTF-8 in an append-only arena, stored together so a row needs one reference and a lookup one more
+ * cache miss. Ids and emails are found through open-addressing indexes that hold row numbers only and
+ * compare against the columns. Customers exist as objects only on the way in and out.
+ * <p>
+ * Rows are appended in id order, which keeps keyset pages a binary search away. Deleted rows and replaced
+ * strings stay behind as garbage until there is more garbage than live data, then everything is rewritten.
+ */
+class OffHeapCustomerStore {
+
+    private static final int INITIAL_ROWS = 1024;
+    private static final int PAGE = 1024;
+    private static final byte LIVE = 1;
+
+    private final StampedLock lock = new StampedLock();
+    private Columns columns = new Columns(INITIAL_ROWS);
+    private Arena arena = new Arena();
+    private RowIndex idIndex = new RowIndex(INITIAL_ROWS, this::idHashOfRow);
+    private RowIndex emailIndex = new RowIndex(INITIAL_ROWS, this::emailHashOfRow);
+    private int rows;
+    private int liveRows;
+    private long deadBytes;
+    private long nextId = 1;
+    // moved by every write, from a random start so a count from before a restart does not come back
+    private long writes = ThreadLocalRandom.current().nextLong();
+
+    Optional<Customer> get(Long id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        long stamp = lock.readLock();
+        try {
+            int row = findId(id);
+            return row < 0 ? Optional.empty() : Optional.of(materialize(row));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    boolean containsId(Long id) {
+        if (id == null) {
+            return false;
+        }
+        long stamp = lock.readLock();
+        try {
+            return findId(id) >= 0;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    boolean containsEmail(String email) {
+        if (email == null) {
+            return false;
+        }
+        byte[] utf8 = email.getBytes(StandardCharsets.UTF_8);
+        long stamp = lock.readLock();
+        try {
+            return findEmail(utf8) >= 0;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    int size() {
+        long stamp = lock.readLock();
+        try {
+            return liveRows;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // capacity of every direct buffer the store holds
+    long offHeapBytes() {
+        long stamp = lock.readLock();
+        try {
+            return columns.bytes() + arena.bytes() + idIndex.bytes() + emailIndex.bytes();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    Optional<Long> insert(Customer customer) {
+        byte[] name = customer.getName().getBytes(StandardCharsets.UTF_8);
+        byte[] email = customer.getEmail().getBytes(StandardCharsets.UTF_8);
+        long stamp = lock.writeLock();
+        try {
+            if (findEmail(email) >= 0) {
+                return Optional.empty();
+            }
+            long id = nextId++;
+            append(id, arena.add(name, email), customer.getAge(), 0L);
+            writes++;
+            customer.setId(id);
+            return Optional.of(id);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Stores the customer under its own id, replacing the row that has it. A new id has to be higher than
+     * every id stored so far.
+     */
+    void put(Customer customer) {
+        long id = customer.getId();
+        long version = customer.getVersion() == null ? 0L : customer.getVersion();
+        byte[] name = customer.getName().getBytes(StandardCharsets.UTF_8);
+        byte[] email = customer.getEmail().getBytes(StandardCharsets.UTF_8);
+        long stamp = lock.writeLock();
+        try {
+            int row = findId(id);
+            int owner = findEmail(email);
+            if (owner >= 0 && owner != row) {
+                throw new DuplicateKeyException("email already taken");
+            }
+            if (row >= 0) {
+                setStrings(row, name, email);
+                columns.setAge(row, customer.getAge());
+                columns.setVersion(row, version);
+                writes++;
+                return;
+            }
+            if (rows > 0 && id <= columns.id(rows - 1)) {
+                throw new IllegalArgumentException(
+                        "customer [%s] is below the highest stored id %s".formatted(id, columns.id(rows - 1)));
+            }
+            append(id, arena.add(name, email), customer.getAge(), version);
+            nextId = Math.max(nextId, id + 1);
+            writes++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    boolean update(Customer changes) {
+        if (changes.getId() == null) {
+            return false;
+        }
+        byte[] name = changes.getName() == null ? null : changes.getName().getBytes(StandardCharsets.UTF_8);
+        byte[] email = changes.getEmail() == null ? null : changes.getEmail().getBytes(StandardCharsets.UTF_8);
+        long stamp = lock.writeLock();
+        try {
+            int row = findId(changes.getId());
+            if (row < 0) {
+                return false;
+            }
+            long version = columns.version(row);
+            if (changes.getVersion() != null && changes.getVersion() != version) {
+                throw new OptimisticLockingFailureException(
+                        "customer [%s] is no longer at version %s".formatted(changes.getId(), changes.getVersion()));
+            }
+            long strings = columns.strings(row);
+            if (email != null && !arena.emailEquals(strings, email) && findEmail(email) >= 0) {
+                throw new DuplicateKeyException("email already taken");
+            }
+            if (name != null || email != null) {
+                setStrings(row,
+                        name == null ? arena.name(strings) : name,
+                        email == null ? arena.email(strings) : email);
+            }
+            if (changes.getAge() != null) {
+                columns.setAge(row, changes.getAge());
+            }
+            columns.setVersion(row, version + 1);
+            writes++;
+            compactIfMostlyGarbage();
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    boolean delete(Long id) {
+        if (id == null) {
+            return false;
+        }
+        long stamp = lock.writeLock();
+        try {
+            int row = findId(id);
+            if (row < 0) {
+                return false;
+            }
+            idIndex.remove(idHashOfRow(row), row);
+            emailIndex.remove(emailHashOfRow(row), row);
+            columns.live.put(row, (byte) 0);
+            deadBytes += arena.sizeOf(columns.strings(row));
+            liveRows--;
+            writes++;
+            compactIfMostlyGarbage();
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    CustomerCollectionVersion collectionVersion() {
+        long stamp = lock.readLock();
+        try {
+            return new CustomerCollectionVersion(writes);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    List<Customer> afterId(Long afterId, int limit) {
+        long stamp = lock.readLock();
+        try {
+            List<Customer> page = new ArrayList<>(Math.min(limit, PAGE));
+            for (int row = firstRowAfter(afterId == null ? Long.MIN_VALUE : afterId);
+                 row < rows && page.size() < limit; row++) {
+                if (columns.live.get(row) == LIVE) {
+                    page.add(materialize(row));
+                }
+            }
+            return page;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // a page at a time, so a slow consumer does not hold off writers
+    void forEach(Consumer<Customer> consumer) {
+        Long after = null;
+        List<Customer> page;
+        do {
+            page = afterId(after, PAGE);
+            page.forEach(consumer);
+            after = page.isEmpty() ? null : page.get(page.size() - 1).getId();
+        } while (page.size() == PAGE);
+    }
+
+    List<Customer> snapshot() {
+        long stamp = lock.readLock();
+        try {
+            List<Customer> copy = new ArrayList<>(liveRows);
+            for (int row = 0; row < rows; row++) {
+                if (columns.live.get(row) == LIVE) {
+                    copy.add(materialize(row));
+                }
+            }
+            return copy;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    void clear() {
+        long stamp = lock.writeLock();
+        try {
+            reset(INITIAL_ROWS);
+            writes++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void reset(int capacity) {
+        columns = new Columns(capacity);
+        arena = new Arena();
+        idIndex = new RowIndex(capacity, this::idHashOfRow);
+        emailIndex = new RowIndex(capacity, this::emailHashOfRow);
+        rows = 0;
+        liveRows = 0;
+        deadBytes = 0;
+    }
+
+    private void append(long id, long strings, int age, long version) {
+        if (rows == columns.capacity) {
+            columns = columns.grow(rows, rows * 2);
+        }
+        int row = rows++;
+        columns.ids.putLong(row * Long.BYTES, id);
+        columns.setAge(row, age);
+        columns.setVersion(row, version);
+        columns.strings.putLong(row * Long.BYTES, strings);
+        columns.live.put(row, LIVE);
+        liveRows++;
+        idIndex = idIndex.add(idHashOfRow(row), row);
+        emailIndex = emailIndex.add(emailHashOfRow(row), row);
+    }
+
+    private void setStrings(int row, byte[] name, byte[] email) {
+        long previous = columns.strings(row);
+        if (arena.nameEquals(previous, name) && arena.emailEquals(previous, email)) {
+            return;
+        }
+        emailIndex.remove(emailHashOfRow(row), row);
+        deadBytes += arena.sizeOf(previous);
+        columns.strings.putLong(row * Long.BYTES, arena.add(name, email));
+        emailIndex = emailIndex.add(emailHashOfRow(row), row);
+    }
+
+    private int findId(long id) {
+        return idIndex.find(hash(Long.hashCode(id)), row -> columns.id(row) == id);
+    }
+
+    private int findEmail(byte[] email) {
+        return emailIndex.find(hash(Arena.hashCode(email)), row -> arena.emailEquals(columns.strings(row), email));
+    }
+
+    private int idHashOfRow(int row) {
+        return hash(Long.hashCode(columns.id(row)));
+    }
+
+    private int emailHashOfRow(int row) {
+        return hash(arena.emailHashCode(columns.strings(row)));
+    }
+
+    private int firstRowAfter(long afterId) {
+        int low = 0;
+        int high = rows;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (columns.id(middle) <= afterId) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private Customer materialize(int row) {
+        long strings = columns.strings(row);
+        return new Customer(
+                columns.id(row),
+                new String(arena.name(strings), StandardCharsets.UTF_8),
+                new String(arena.email(strings), StandardCharsets.UTF_8),
+                columns.age(row),
+                columns.version(row));
+    }
+
+    private void compactIfMostlyGarbage() {
+        int deadRows = rows - liveRows;
+        boolean rowsMostlyDead = deadRows > liveRows && deadRows >= INITIAL_ROWS;
+        boolean arenaMostlyDead = deadBytes > arena.used() - deadBytes && deadBytes >= Arena.FIRST_SEGMENT;
+        if (!rowsMostlyDead && !arenaMostlyDead) {
+            return;
+        }
+        Columns previous = columns;
+        Arena previousArena = arena;
+        int previousRows = rows;
+        reset(Math.max(INITIAL_ROWS, Integer.highestOneBit(Math.max(1, liveRows)) * 2));
+        for (int row = 0; row < previousRows; row++) {
+            if (previous.live.get(row) == LIVE) {
+                long strings = previous.strings(row);
+                append(previous.id(row),
+                        arena.add(previousArena.name(strings), previousArena.email(strings)),
+                        previous.age(row),
+                        previous.version(row));
+            }
+        }
+    }
+
+    private static int hash(int hashCode) {
+        int mixed = hashCode * 0x9E3779B9;
+        return mixed ^ (mixed >>> 16);
+    }
+
+    private static final class Columns {
+        private static final int ROW_BYTES = Long.BYTES * 3 + Integer.BYTES + 1;
+
+        private final int capacity;
+        private final ByteBuffer ids;
+        private final ByteBuffer ages;
+        private final ByteBuffer versions;
+        private final ByteBuffer strings;
+        private final ByteBuffer live;
+
+        Columns(int capacity) {
+            this.capacity = capacity;
+            this.ids = ByteBuffer.allocateDirect(capacity * Long.BYTES);
+            this.ages = ByteBuffer.allocateDirect(capacity * Integer.BYTES);
+            this.versions = ByteBuffer.allocateDirect(capacity * Long.BYTES);
+            this.strings = ByteBuffer.allocateDirect(capacity * Long.BYTES);
+            this.live = ByteBuffer.allocateDirect(capacity);
+        }
+
+        long id(int row) {
+            return ids.getLong(row * Long.BYTES);
+        }
+
+        int age(int row) {
+            return ages.getInt(row * Integer.BYTES);
+        }
+
+        void setAge(int row, int age) {
+            ages.putInt(row * Integer.BYTES, age);
+        }
+
+        long version(int row) {
+            return versions.getLong(row * Long.BYTES);
+        }
+
+        void setVersion(int row, long version) {
+            versions.putLong(row * Long.BYTES, version);
+        }
+
+        long strings(int row) {
+            return strings.getLong(row * Long.BYTES);
+        }
+
+        Columns grow(int rows, int capacity) {
+            Columns grown = new Columns(capacity);
+            grown.ids.put(0, ids, 0, rows * Long.BYTES);
+            grown.ages.put(0, ages, 0, rows * Integer.BYTES);
+            grown.versions.put(0, versions, 0, rows * Long.BYTES);
+            grown.strings.put(0, strings, 0, rows * Long.BYTES);
+            grown.live.put(0, live, 0, rows);
+            return grown;
+        }
+
+        long bytes() {
+            return (long) capacity * ROW_BYTES;
+        }
+    }
+
+    /**
+     * Name and email records, each string length-prefixed, in segments that double in size up to 64 MiB and
+     * are never copied. A reference is the segment number in the high int and the offset in the low int.
+     */
+    private static final class Arena {
+        private static final int FIRST_SEGMENT = 64 * 1024;
+        private static final int MAX_SEGMENT = 64 * 1024 * 1024;
+
+        private final List<ByteBuffer> segments = new ArrayList<>();
+        private ByteBuffer current;
+        private long used;
+
+        Arena() {
+            addSegment(FIRST_SEGMENT);
+        }
+
+        long add(byte[] name, byte[] email) {
+            int size = Integer.BYTES * 2 + name.length + email.length;
+            if (current.remaining() < size) {
+                addSegment(Math.max(size, Math.min(MAX_SEGMENT, current.capacity() * 2)));
+            }
+            int offset = current.position();
+            current.putInt(name.length).put(name).putInt(email.length).put(email);
+            used += size;
+            return ((long) (segments.size() - 1) << 32) | offset;
+        }
+
+        byte[] name(long reference) {
+            return read(segment(reference), offset(reference));
+        }
+
+        byte[] email(long reference) {
+            ByteBuffer segment = segment(reference);
+            return read(segment, emailOffset(segment, offset(reference)));
+        }
+
+        boolean nameEquals(long reference, byte[] utf8) {
+            return equals(segment(reference), offset(reference), utf8);
+        }
+
+        boolean emailEquals(long reference, byte[] utf8) {
+            ByteBuffer segment = segment(reference);
+            return equals(segment, emailOffset(segment, offset(reference)), utf8);
+        }
+
+        // same value as hashCode(byte[]) for the stored email
+        int emailHashCode(long reference) {
+            ByteBuffer segment = segment(reference);
+            int offset = emailOffset(segment, offset(reference));
+            int length = segment.getInt(offset);
+            int hash = 1;
+            for (int i = 0; i < length; i++) {
+                hash = 31 * hash + segment.get(offset + Integer.BYTES + i);
+            }
+            return hash;
+        }
+
+        static int hashCode(byte[] utf8) {
+            int hash = 1;
+            for (byte b : utf8) {
+                hash = 31 * hash + b;
+            }
+            return hash;
+        }
+
+        int sizeOf(long reference) {
+            ByteBuffer segment = segment(reference);
+            int offset = offset(reference);
+            int emailOffset = emailOffset(segment, offset);
+            return emailOffset - offset + Integer.BYTES + segment.getInt(emailOffset);
+        }
+
+        long used() {
+            return used;
+        }
+
+        long bytes() {
+            long bytes = 0;
+            for (ByteBuffer segment : segments) {
+                bytes += segment.capacity();
+            }
+            return bytes;
+        }
+
+        private void addSegment(int capacity) {
+            current = ByteBuffer.allocateDirect(capacity);
+            segments.add(current);
+        }
+
+        private ByteBuffer segment(long reference) {
+            return segments.get((int) (reference >>> 32));
+        }
+
+        private static int offset(long reference) {
+            return (int) reference;
+        }
+
+        private static int emailOffset(ByteBuffer segment, int offset) {
+            return offset + Integer.BYTES + segment.getInt(offset);
+        }
+
+        private static byte[] read(ByteBuffer segment, int offset) {
+            byte[] utf8 = new byte[segment.getInt(offset)];
+            segment.get(offset + Integer.BYTES, utf8);
+            return utf8;
+        }
+
+        private static boolean equals(ByteBuffer segment, int offset, byte[] utf8) {
+            if (segment.getInt(offset) != utf8.length) {
+                return false;
+            }
+            for (int i = 0; i < utf8.length; i++) {
+                if (segment.get(offset + Integer.BYTES + i) != utf8[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Linear probing table of row numbers, kept at most half full. Keys live in the columns, so lookups
+     * pass in a test for the row and removals shift later entries back instead of leaving tombstones.
+     */
+    private static final class RowIndex {
+        private static final int EMPTY = -1;
+
+        private final ByteBuffer slots;
+        private final int mask;
+        private final IntUnaryOperator hashOfRow;
+        private int size;
+
+        RowIndex(int minimumCapacity, IntUnaryOperator hashOfRow) {
+            int capacity = Integer.highestOneBit(Math.max(16, minimumCapacity * 2 - 1)) * 2;
+            this.slots = ByteBuffer.allocateDirect(capacity * Integer.BYTES);
+            this.mask = capacity - 1;
+            this.hashOfRow = hashOfRow;
+            for (int slot = 0; slot < capacity; slot++) {
+                slots.putInt(slot * Integer.BYTES, EMPTY);
+            }
+        }
+
+        int find(int hash, IntPredicate matches) {
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                int row = slots.getInt(slot * Integer.BYTES);
+                if (row == EMPTY) {
+                    return -1;
+                }
+                if (matches.test(row)) {
+                    return row;
+                }
+            }
+        }
+
+        // returns the index to keep using, a larger copy once this one is half full
+        RowIndex add(int hash, int row) {
+            if ((size + 1) * 2 > mask + 1) {
+                RowIndex grown = new RowIndex(mask + 1, hashOfRow);
+                for (int slot = 0; slot <= mask; slot++) {
+                    int existing = slots.getInt(slot * Integer.BYTES);
+                    if (existing != EMPTY) {
+                        grown.put(hashOfRow.applyAsInt(existing), existing);
+                    }
+                }
+                grown.put(hash, row);
+                return grown;
+            }
+            put(hash, row);
+            return this;
+        }
+
+        void remove(int hash, int row) {
+            int slot = hash & mask;
+            while (slots.getInt(slot * Integer.BYTES) != row) {
+                slot = (slot + 1) & mask;
+            }
+            int gap = slot;
+            for (int next = (gap + 1) & mask; ; next = (next + 1) & mask) {
+                int candidate = slots.getInt(next * Integer.BYTES);
+                if (candidate == EMPTY) {
+                    break;
+                }
+                int home = hashOfRow.applyAsInt(candidate) & mask;
+                // move it into the gap unless its home lies cyclically in (gap, next]
+                boolean homeBetween = gap <= next ? (home > gap && home <= next) : (home > gap || home <= next);
+                if (!homeBetween) {
+                    slots.putInt(gap * Integer.BYTES, candidate);
+                    gap = next;
+                }
+            }
+            slots.putInt(gap * Integer.BYTES, EMPTY);
+            size--;
+        }
+
+        long bytes() {
+            return (long) (mask + 1) * Integer.BYTES;
+        }
+
+        private void put(int hash, int row) {
+            int slot = hash & mask;
+            while (slots.getInt(slot * Integer.BYTES) != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            slots.putInt(slot * Integer.BYTES, row);
+            size++;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.artchristian.customer;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("api/v1/reactive/customers")
+public class ReactiveCustomerController {
+
+    private final ReactiveCustomerService customerService;
+
+    public ReactiveCustomerController(ReactiveCustomerService customerService) {
+        this.customerService = customerService;
+    }
+
+    // one line per customer, written as rows arrive and pulled only as fast as the client reads
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Customer> streamCustomers(){
+        return customerService.getAllCustomers();
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<List<Customer>> getCustomers(){
+        return customerService.getAllCustomers().collectList();
+    }
+
+    @GetMapping(params = "limit")
+    public Mono<CustomerPage> getCustomersPage(
+            @RequestParam(value = "after", required = false) Long after,
+            @RequestParam("limit") Integer limit){
+        return customerService.getCustomersPage(after, limit);
+    }
+
+    @GetMapping("{customerId}")
+    public Mono<Customer> getCustomer(
+            @PathVariable("customerId") Long customerId){
+        return customerService.getCustomer(customerId);
+    }
+
+    @PostMapping
+    public Mono<Void> registerCustomer(
+            @RequestBody CustomerRegistrationRequest request){
+        return customerService.addCustomer(request);
+    }
+
+    @DeleteMapping("{customerId}")
+    public Mono<Void> deleteCustomer(@PathVariable("customerId") Long customerId){
+        return customerService.deleteCustomerByID(customerId);
+    }
+
+    @PutMapping("{customerId}")
+    public Mono<Void> updateCustomer(
+            @PathVariable("customerId") Long customerId,
+            @RequestBody CustomerUpdateRequest customerUpdateRequest){
+        return customerService.updateCustomerById(customerId, customerUpdateRequest);
+    }
+}
@@ -0,0 +1,14 @@
+package com.artchristian.customer;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveCustomerDao {
+    Flux<Customer> selectAllCustomers();
+    Flux<Customer> selectCustomersAfterId(Long afterId, int limit);
+    Mono<Customer> selectCustomerById(Long id);
+    Mono<Boolean> deleteCustomer(Long id);
+    Mono<Long> insertCustomer(Customer customer);
+    Mono<Boolean> existsPersonWithID(Long id);
+    Mono<Void> updateCustomer(Customer customer);
+}
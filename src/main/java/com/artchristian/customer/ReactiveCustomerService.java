@@ -0,0 +1,107 @@
+package com.artchristian.customer;
+
+import com.artchristian.exception.BadRequestException;
+import com.artchristian.exception.DuplicateResourceException;
+import com.artchristian.exception.ResourceNotFoundException;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+@Service
+public class ReactiveCustomerService {
+
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private final ReactiveCustomerDao customerDao;
+
+    public ReactiveCustomerService(@Qualifier("r2dbc") ReactiveCustomerDao customerDao) {
+        this.customerDao = customerDao;
+    }
+
+    public Flux<Customer> getAllCustomers(){
+        return customerDao.selectAllCustomers();
+    }
+
+    public Mono<CustomerPage> getCustomersPage(Long after, Integer limit){
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        if(pageSize < 1 || pageSize > MAX_PAGE_SIZE){
+            return Mono.error(new BadRequestException(
+                    "limit must be between 1 and %s".formatted(MAX_PAGE_SIZE)));
+        }
+        return customerDao.selectCustomersAfterId(after, pageSize)
+                .collectList()
+                .map(customers -> new CustomerPage(customers, nextCursor(customers, pageSize)));
+    }
+
+    public Mono<Customer> getCustomer(Long id){
+        return customerDao.selectCustomerById(id)
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException(
+                        "Customer with ID [%s] is not found".formatted(id))));
+    }
+
+    public Mono<Void> addCustomer(CustomerRegistrationRequest customerRegistrationRequest) {
+        Customer customer = new Customer(
+                customerRegistrationRequest.name(),
+                customerRegistrationRequest.email(),
+                customerRegistrationRequest.age()
+        );
+        return customerDao.insertCustomer(customer)
+                .switchIfEmpty(Mono.error(() -> new DuplicateResourceException(
+                        "email already taken")))
+                .then();
+    }
+
+    public Mono<Void> deleteCustomerByID(Long id){
+        return customerDao.deleteCustomer(id)
+                .flatMap(deleted -> deleted
+                        ? Mono.<Void>empty()
+                        : Mono.error(new ResourceNotFoundException(
+                                "Customer with ID [%s] is not found".formatted(id))));
+    }
+
+    public Mono<Void> updateCustomerById(Long id,
+                                         CustomerUpdateRequest customerUpdateRequest){
+        return getCustomer(id).flatMap(customerData -> {
+            Customer changes = new Customer();
+            changes.setId(id);
+            boolean isChanged = false;
+
+            if(customerUpdateRequest.name()!= null && !customerUpdateRequest.name().equals(customerData.getName())){
+                changes.setName(customerUpdateRequest.name());
+                isChanged = true;
+            }
+
+            if(customerUpdateRequest.email()!= null && !customerUpdateRequest.email().equals(customerData.getEmail())){
+                changes.setEmail(customerUpdateRequest.email());
+                isChanged = true;
+            }
+
+            if(customerUpdateRequest.age()!= null && !customerUpdateRequest.age().equals(customerData.getAge())){
+                changes.setAge(customerUpdateRequest.age());
+                isChanged = true;
+            }
+
+            if(!isChanged){
+                return Mono.error(new BadRequestException("no data changes found"));
+            }
+
+            return customerDao.updateCustomer(changes)
+                    .onErrorMap(DuplicateKeyException.class,
+                            e -> new DuplicateResourceException("email already taken"))
+                    .onErrorMap(EmptyResultDataAccessException.class,
+                            e -> new ResourceNotFoundException("Customer with ID [%s] is not found".formatted(id)));
+        });
+    }
+
+    private static Long nextCursor(List<Customer> customers, int pageSize) {
+        return customers.size() < pageSize
+                ? null
+                : customers.get(customers.size() - 1).getId();
+    }
+}
@@ -0,0 +1,70 @@
+package com.artchristian.customer;
+
+import java.util.function.Supplier;
+
+/**
+ * Per-thread hints for ReplicaRoutingDataSource. Work wrapped in {@link #read} may be served by a replica,
+ * everything else goes to the primary, and so does all work on a thread pinned to the primary or wrapped in
+ * {@link #cacheFill}.
+ */
+final class ReplicaRouting {
+
+    private static final ThreadLocal<Boolean> READ = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> PINNED = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> CACHE_FILL = new ThreadLocal<>();
+
+    private ReplicaRouting() {
+    }
+
+    static <T> T read(Supplier<T> work) {
+        if (READ.get() != null) {
+            return work.get();
+        }
+        READ.set(Boolean.TRUE);
+        try {
+            return work.get();
+        } finally {
+            READ.remove();
+        }
+    }
+
+    static void read(Runnable work) {
+        read(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    // a row read from a lagging replica would be cached long after the replica caught up
+    static <T> T cacheFill(Supplier<T> work) {
+        if (CACHE_FILL.get() != null) {
+            return work.get();
+        }
+        CACHE_FILL.set(Boolean.TRUE);
+        try {
+            return work.get();
+        } finally {
+            CACHE_FILL.remove();
+        }
+    }
+
+    static boolean isRead() {
+        return READ.get() != null;
+    }
+
+    static void pinToPrimary() {
+        PINNED.set(Boolean.TRUE);
+    }
+
+    static void unpin() {
+        PINNED.remove();
+    }
+
+    static boolean isPinnedToPrimary() {
+        return PINNED.get() != null;
+    }
+
+    static boolean isCacheFill() {
+        return CACHE_FILL.get() != null;
+    }
+}
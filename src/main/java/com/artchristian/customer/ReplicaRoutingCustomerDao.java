@@ -0,0 +1,57 @@
+package com.artchristian.customer;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Marks the read-only calls so ReplicaRoutingDataSource may send them to a replica. It sits right above the
+ * implementation, which means a read running inside a write transaction keeps the primary connection it
+ * already holds.
+ */
+public class ReplicaRoutingCustomerDao extends ForwardingCustomerDao {
+
+    public ReplicaRoutingCustomerDao(CustomerDao delegate) {
+        super(delegate);
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return ReplicaRouting.read(super::selectAllCustomers);
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfterId(Long afterId, int limit) {
+        return ReplicaRouting.read(() -> super.selectCustomersAfterId(afterId, limit));
+    }
+
+    @Override
+    public void streamAllCustomers(Consumer<Customer> consumer) {
+        ReplicaRouting.read(() -> super.streamAllCustomers(consumer));
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id) {
+        return ReplicaRouting.read(() -> super.selectCustomerById(id));
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(List<Long> ids) {
+        return ReplicaRouting.read(() -> super.selectCustomersByIds(ids));
+    }
+
+    @Override
+    public boolean existsPersonWithEmail(String email) {
+        return ReplicaRouting.read(() -> super.existsPersonWithEmail(email));
+    }
+
+    @Override
+    public boolean existsPersonWithID(Long id) {
+        return ReplicaRouting.read(() -> super.existsPersonWithID(id));
+    }
+
+    @Override
+    public CustomerCollectionVersion selectCollectionVersion() {
+        return ReplicaRouting.read(super::selectCollectionVersion);
+    }
+}
@@ -0,0 +1,190 @@
+package com.artchristian.customer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends connections for reads marked through ReplicaRouting to the replicas in turn and everything else to
+ * the primary. A replica is only used while its last lag check succeeded and came in under the max lag.
+ * When no replica qualifies the read goes to the primary.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+    static final String PRIMARY = "primary";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+    private static final long UNAVAILABLE = -1;
+    // a replica that has replayed everything it received is as current as the primary, even when the primary
+    // has been idle and the last replayed transaction is old. That only holds while it is still receiving: a
+    // replica cut off from the primary has replayed all it got too, so without a streaming WAL receiver the
+    // lag is unknown (NULL). Seeing the receiver's status takes pg_read_all_stats, without it the replica is
+    // never used.
+    private static final String LAG_SQL = """
+            SELECT CASE
+                WHEN NOT pg_is_in_recovery() THEN 0
+                WHEN NOT EXISTS (SELECT 1 FROM pg_stat_wal_receiver WHERE status = 'streaming') THEN NULL
+                WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0)
+            END
+            """;
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final long maxLagMillis;
+    private final AtomicInteger next = new AtomicInteger();
+    private final Counter writes;
+    private final Counter sticky;
+    private final Counter cacheFill;
+    private final Counter noReplica;
+    private ScheduledExecutorService monitor;
+
+    public ReplicaRoutingDataSource(DataSource primary,
+                                    Map<String, DataSource> replicas,
+                                    Duration maxLag,
+                                    MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.maxLagMillis = maxLag.toMillis();
+        this.writes = connections(meterRegistry, PRIMARY, "write");
+        this.sticky = connections(meterRegistry, PRIMARY, "sticky");
+        this.cacheFill = connections(meterRegistry, PRIMARY, "cache_fill");
+        this.noReplica = connections(meterRegistry, PRIMARY, "no_replica");
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        replicas.forEach((name, dataSource) -> {
+            Replica replica = new Replica(name, dataSource, connections(meterRegistry, name, "read"));
+            this.replicas.add(replica);
+            targets.put(name, dataSource);
+            Gauge.builder("customer.datasource.replica.lag", replica, Replica::lagForGauge)
+                    .description("replay lag of the replica at the last check, NaN while it is unreachable")
+                    .baseUnit("milliseconds")
+                    .tag("pool", name)
+                    .register(meterRegistry);
+        });
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    public void startLagChecks(Duration interval) {
+        monitor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-lag-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        monitor.scheduleWithFixedDelay(this::checkLag, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    void checkLag() {
+        for (Replica replica : replicas) {
+            long lag;
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery(LAG_SQL)) {
+                rs.next();
+                lag = rs.getLong(1);
+                if (rs.wasNull()) {
+                    if (replica.lagMillis != UNAVAILABLE) {
+                        LOGGER.warn("Replica {} is not streaming from the primary, reads go to the other pools",
+                                replica.name);
+                    }
+                    lag = UNAVAILABLE;
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (replica.lagMillis != UNAVAILABLE) {
+                    LOGGER.warn("Replica {} is unreachable, reads go to the other pools", replica.name, e);
+                }
+                lag = UNAVAILABLE;
+            }
+            replica.lagMillis = lag;
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!ReplicaRouting.isRead()) {
+            writes.increment();
+            return PRIMARY;
+        }
+        if (ReplicaRouting.isPinnedToPrimary()) {
+            sticky.increment();
+            return PRIMARY;
+        }
+        if (ReplicaRouting.isCacheFill()) {
+            cacheFill.increment();
+            return PRIMARY;
+        }
+        int size = replicas.size();
+        int start = size == 0 ? 0 : Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.lagMillis != UNAVAILABLE && replica.lagMillis <= maxLagMillis) {
+                replica.reads.increment();
+                return replica.name;
+            }
+        }
+        noReplica.increment();
+        return PRIMARY;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (monitor != null) {
+            monitor.shutdownNow();
+        }
+        for (Replica replica : replicas) {
+            close(replica.dataSource);
+        }
+        close(primary);
+    }
+
+    private static void close(DataSource dataSource) throws Exception {
+        if (dataSource instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    private static Counter connections(MeterRegistry meterRegistry, String pool, String reason) {
+        return Counter.builder("customer.datasource.connections")
+                .description("connections handed out by the routing data source")
+                .tag("pool", pool)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    private static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private final Counter reads;
+        // unknown until the first check
+        private volatile long lagMillis = UNAVAILABLE;
+
+        Replica(String name, DataSource dataSource, Counter reads) {
+            this.name = name;
+            this.dataSource = dataSource;
+            this.reads = reads;
+        }
+
+        double lagForGauge() {
+            return lagMillis == UNAVAILABLE ? Double.NaN : lagMillis;
+        }
+    }
+}
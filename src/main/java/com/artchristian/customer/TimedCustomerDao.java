@@ -0,0 +1,113 @@
+package com.artchristian.customer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+public class TimedCustomerDao extends ForwardingCustomerDao {
+
+    static final String METRIC_NAME = "customer.dao";
+
+    private final MeterRegistry meterRegistry;
+    private final String dao;
+
+    public TimedCustomerDao(CustomerDao delegate, MeterRegistry meterRegistry, String dao) {
+        super(delegate);
+        this.meterRegistry = meterRegistry;
+        this.dao = dao;
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return record("selectAllCustomers", super::selectAllCustomers);
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfterId(Long afterId, int limit) {
+        return record("selectCustomersAfterId", () -> super.selectCustomersAfterId(afterId, limit));
+    }
+
+    @Override
+    public void streamAllCustomers(Consumer<Customer> consumer) {
+        record("streamAllCustomers", () -> super.streamAllCustomers(consumer));
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id) {
+        return record("selectCustomerById", () -> super.selectCustomerById(id));
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(List<Long> ids) {
+        return record("selectCustomersByIds", () -> super.selectCustomersByIds(ids));
+    }
+
+    @Override
+    public boolean deleteCustomer(Long id) {
+        return record("deleteCustomer", () -> super.deleteCustomer(id));
+    }
+
+    @Override
+    public List<Long> deleteCustomersByIds(List<Long> ids) {
+        return record("deleteCustomersByIds", () -> super.deleteCustomersByIds(ids));
+    }
+
+    @Override
+    public Optional<Long> insertCustomer(Customer customer) {
+        return record("insertCustomer", () -> super.insertCustomer(customer));
+    }
+
+    @Override
+    public int[] insertCustomers(List<Customer> customers) {
+        return record("insertCustomers", () -> super.insertCustomers(customers));
+    }
+
+    @Override
+    public boolean existsPersonWithEmail(String email) {
+        return record("existsPersonWithEmail", () -> super.existsPersonWithEmail(email));
+    }
+
+    @Override
+    public boolean existsPersonWithID(Long id) {
+        return record("existsPersonWithID", () -> super.existsPersonWithID(id));
+    }
+
+    @Override
+    public CustomerCollectionVersion selectCollectionVersion() {
+        return record("selectCollectionVersion", super::selectCollectionVersion);
+    }
+
+    @Override
+    public void updateCustomer(Customer customer) {
+        record("updateCustomer", () -> super.updateCustomer(customer));
+    }
+
+    private void record(String method, Runnable call) {
+        record(method, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    private <T> T record(String method, Supplier<T> call) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String exception = "none";
+        try {
+            return call.get();
+        } catch (RuntimeException e) {
+            exception = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            sample.stop(Timer.builder(METRIC_NAME)
+                    .description("CustomerDao calls")
+                    .tags("dao", dao, "method", method, "exception", exception)
+                    .publishPercentiles(0.5, 0.99, 0.999)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+    }
+}
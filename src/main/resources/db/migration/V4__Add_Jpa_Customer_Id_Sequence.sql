@@ -0,0 +1,11 @@
+-- Hibernate takes pooled blocks of 50 ids from its own sequence while the column default keeps handing out one id
+-- per insert. Both feed the same id column, so the default stays below 2^52 and the JPA blocks start at 2^52. Every
+-- id stays below 2^53, the largest integer a JavaScript client reads back exactly.
+ALTER SEQUENCE customer_id_seq MAXVALUE 4503599627370495;
+
+-- the pooled optimizer takes each value as the top of its block, so the first block is 2^52 to 2^52 + 49
+CREATE SEQUENCE customer_jpa_id_seq
+    INCREMENT BY 50
+    START WITH 4503599627370545
+    MAXVALUE 9007199254740991
+    OWNED BY customer.id;
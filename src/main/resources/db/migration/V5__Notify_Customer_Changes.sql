@@ -0,0 +1,64 @@
+-- every statement that writes customers logs the ids it changed as one row and announces its seq, so listeners
+-- evict what changed and replay the log after a reconnect
+CREATE TABLE customer_change(
+    seq BIGSERIAL PRIMARY KEY,
+    customer_ids BIGINT[] NOT NULL,
+    changed_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+CREATE INDEX customer_change_changed_at_idx ON customer_change(changed_at);
+
+-- the triggers skip the change log until a CustomerChangeListener turns it on, so nodes without one pay a lookup
+-- of this row per statement instead of a log row and a notification
+CREATE TABLE customer_change_setting(
+    id BOOLEAN PRIMARY KEY DEFAULT TRUE CHECK (id),
+    enabled BOOLEAN NOT NULL
+);
+
+INSERT INTO customer_change_setting(enabled) VALUES (FALSE);
+
+-- a payload is limited to 8000 bytes, so it only carries the seq and the listener reads the ids from the log
+CREATE FUNCTION notify_customer_change() RETURNS trigger AS $$
+DECLARE
+    changed_ids BIGINT[];
+    change_seq BIGINT;
+BEGIN
+    IF NOT (SELECT enabled FROM customer_change_setting) THEN
+        RETURN NULL;
+    END IF;
+    IF TG_OP = 'TRUNCATE' THEN
+        -- there is no transition table for a TRUNCATE, an empty id list stands for every customer
+        changed_ids := '{}';
+    ELSIF TG_OP = 'DELETE' THEN
+        SELECT array_agg(id) INTO changed_ids FROM old_customers;
+    ELSE
+        SELECT array_agg(id) INTO changed_ids FROM new_customers;
+    END IF;
+    IF changed_ids IS NULL THEN
+        RETURN NULL;
+    END IF;
+    INSERT INTO customer_change(customer_ids) VALUES (changed_ids) RETURNING seq INTO change_seq;
+    PERFORM pg_notify('customer_change', change_seq::text);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- transition tables allow a single event per trigger
+CREATE TRIGGER customer_change_insert
+AFTER INSERT ON customer
+REFERENCING NEW TABLE AS new_customers
+FOR EACH STATEMENT EXECUTE FUNCTION notify_customer_change();
+
+CREATE TRIGGER customer_change_update
+AFTER UPDATE ON customer
+REFERENCING NEW TABLE AS new_customers
+FOR EACH STATEMENT EXECUTE FUNCTION notify_customer_change();
+
+CREATE TRIGGER customer_change_delete
+AFTER DELETE ON customer
+REFERENCING OLD TABLE AS old_customers
+FOR EACH STATEMENT EXECUTE FUNCTION notify_customer_change();
+
+CREATE TRIGGER customer_change_truncate
+AFTER TRUNCATE ON customer
+FOR EACH STATEMENT EXECUTE FUNCTION notify_customer_change();
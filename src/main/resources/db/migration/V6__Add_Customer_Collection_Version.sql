@@ -0,0 +1,23 @@
+-- Every statement that writes customers bumps one of 64 counter rows, picked by the writing connection's backend,
+-- and the collection version is their sum. The bump commits with the change, so readers only see it once the
+-- change is visible, and the sum only grows, so two readers that see the same sum saw the same customers whatever
+-- order the writers committed in. Writers on different connections mostly bump different rows, so they do not
+-- queue behind each other's commits, and a read is 64 rows however large the table is.
+CREATE TABLE customer_collection_version(
+    shard INT PRIMARY KEY,
+    version BIGINT NOT NULL
+);
+
+INSERT INTO customer_collection_version(shard, version)
+SELECT shard, 0 FROM generate_series(0, 63) AS shard;
+
+CREATE FUNCTION bump_customer_collection_version() RETURNS trigger AS $$
+BEGIN
+    UPDATE customer_collection_version SET version = version + 1 WHERE shard = pg_backend_pid() % 64;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER customer_collection_version
+AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON customer
+FOR EACH STATEMENT EXECUTE FUNCTION bump_customer_collection_version();
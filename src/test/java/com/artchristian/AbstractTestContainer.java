@@ -4,7 +4,9 @@ import com.github.javafaker.Faker;
 import org.flywaydb.core.Flyway;
 import org.junit.jupiter.api.BeforeAll;
 import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.r2dbc.ConnectionFactoryBuilder;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.r2dbc.core.DatabaseClient;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
 import org.testcontainers.containers.PostgreSQLContainer;
@@ -64,5 +66,15 @@ public abstract class AbstractTestContainer {
         return new JdbcTemplate(getDataSource());
     }
 
+    protected static DatabaseClient getDatabaseClient(){
+        String url = postgreSQLContainer.getJdbcUrl()
+                .replaceFirst("^jdbc:", "r2dbc:")
+                .replaceFirst("\\?.*$", "");
+        return DatabaseClient.create(ConnectionFactoryBuilder.withUrl(url)
+                .username(postgreSQLContainer.getUsername())
+                .password(postgreSQLContainer.getPassword())
+                .build());
+    }
+
     protected static final Faker FAKER = new Faker();
 }
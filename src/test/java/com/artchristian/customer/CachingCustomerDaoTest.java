@@ -0,0 +1,227 @@
+package com.artchristian.customer;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CachingCustomerDaoTest {
+
+    @Mock private CustomerDao customerDao;
+    private CachingCustomerDao underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CachingCustomerDao(
+                customerDao,
+                Caffeine.newBuilder()
+                        .maximumSize(100)
+                        .recordStats()
+                        .build()
+        );
+    }
+
+    @Test
+    void selectCustomerByIdIsServedFromCacheAfterFirstRead() {
+        //Given
+        long id = 1;
+        Customer customer = new Customer(id, "Art", "art@gmail.com", 30);
+        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+
+        //When
+        Optional<Customer> first = underTest.selectCustomerById(id);
+        Optional<Customer> second = underTest.selectCustomerById(id);
+
+        //Then
+        assertThat(first).hasValue(customer);
+        assertThat(second).hasValue(customer);
+        verify(customerDao, times(1)).selectCustomerById(id);
+        assertThat(underTest.stats().hitCount()).isEqualTo(1);
+        assertThat(underTest.stats().missCount()).isEqualTo(1);
+    }
+
+    @Test
+    void selectCustomersByIdsOnlyLoadsMisses() {
+        //Given
+        Customer art = new Customer(1L, "Art", "art@gmail.com", 30);
+        Customer mina = new Customer(2L, "Mina", "mina@gmail.com", 32);
+        when(customerDao.selectCustomerById(1L)).thenReturn(Optional.of(art));
+        when(customerDao.selectCustomersByIds(List.of(2L, 3L))).thenReturn(List.of(mina));
+        underTest.selectCustomerById(1L);
+
+        //When
+        List<Customer> actual = underTest.selectCustomersByIds(List.of(1L, 2L, 3L));
+
+        //Then
+        assertThat(actual).containsExactlyInAnyOrder(art, mina);
+        verify(customerDao).selectCustomersByIds(List.of(2L, 3L));
+    }
+
+    @Test
+    void missingCustomersAreNotCached() {
+        //Given
+        long id = 1;
+        when(customerDao.selectCustomerById(id)).thenReturn(Optional.empty());
+
+        //When
+        underTest.selectCustomerById(id);
+        Optional<Customer> actual = underTest.selectCustomerById(id);
+
+        //Then
+        assertThat(actual).isEmpty();
+        verify(customerDao, times(2)).selectCustomerById(id);
+    }
+
+    @Test
+    void cachedCustomerCannotBeMutatedByCallers() {
+        //Given
+        long id = 1;
+        when(customerDao.selectCustomerById(id))
+                .thenReturn(Optional.of(new Customer(id, "Art", "art@gmail.com", 30)));
+
+        //When
+        underTest.selectCustomerById(id).orElseThrow().setName("Changed");
+        Optional<Customer> actual = underTest.selectCustomerById(id);
+
+        //Then
+        assertThat(actual).hasValueSatisfying(c -> assertThat(c.getName()).isEqualTo("Art"));
+    }
+
+    @Test
+    void updateCustomerInvalidatesCachedEntry() {
+        //Given
+        long id = 1;
+        when(customerDao.selectCustomerById(id))
+                .thenReturn(Optional.of(new Customer(id, "Art", "art@gmail.com", 30)))
+                .thenReturn(Optional.of(new Customer(id, "Christian", "art@gmail.com", 30)));
+        underTest.selectCustomerById(id);
+
+        //When
+        Customer update = new Customer();
+        update.setId(id);
+        update.setName("Christian");
+        underTest.updateCustomer(update);
+
+        //Then
+        verify(customerDao).updateCustomer(update);
+        assertThat(underTest.selectCustomerById(id))
+                .hasValueSatisfying(c -> assertThat(c.getName()).isEqualTo("Christian"));
+    }
+
+    @Test
+    void deleteCustomerInvalidatesCachedEntry() {
+        //Given
+        long id = 1;
+        when(customerDao.selectCustomerById(id))
+                .thenReturn(Optional.of(new Customer(id, "Art", "art@gmail.com", 30)))
+                .thenReturn(Optional.empty());
+        underTest.selectCustomerById(id);
+
+        //When
+        underTest.deleteCustomer(id);
+
+        //Then
+        verify(customerDao).deleteCustomer(id);
+        assertThat(underTest.selectCustomerById(id)).isEmpty();
+    }
+
+    @Test
+    void deleteCustomersByIdsInvalidatesCachedEntries() {
+        //Given
+        when(customerDao.selectCustomersByIds(anyList()))
+                .thenReturn(List.of(
+                        new Customer(1L, "Art", "art@gmail.com", 30),
+                        new Customer(2L, "Mina", "mina@gmail.com", 32)))
+                .thenReturn(List.of());
+        underTest.selectCustomersByIds(List.of(1L, 2L));
+        when(customerDao.deleteCustomersByIds(List.of(1L, 2L))).thenReturn(List.of(1L, 2L));
+
+        //When
+        underTest.deleteCustomersByIds(List.of(1L, 2L));
+
+        //Then
+        assertThat(underTest.selectCustomersByIds(List.of(1L, 2L))).isEmpty();
+        verify(customerDao, times(2)).selectCustomersByIds(anyList());
+    }
+
+    @Test
+    void batchLoadRacingAnUpdateIsNotCached() {
+        //Given
+        Customer stale = new Customer(1L, "Art", "art@gmail.com", 30);
+        Customer update = new Customer(1L, "Christian", null, null);
+        when(customerDao.selectCustomersByIds(List.of(1L))).thenAnswer(invocation -> {
+            // the update commits and invalidates after the rows were read
+            underTest.updateCustomer(update);
+            return List.of(stale);
+        });
+
+        //When
+        List<Customer> actual = underTest.selectCustomersByIds(List.of(1L));
+
+        //Then
+        assertThat(actual).containsExactly(stale);
+        when(customerDao.selectCustomerById(1L))
+                .thenReturn(Optional.of(new Customer(1L, "Christian", "art@gmail.com", 30)));
+        assertThat(underTest.selectCustomerById(1L))
+                .hasValueSatisfying(c -> assertThat(c.getName()).isEqualTo("Christian"));
+    }
+
+    @Test
+    void existsPersonWithIDUsesCachedEntry() {
+        //Given
+        long id = 1;
+        when(customerDao.selectCustomerById(id))
+                .thenReturn(Optional.of(new Customer(id, "Art", "art@gmail.com", 30)));
+        underTest.selectCustomerById(id);
+
+        //When
+        boolean actual = underTest.existsPersonWithID(id);
+
+        //Then
+        assertThat(actual).isTrue();
+        verify(customerDao, never()).existsPersonWithID(id);
+    }
+
+    @Test
+    void existsPersonWithIDFallsBackToDelegateOnMiss() {
+        //Given
+        long id = 1;
+        when(customerDao.existsPersonWithID(id)).thenReturn(false);
+
+        //When
+        boolean actual = underTest.existsPersonWithID(id);
+
+        //Then
+        assertThat(actual).isFalse();
+        verify(customerDao).existsPersonWithID(id);
+    }
+
+    @Test
+    void customersChangedOnAnotherNodeAreReloaded() {
+        //Given
+        Customer art = new Customer(1L, "Art", "art@gmail.com", 30);
+        Customer mina = new Customer(2L, "Mina", "mina@gmail.com", 32);
+        when(customerDao.selectCustomerById(1L)).thenReturn(Optional.of(art));
+        when(customerDao.selectCustomerById(2L)).thenReturn(Optional.of(mina));
+        underTest.selectCustomerById(1L);
+        underTest.selectCustomerById(2L);
+
+        //When
+        underTest.customersChanged(List.of(1L));
+        underTest.selectCustomerById(1L);
+        underTest.selectCustomerById(2L);
+
+        //Then
+        verify(customerDao, times(2)).selectCustomerById(1L);
+        verify(customerDao, times(1)).selectCustomerById(2L);
+    }
+}
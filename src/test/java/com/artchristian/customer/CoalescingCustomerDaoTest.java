@@ -0,0 +1,126 @@
+package com.artchristian.customer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CoalescingCustomerDaoTest {
+
+    @Mock private CustomerDao customerDao;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentLookupsAreLoadedWithOneQuery() throws Exception {
+        //Given
+        CoalescingCustomerDao underTest = coalescing(Duration.ofSeconds(5), 3);
+        when(customerDao.selectCustomersByIds(anyList())).thenAnswer(invocation -> {
+            List<Long> ids = invocation.getArgument(0);
+            return ids.stream()
+                    .map(id -> new Customer(id, "Name " + id, id + "@gmail.com", 30))
+                    .toList();
+        });
+
+        //When
+        List<Optional<Customer>> actual = lookupConcurrently(underTest, 1L, 2L, 3L);
+
+        //Then
+        assertThat(actual).extracting(c -> c.orElseThrow().getId()).containsExactly(1L, 2L, 3L);
+        verify(customerDao, times(1)).selectCustomersByIds(argThat(ids -> ids.size() == 3));
+        verify(customerDao, never()).selectCustomerById(1L);
+        assertThat(meterRegistry.get("customer.coalescing.batch.size").summary().max()).isEqualTo(3);
+    }
+
+    @Test
+    void identicalLookupsShareOneLoad() throws Exception {
+        //Given
+        CoalescingCustomerDao underTest = coalescing(Duration.ofMillis(300), 100);
+        Customer customer = new Customer(1L, "Art", "art@gmail.com", 30);
+        when(customerDao.selectCustomersByIds(List.of(1L))).thenReturn(List.of(customer));
+
+        //When
+        List<Optional<Customer>> actual = lookupConcurrently(underTest, 1L, 1L, 1L);
+
+        //Then
+        assertThat(actual).allSatisfy(c -> assertThat(c).hasValue(customer));
+        assertThat(actual.get(0).get()).isNotSameAs(actual.get(1).get());
+        verify(customerDao, times(1)).selectCustomersByIds(List.of(1L));
+        assertThat(meterRegistry.get("customer.coalescing.joined").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void partialBatchIsDispatchedWhenWindowCloses() {
+        //Given
+        CoalescingCustomerDao underTest = coalescing(Duration.ofMillis(1), 100);
+        when(customerDao.selectCustomersByIds(List.of(7L))).thenReturn(List.of());
+
+        //When
+        Optional<Customer> actual = underTest.selectCustomerById(7L);
+
+        //Then
+        assertThat(actual).isEmpty();
+        assertThat(meterRegistry.get("customer.coalescing.wait").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void failureIsPropagatedToTheCaller() {
+        //Given
+        CoalescingCustomerDao underTest = coalescing(Duration.ofMillis(1), 100);
+        when(customerDao.selectCustomersByIds(List.of(7L))).thenThrow(new IllegalStateException("down"));
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.selectCustomerById(7L))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("down");
+    }
+
+    private CoalescingCustomerDao coalescing(Duration window, int maxBatchSize) {
+        return new CoalescingCustomerDao(customerDao, window, maxBatchSize, meterRegistry, "jdbc");
+    }
+
+    private List<Optional<Customer>> lookupConcurrently(CoalescingCustomerDao underTest, Long... ids)
+            throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Optional<Customer>>> futures = new ArrayList<>();
+        for (Long id : ids) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return underTest.selectCustomerById(id);
+            }));
+        }
+        start.countDown();
+        List<Optional<Customer>> results = new ArrayList<>();
+        for (Future<Optional<Customer>> future : futures) {
+            results.add(future.get());
+        }
+        return results;
+    }
+}
@@ -0,0 +1,262 @@
+package com.artchristian.customer;
+
+import com.artchristian.AbstractTestContainer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.postgresql.Driver;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerChangeListenerTest extends AbstractTestContainer {
+
+    private final RecordingHandler handler = new RecordingHandler();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final JdbcTemplate jdbcTemplate = getJdbcTemplate();
+    private String applicationName;
+    private CustomerChangeListener underTest;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        applicationName = "customer-change-listener-" + UUID.randomUUID();
+        Properties connectionProperties = new Properties();
+        connectionProperties.setProperty("ApplicationName", applicationName);
+        SimpleDriverDataSource dataSource = new SimpleDriverDataSource();
+        dataSource.setDriver(new Driver());
+        dataSource.setUrl(postgreSQLContainer.getJdbcUrl());
+        dataSource.setUsername(postgreSQLContainer.getUsername());
+        dataSource.setPassword(postgreSQLContainer.getPassword());
+        dataSource.setConnectionProperties(connectionProperties);
+
+        underTest = new CustomerChangeListener(
+                dataSource,
+                List.of(handler),
+                new CustomerChangeProperties(true, Duration.ofMillis(100), Duration.ofMillis(10), 500,
+                        Duration.ofMillis(500), 1000, Duration.ofHours(1), Duration.ofMinutes(1)),
+                Clock.systemUTC(),
+                meterRegistry);
+        underTest.start();
+        awaitConnected();
+    }
+
+    @AfterEach
+    void tearDown() {
+        underTest.stop();
+    }
+
+    @Test
+    void firstConnectTreatsAllCustomersAsChanged() {
+        //Then
+        assertThat(handler.allChanged).hasValue(1);
+        assertThat(resyncs("full")).isEqualTo(1);
+        assertThat(resyncs("replay")).isZero();
+    }
+
+    @Test
+    void writesOnAnyConnectionAreDelivered() throws Exception {
+        //Given
+        long id = insertCustomer();
+        assertThat(handler.next()).contains(id);
+
+        //When
+        jdbcTemplate.update("UPDATE customer SET age = 40 WHERE id = ?", id);
+        Collection<Long> updated = handler.next();
+        jdbcTemplate.update("DELETE FROM customer WHERE id = ?", id);
+        Collection<Long> deleted = handler.next();
+
+        //Then
+        assertThat(updated).contains(id);
+        assertThat(deleted).contains(id);
+    }
+
+    @Test
+    void aStatementChangingManyCustomersIsOneNotification() throws Exception {
+        //Given
+        List<Long> ids = List.of(insertCustomer(), insertCustomer(), insertCustomer());
+        while (!handler.changed.containsAll(ids)) {
+            handler.next();
+        }
+        double before = notifications();
+
+        //When
+        jdbcTemplate.update("UPDATE customer SET age = 50 WHERE id = ANY(?)", (Object) ids.toArray(Long[]::new));
+        Collection<Long> actual = handler.next();
+
+        //Then
+        assertThat(actual).containsExactlyInAnyOrderElementsOf(ids);
+        assertThat(notifications() - before).isEqualTo(1);
+    }
+
+    @Test
+    void changesMissedWhileDisconnectedAreReplayedOnReconnect() throws Exception {
+        //Given
+        long id = insertCustomer();
+        handler.next();
+        jdbcTemplate.queryForList(
+                "SELECT pg_terminate_backend(pid) FROM pg_stat_activity WHERE application_name = ?",
+                applicationName);
+        awaitDisconnected();
+
+        //When
+        jdbcTemplate.update("UPDATE customer SET age = 41 WHERE id = ?", id);
+        awaitConnected();
+
+        //Then
+        assertThat(handler.nextContaining(id)).isTrue();
+        assertThat(resyncs("replay")).isEqualTo(1);
+        assertThat(handler.allChanged).hasValue(1);
+    }
+
+    @Test
+    void connectingTurnsTheLogOn() {
+        //Then
+        assertThat(jdbcTemplate.queryForObject("SELECT enabled FROM customer_change_setting", Boolean.class))
+                .isTrue();
+    }
+
+    @Test
+    void aLoggedTruncateTreatsAllCustomersAsChanged() throws Exception {
+        //Given
+        int before = handler.allChanged.get();
+
+        //When
+        Long seq = jdbcTemplate.queryForObject(
+                "INSERT INTO customer_change(customer_ids) VALUES ('{}') RETURNING seq", Long.class);
+        jdbcTemplate.queryForList("SELECT pg_notify(?, ?)", CustomerChangeListener.CHANNEL, seq.toString());
+
+        //Then
+        for (int i = 0; i < 100 && handler.allChanged.get() == before; i++) {
+            Thread.sleep(50);
+        }
+        assertThat(handler.allChanged).hasValue(before + 1);
+    }
+
+    @Test
+    void prunerDeletesChangesPastTheRetention() {
+        //Given
+        Long old = jdbcTemplate.queryForObject(
+                "INSERT INTO customer_change(customer_ids, changed_at) VALUES ('{1}', now() - interval '2 hours') "
+                        + "RETURNING seq", Long.class);
+        CustomerChangeLogPruner pruner = new CustomerChangeLogPruner(
+                jdbcTemplate, Duration.ofHours(1), Duration.ofMinutes(1));
+
+        //When
+        int actual = pruner.prune();
+
+        //Then
+        assertThat(actual).isPositive();
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM customer_change WHERE seq = ?", Integer.class, old)).isZero();
+    }
+
+    @Test
+    void prunerSkipsTheRoundWhileAnotherNodePrunes() throws Exception {
+        //Given
+        Long old = jdbcTemplate.queryForObject(
+                "INSERT INTO customer_change(customer_ids, changed_at) VALUES ('{1}', now() - interval '2 hours') "
+                        + "RETURNING seq", Long.class);
+        CustomerChangeLogPruner pruner = new CustomerChangeLogPruner(
+                jdbcTemplate, Duration.ofHours(1), Duration.ofMinutes(1));
+
+        try (Connection otherNode = DriverManager.getConnection(
+                postgreSQLContainer.getJdbcUrl(), postgreSQLContainer.getUsername(), postgreSQLContainer.getPassword());
+             Statement statement = otherNode.createStatement()) {
+            otherNode.setAutoCommit(false);
+            statement.execute("SELECT pg_advisory_xact_lock(hashtext('customer_change_prune'))");
+
+            //When
+            int actual = pruner.prune();
+
+            //Then
+            assertThat(actual).isZero();
+            assertThat(jdbcTemplate.queryForObject(
+                    "SELECT count(*) FROM customer_change WHERE seq = ?", Integer.class, old)).isOne();
+            otherNode.rollback();
+        }
+        assertThat(pruner.prune()).isPositive();
+    }
+
+    private long insertCustomer() {
+        return jdbcTemplate.queryForObject(
+                "INSERT INTO customer(name, email, age) VALUES (?, ?, ?) RETURNING id",
+                Long.class,
+                FAKER.name().fullName(),
+                FAKER.internet().emailAddress() + "-" + UUID.randomUUID(),
+                20);
+    }
+
+    private double notifications() {
+        return meterRegistry.get("customer.change.notifications").counter().count();
+    }
+
+    private double resyncs(String kind) {
+        return meterRegistry.get("customer.change.resyncs").tag("kind", kind).counter().count();
+    }
+
+    private void awaitConnected() throws InterruptedException {
+        for (int i = 0; i < 100 && !underTest.isConnected(); i++) {
+            Thread.sleep(50);
+        }
+        assertThat(underTest.isConnected()).isTrue();
+    }
+
+    private void awaitDisconnected() throws InterruptedException {
+        for (int i = 0; i < 100 && underTest.isConnected(); i++) {
+            Thread.sleep(10);
+        }
+        assertThat(underTest.isConnected()).isFalse();
+    }
+
+    private static final class RecordingHandler implements CustomerChangeHandler {
+        private final BlockingQueue<Collection<Long>> changes = new LinkedBlockingQueue<>();
+        private final Set<Long> changed = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger allChanged = new AtomicInteger();
+
+        @Override
+        public void customersChanged(Collection<Long> ids) {
+            changed.addAll(ids);
+            changes.add(List.copyOf(ids));
+        }
+
+        @Override
+        public void allCustomersChanged() {
+            allChanged.incrementAndGet();
+        }
+
+        Collection<Long> next() throws InterruptedException {
+            Collection<Long> next = changes.poll(5, TimeUnit.SECONDS);
+            assertThat(next).as("customer change within 5s").isNotNull();
+            return next;
+        }
+
+        // a replay starts before the watermark and may span several batches
+        boolean nextContaining(long id) throws InterruptedException {
+            Collection<Long> next;
+            while ((next = changes.poll(5, TimeUnit.SECONDS)) != null) {
+                if (next.contains(id)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
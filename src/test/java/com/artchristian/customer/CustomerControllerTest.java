@@ -0,0 +1,223 @@
+package com.artchristian.customer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerControllerTest {
+
+    private static final String CUSTOMER_URI = "/api/v1/customers";
+    private static final long ID = 7;
+    private static final long VERSION = 3;
+
+    @Mock private CustomerDao customerDao;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        CustomerController controller = new CustomerController(
+                new CustomerService(customerDao),
+                new ObjectMapper(),
+                new CustomerImportProperties(2, CustomerImportProperties.Mode.BATCH));
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @Test
+    void getCustomerAnswersWithItsIdAndVersionAsETag() throws Exception {
+        //Given
+        givenCustomer();
+
+        //When
+        ResultActions actual = mockMvc.perform(get(CUSTOMER_URI + "/" + ID));
+
+        //Then
+        actual.andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"7-3\""));
+    }
+
+    @Test
+    void getCustomerAnswersNotModifiedWhenIfNoneMatchHasItsTag() throws Exception {
+        //Given
+        givenCustomer();
+
+        //When
+        ResultActions actual = mockMvc.perform(get(CUSTOMER_URI + "/" + ID)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"7-3\""));
+
+        //Then
+        actual.andExpect(status().isNotModified());
+    }
+
+    @Test
+    void getCustomerAnswersTheBodyWhenIfNoneMatchHasAnOlderTag() throws Exception {
+        //Given
+        givenCustomer();
+
+        //When
+        ResultActions actual = mockMvc.perform(get(CUSTOMER_URI + "/" + ID)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"7-2\""));
+
+        //Then
+        actual.andExpect(status().isOk());
+    }
+
+    @Test
+    void getCustomersAnswersNotModifiedWithoutReadingTheCustomers() throws Exception {
+        //Given
+        when(customerDao.selectCollectionVersion()).thenReturn(new CustomerCollectionVersion(42));
+
+        //When
+        ResultActions actual = mockMvc.perform(get(CUSTOMER_URI)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"42\""));
+
+        //Then
+        actual.andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"42\""));
+        verify(customerDao, never()).streamAllCustomers(any());
+    }
+
+    @Test
+    void getCustomersStreamsTheBodyWhenTheCollectionVersionMoved() throws Exception {
+        //Given
+        when(customerDao.selectCollectionVersion()).thenReturn(new CustomerCollectionVersion(43));
+
+        //When
+        ResultActions actual = mockMvc.perform(get(CUSTOMER_URI)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"42\""));
+
+        //Then
+        actual.andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"43\""));
+    }
+
+    @Test
+    void updateWithMatchingStrongTagChecksItsVersion() throws Exception {
+        //Given
+        givenCustomer();
+
+        //When
+        ResultActions actual = update("\"7-3\"");
+
+        //Then
+        actual.andExpect(status().isOk());
+        assertThat(updated().getVersion()).isEqualTo(VERSION);
+    }
+
+    @Test
+    void updateWithOneMatchingTagInAListChecksThatVersion() throws Exception {
+        //Given
+        givenCustomer();
+
+        //When
+        ResultActions actual = update("\"7-1\", \"7-3\" , \"8-3\"");
+
+        //Then
+        actual.andExpect(status().isOk());
+        assertThat(updated().getVersion()).isEqualTo(VERSION);
+    }
+
+    @Test
+    void updateWithWildcardHasNoPrecondition() throws Exception {
+        //Given
+        givenCustomer();
+
+        //When
+        ResultActions actual = update("*");
+
+        //Then
+        actual.andExpect(status().isOk());
+        assertThat(updated().getVersion()).isNull();
+    }
+
+    @Test
+    void updateWithWeakTagIsPreconditionFailed() throws Exception {
+        //Given
+        givenCustomer();
+
+        //When
+        ResultActions actual = update("W/\"7-3\"");
+
+        //Then
+        actual.andExpect(status().isPreconditionFailed());
+        verify(customerDao, never()).updateCustomer(any());
+    }
+
+    @Test
+    void updateWithAnotherCustomersTagIsPreconditionFailed() throws Exception {
+        //Given
+        givenCustomer();
+
+        //When
+        ResultActions actual = update("\"8-3\"");
+
+        //Then
+        actual.andExpect(status().isPreconditionFailed());
+        verify(customerDao, never()).updateCustomer(any());
+    }
+
+    @Test
+    void updateOfAVersionChangedMeanwhileIsPreconditionFailed() throws Exception {
+        //Given
+        givenCustomer();
+        doThrow(new OptimisticLockingFailureException("stale")).when(customerDao).updateCustomer(any());
+
+        //When
+        ResultActions actual = update("\"7-3\"");
+
+        //Then
+        actual.andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    void updateOfACustomerDeletedMeanwhileIsNotFound() throws Exception {
+        //Given
+        givenCustomer();
+        doThrow(new EmptyResultDataAccessException(1)).when(customerDao).updateCustomer(any());
+
+        //When
+        ResultActions actual = update("\"7-3\"");
+
+        //Then
+        actual.andExpect(status().isNotFound());
+    }
+
+    private void givenCustomer() {
+        when(customerDao.selectCustomerById(ID))
+                .thenReturn(Optional.of(new Customer(ID, "Art", "art@gmail.com", 30, VERSION)));
+    }
+
+    private ResultActions update(String ifMatch) throws Exception {
+        return mockMvc.perform(put(CUSTOMER_URI + "/" + ID)
+                .header(HttpHeaders.IF_MATCH, ifMatch)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"age\": 31}"));
+    }
+
+    private Customer updated() {
+        ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
+        verify(customerDao).updateCustomer(customerArgumentCaptor.capture());
+        return customerArgumentCaptor.getValue();
+    }
+}
@@ -0,0 +1,251 @@
+package com.artchristian.customer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerFileDataAccessServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private CustomerFileStore store;
+    private CustomerFileDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        open();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        store.close();
+    }
+
+    @Test
+    void insertCustomer() {
+        //Given
+        Customer customer = new Customer("Alex", "alex@gmail.com", 20);
+
+        //When
+        Optional<Long> id = underTest.insertCustomer(customer);
+
+        //Then
+        assertThat(id).hasValue(1L);
+        assertThat(customer.getId()).isEqualTo(1L);
+        assertThat(underTest.selectCustomerById(1L))
+                .hasValue(new Customer(1L, "Alex", "alex@gmail.com", 20, 0L));
+        assertThat(underTest.existsPersonWithEmail("alex@gmail.com")).isTrue();
+    }
+
+    @Test
+    void insertCustomerWithTakenEmailIsRejected() {
+        //Given
+        underTest.insertCustomer(new Customer("Alex", "alex@gmail.com", 20));
+
+        //When
+        Optional<Long> id = underTest.insertCustomer(new Customer("Other Alex", "alex@gmail.com", 30));
+
+        //Then
+        assertThat(id).isEmpty();
+        assertThat(underTest.selectAllCustomers()).hasSize(1);
+    }
+
+    @Test
+    void updateCustomerChecksVersionAndEmail() {
+        //Given
+        Long alex = underTest.insertCustomer(new Customer("Alex", "alex@gmail.com", 20)).orElseThrow();
+        underTest.insertCustomer(new Customer("Mina", "mina@gmail.com", 30));
+        Customer stale = new Customer(alex, null, null, 21, 5L);
+        Customer takenEmail = new Customer(alex, null, "mina@gmail.com", null);
+        Customer changes = new Customer(alex, "Alexander", "alexander@gmail.com", null, 0L);
+
+        //When
+        underTest.updateCustomer(changes);
+
+        //Then
+        assertThatThrownBy(() -> underTest.updateCustomer(stale))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        assertThatThrownBy(() -> underTest.updateCustomer(takenEmail))
+                .isInstanceOf(DuplicateKeyException.class);
+        assertThat(underTest.selectCustomerById(alex))
+                .hasValue(new Customer(alex, "Alexander", "alexander@gmail.com", 20, 1L));
+        assertThat(underTest.existsPersonWithEmail("alex@gmail.com")).isFalse();
+    }
+
+    @Test
+    void everyWriteIsRecoveredOnReopen() throws IOException {
+        //Given
+        Long updated = underTest.insertCustomer(new Customer("Alex", "alex@gmail.com", 20)).orElseThrow();
+        Long deleted = underTest.insertCustomer(new Customer("Mina", "mina@gmail.com", 30)).orElseThrow();
+        underTest.insertCustomers(List.of(
+                new Customer("Zoë", "zoë@gmail.com", 40),
+                new Customer("Jamila", "jamila@gmail.com", 50)));
+        underTest.updateCustomer(new Customer(updated, null, "alexander@gmail.com", 21));
+        underTest.deleteCustomer(deleted);
+        List<Customer> before = underTest.selectAllCustomers();
+        CustomerCollectionVersion versionBefore = underTest.selectCollectionVersion();
+
+        //When
+        reopen();
+
+        //Then
+        assertThat(underTest.selectAllCustomers()).containsExactlyElementsOf(before);
+        // a reopened store counts again from a new start, so no ETag from before the restart matches
+        assertThat(underTest.selectCollectionVersion()).isNotEqualTo(versionBefore);
+        assertThat(underTest.existsPersonWithEmail("alex@gmail.com")).isFalse();
+        assertThat(underTest.existsPersonWithEmail("alexander@gmail.com")).isTrue();
+        assertThat(underTest.existsPersonWithEmail("mina@gmail.com")).isFalse();
+        assertThat(underTest.existsPersonWithID(deleted)).isFalse();
+        // ids are not handed out twice, not even a deleted one's
+        assertThat(underTest.insertCustomer(new Customer("Mina", "mina@gmail.com", 30))).hasValue(5L);
+    }
+
+    @Test
+    void tornLastRecordIsDroppedOnReopen() throws IOException {
+        //Given
+        underTest.insertCustomer(new Customer("Alex", "alex@gmail.com", 20));
+        underTest.insertCustomer(new Customer("Mina", "mina@gmail.com", 30));
+        store.close();
+        flipLastWrittenByte(segments().get(0));
+
+        //When
+        open();
+
+        //Then
+        assertThat(underTest.selectAllCustomers()).extracting(Customer::getEmail).containsExactly("alex@gmail.com");
+        assertThat(underTest.insertCustomer(new Customer("Mina", "mina@gmail.com", 30))).hasValue(2L);
+    }
+
+    @Test
+    void corruptSealedSegmentFailsTheOpen() throws IOException {
+        //Given
+        for (int i = 0; i < 100; i++) {
+            underTest.insertCustomer(new Customer("Customer " + i, "customer" + i + "@gmail.com", 20));
+        }
+        store.close();
+        flipLastWrittenByte(segments().get(0));
+
+        //When
+        //Then
+        assertThatThrownBy(this::open)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("is corrupt");
+    }
+
+    @Test
+    void compactionReclaimsDeletesAndOldVersions() throws IOException {
+        //Given
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            ids.add(underTest.insertCustomer(
+                    new Customer("Customer " + i, "customer" + i + "@gmail.com", 20)).orElseThrow());
+        }
+        underTest.deleteCustomersByIds(ids.subList(0, 150));
+        for (Long id : ids.subList(150, 200)) {
+            underTest.updateCustomer(new Customer(id, null, null, 30));
+        }
+        List<Customer> before = underTest.selectAllCustomers();
+        int segmentsBefore = store.segmentCount();
+        long garbageBefore = store.garbageBytes();
+
+        //When
+        boolean compacted = store.compactIfMostlyGarbage();
+
+        //Then
+        assertThat(compacted).isTrue();
+        assertThat(store.segmentCount()).isLessThan(segmentsBefore);
+        assertThat(store.garbageBytes()).isLessThan(garbageBefore);
+        assertThat(underTest.selectAllCustomers()).containsExactlyElementsOf(before);
+        assertThat(store.compactIfMostlyGarbage()).isFalse();
+        reopen();
+        assertThat(underTest.selectAllCustomers()).containsExactlyElementsOf(before);
+        assertThat(underTest.existsPersonWithID(ids.get(0))).isFalse();
+    }
+
+    @Test
+    void idsOfCompactedCustomersAreNotHandedOutAgain() throws IOException {
+        //Given
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            ids.add(underTest.insertCustomer(
+                    new Customer("Customer " + i, "customer" + i + "@gmail.com", 20)).orElseThrow());
+        }
+        // highest first, so only deletes of low ids are left in the newest segment
+        for (int i = ids.size() - 1; i >= 0; i--) {
+            underTest.deleteCustomer(ids.get(i));
+        }
+        assertThat(store.compactIfMostlyGarbage()).isTrue();
+
+        //When
+        reopen();
+
+        //Then
+        assertThat(underTest.insertCustomer(new Customer("Alex", "alex@gmail.com", 20))).hasValue(201L);
+    }
+
+    @Test
+    void selectCustomersAfterIdPagesInIdOrder() {
+        //Given
+        for (int i = 0; i < 5; i++) {
+            underTest.insertCustomer(new Customer("Customer " + i, "customer" + i + "@gmail.com", 20));
+        }
+        underTest.deleteCustomer(3L);
+
+        //When
+        List<Customer> page = underTest.selectCustomersAfterId(1L, 2);
+
+        //Then
+        assertThat(page).extracting(Customer::getId).containsExactly(2L, 4L);
+        assertThat(underTest.selectCustomersAfterId(null, 10)).extracting(Customer::getId)
+                .containsExactly(1L, 2L, 4L, 5L);
+    }
+
+    private void open() {
+        store = new CustomerFileStore(new CustomerFileStoreProperties(
+                true, directory.toString(), DataSize.ofKilobytes(4), true, Duration.ZERO, 0.5));
+        underTest = new CustomerFileDataAccessService(store);
+    }
+
+    private void reopen() throws IOException {
+        store.close();
+        open();
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(CustomerLogSegment::isSegment).sorted().toList();
+        }
+    }
+
+    private static void flipLastWrittenByte(Path segment) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            long position = file.length() - 1;
+            file.seek(position);
+            while (file.read() == 0) {
+                file.seek(--position);
+            }
+            file.seek(position);
+            int last = file.read();
+            file.seek(position);
+            file.write(last ^ 0xFF);
+        }
+    }
+}
@@ -3,13 +3,21 @@ package com.artchristian.customer;
 import com.artchristian.AbstractTestContainer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.jdbc.core.JdbcTemplate;
 
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.jupiter.api.Assertions.*;
 
 class CustomerJDBCDataAccessServiceTest extends AbstractTestContainer {
@@ -21,7 +29,8 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainer {
     void setUp() {
         underTest = new CustomerJDBCDataAccessService(
                 getJdbcTemplate(),
-                customerRowMapper
+                customerRowMapper,
+                new CustomerImportProperties(2, CustomerImportProperties.Mode.BATCH)
         );
     }
 
@@ -43,6 +52,71 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainer {
         assertThat(actual).isNotEmpty();
     }
 
+    @Test
+    void selectCustomersAfterId() {
+        //Given
+        for (int i = 0; i < 3; i++) {
+            underTest.insertCustomer(new Customer(
+                    FAKER.name().fullName(),
+                    FAKER.internet().emailAddress() + "-" + UUID.randomUUID(),
+                    20
+            ));
+        }
+        List<Customer> firstPage = underTest.selectCustomersAfterId(null, 2);
+        long cursor = firstPage.get(firstPage.size() - 1).getId();
+
+        //When
+        List<Customer> actual = underTest.selectCustomersAfterId(cursor, 2);
+
+        //Then
+        assertThat(firstPage).hasSize(2);
+        assertThat(firstPage.get(0).getId()).isLessThan(firstPage.get(1).getId());
+        assertThat(actual).isNotEmpty()
+                .allSatisfy(c -> assertThat(c.getId()).isGreaterThan(cursor));
+    }
+
+    @Test
+    void streamAllCustomers() {
+        //Given
+        String email = FAKER.internet().emailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(
+                FAKER.name().fullName(),
+                email,
+                20
+        );
+
+        underTest.insertCustomer(customer);
+
+        //When
+        List<Customer> actual = new ArrayList<>();
+        underTest.streamAllCustomers(actual::add);
+
+        //Then
+        assertThat(actual).hasSameSizeAs(underTest.selectAllCustomers())
+                .anySatisfy(c -> assertThat(c.getEmail()).isEqualTo(email));
+    }
+
+    @Test
+    void selectCustomersByIds() {
+        //Given
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ids.add(underTest.insertCustomer(new Customer(
+                    FAKER.name().fullName(),
+                    FAKER.internet().emailAddress() + "-" + UUID.randomUUID(),
+                    20
+            )).orElseThrow());
+        }
+        ids.add(-1L);
+
+        //When
+        List<Customer> actual = underTest.selectCustomersByIds(ids);
+
+        //Then
+        assertThat(actual).extracting(Customer::getId)
+                .containsExactlyInAnyOrder(ids.get(0), ids.get(1), ids.get(2));
+    }
+
     @Test
     void selectCustomerById() {
         //Given
@@ -55,7 +129,7 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainer {
 
         underTest.insertCustomer(customer);
 
-        int id = underTest.selectAllCustomers()
+        long id = underTest.selectAllCustomers()
                 .stream()
                 .filter(c -> c.getEmail().equals(email))
                 .map(Customer::getId)
@@ -78,7 +152,7 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainer {
     @Test
     void willReturnEmptyWhenSelectCustomerById(){
         //Given
-        int id = -1;
+        long id = -1;
 
         //When
         Optional<Customer> actual = underTest.selectCustomerById(id);
@@ -99,7 +173,7 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainer {
 
         underTest.insertCustomer(customer);
 
-        int id = underTest.selectAllCustomers()
+        long id = underTest.selectAllCustomers()
                 .stream()
                 .filter(c -> c.getEmail().equals(email))
                 .map(Customer::getId)
@@ -107,12 +181,35 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainer {
                 .orElseThrow();
 
         //When
-        underTest.deleteCustomer(id);
+        boolean deleted = underTest.deleteCustomer(id);
 
 
         //Then
         Optional<Customer> actual = underTest.selectCustomerById(id);
         assertThat(actual).isNotPresent();
+        assertThat(deleted).isTrue();
+        assertThat(underTest.deleteCustomer(id)).isFalse();
+    }
+
+    @Test
+    void deleteCustomersByIds() {
+        //Given
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ids.add(underTest.insertCustomer(new Customer(
+                    FAKER.name().fullName(),
+                    FAKER.internet().emailAddress() + "-" + UUID.randomUUID(),
+                    20
+            )).orElseThrow());
+        }
+        ids.add(-1L);
+
+        //When
+        List<Long> actual = underTest.deleteCustomersByIds(ids);
+
+        //Then
+        assertThat(actual).containsExactlyInAnyOrder(ids.get(0), ids.get(1), ids.get(2));
+        assertThat(underTest.selectCustomersByIds(ids)).isEmpty();
     }
 
     @Test
@@ -127,7 +224,7 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainer {
 
         underTest.insertCustomer(customer);
 
-        int id = underTest.selectAllCustomers()
+        long id = underTest.selectAllCustomers()
                 .stream()
                 .filter(c -> c.getEmail().equals(email))
                 .map(Customer::getId)
@@ -146,6 +243,116 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainer {
         });
     }
 
+    @Test
+    void insertCustomerReturnsGeneratedId() {
+        //Given
+        String email = FAKER.internet().emailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(
+                FAKER.name().fullName(),
+                email,
+                20
+        );
+
+        //When
+        Optional<Long> actual = underTest.insertCustomer(customer);
+
+        //Then
+        assertThat(actual).isPresent();
+        assertThat(underTest.selectCustomerById(actual.get()))
+                .hasValueSatisfying(c -> assertThat(c.getEmail()).isEqualTo(email));
+    }
+
+    @Test
+    void insertCustomerReturnsEmptyWhenEmailIsTaken() {
+        //Given
+        String email = FAKER.internet().emailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer(FAKER.name().fullName(), email, 20));
+
+        //When
+        Optional<Long> actual = underTest.insertCustomer(
+                new Customer(FAKER.name().fullName(), email, 21));
+
+        //Then
+        assertThat(actual).isEmpty();
+    }
+
+    @Test
+    void updateCustomerEmailToTakenEmailThrowsDuplicateKey() {
+        //Given
+        String takenEmail = FAKER.internet().emailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer(FAKER.name().fullName(), takenEmail, 20));
+        long id = underTest.insertCustomer(new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().emailAddress() + "-" + UUID.randomUUID(),
+                20
+        )).orElseThrow();
+
+        //When
+        Customer customerUpdate = new Customer();
+        customerUpdate.setId(id);
+        customerUpdate.setEmail(takenEmail);
+
+        //Then
+        assertThatThrownBy(() -> underTest.updateCustomer(customerUpdate))
+                .isInstanceOf(DuplicateKeyException.class);
+    }
+
+    @Test
+    void insertCustomersInBatches() {
+        //Given
+        String takenEmail = FAKER.internet().emailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer(FAKER.name().fullName(), takenEmail, 20));
+        String email = FAKER.internet().emailAddress() + "-" + UUID.randomUUID();
+        String otherEmail = FAKER.internet().emailAddress() + "-" + UUID.randomUUID();
+        List<Customer> customers = List.of(
+                new Customer(FAKER.name().fullName(), email, 20),
+                new Customer(FAKER.name().fullName(), takenEmail, 21),
+                new Customer(FAKER.name().fullName(), email, 22),
+                new Customer(FAKER.name().fullName(), otherEmail, 23)
+        );
+
+        //When
+        int[] actual = underTest.insertCustomers(customers);
+
+        //Then
+        assertThat(actual).containsExactly(1, 0, 0, 1);
+        assertThat(underTest.existsPersonWithEmail(email)).isTrue();
+        assertThat(underTest.existsPersonWithEmail(otherEmail)).isTrue();
+    }
+
+    @Test
+    void insertCustomersWithCopy() {
+        //Given
+        CustomerJDBCDataAccessService copyImporter = new CustomerJDBCDataAccessService(
+                getJdbcTemplate(),
+                customerRowMapper,
+                new CustomerImportProperties(1000, CustomerImportProperties.Mode.COPY)
+        );
+        String takenEmail = FAKER.internet().emailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer(FAKER.name().fullName(), takenEmail, 20));
+        String email = FAKER.internet().emailAddress() + "-" + UUID.randomUUID();
+        String quotedName = "Art \"The Great\", Jr.";
+        List<Customer> customers = List.of(
+                new Customer(quotedName, email, 20),
+                new Customer(FAKER.name().fullName(), takenEmail, 21),
+                new Customer(FAKER.name().fullName(), email, 22)
+        );
+
+        //When
+        int[] actual = copyImporter.insertCustomers(customers);
+
+        //Then
+        assertThat(actual).containsExactly(1, 0, 0);
+        Optional<Customer> inserted = underTest.selectAllCustomers()
+                .stream()
+                .filter(c -> c.getEmail().equals(email))
+                .findFirst();
+        assertThat(inserted).hasValueSatisfying(c -> {
+            assertThat(c.getName()).isEqualTo(quotedName);
+            assertThat(c.getAge()).isEqualTo(20);
+        });
+    }
+
     @Test
     void existsPersonWithEmail() {
         //Given
@@ -187,7 +394,7 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainer {
         );
 
         underTest.insertCustomer(customer);
-        int id = underTest.selectAllCustomers()
+        long id = underTest.selectAllCustomers()
                 .stream()
                 .filter(c -> c.getEmail().equals(email))
                 .map(Customer::getId)
@@ -205,7 +412,7 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainer {
     @Test
     void willReturnFalseWhenIdDoesNotExist() {
         //Given
-        int id = -1;
+        long id = -1;
 
         //When
 
@@ -227,7 +434,7 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainer {
 
         underTest.insertCustomer(customer);
 
-        int id = underTest.selectAllCustomers()
+        long id = underTest.selectAllCustomers()
                 .stream()
                 .filter(c -> c.getEmail().equals(email))
                 .map(Customer::getId)
@@ -265,7 +472,7 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainer {
 
         underTest.insertCustomer(customer);
 
-        int id = underTest.selectAllCustomers()
+        long id = underTest.selectAllCustomers()
                 .stream()
                 .filter(c -> c.getEmail().equals(email))
                 .map(Customer::getId)
@@ -305,7 +512,7 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainer {
 
         underTest.insertCustomer(customer);
 
-        int id = underTest.selectAllCustomers()
+        long id = underTest.selectAllCustomers()
                 .stream()
                 .filter(c -> c.getEmail().equals(email))
                 .map(Customer::getId)
@@ -343,7 +550,7 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainer {
 
         underTest.insertCustomer(customer);
 
-        int id = underTest.selectAllCustomers()
+        long id = underTest.selectAllCustomers()
                 .stream()
                 .filter(c -> c.getEmail().equals(email))
                 .map(Customer::getId)
@@ -380,7 +587,7 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainer {
 
         underTest.insertCustomer(customer);
 
-        int id = underTest.selectAllCustomers()
+        long id = underTest.selectAllCustomers()
                 .stream()
                 .filter(c -> c.getEmail().equals(email))
                 .map(Customer::getId)
@@ -404,4 +611,145 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainer {
             assertThat(c.getAge()).isEqualTo(customer.getAge());
         });
     }
-}
\ No newline at end of file
+
+    @Test
+    void updateCustomerBumpsVersionAndCollectionVersion() {
+        //Given
+        long id = underTest.insertCustomer(new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().emailAddress() + "-" + UUID.randomUUID(),
+                20
+        )).orElseThrow();
+        CustomerCollectionVersion before = underTest.selectCollectionVersion();
+        Customer changes = new Customer();
+        changes.setId(id);
+        changes.setAge(21);
+
+        //When
+        underTest.updateCustomer(changes);
+
+        //Then
+        assertThat(underTest.selectCustomerById(id))
+                .hasValueSatisfying(c -> assertThat(c.getVersion()).isEqualTo(1L));
+        assertThat(underTest.selectCollectionVersion()).isNotEqualTo(before);
+    }
+
+    @Test
+    void collectionVersionMovesWhenAWriteCommitsAndNotBefore() throws Exception {
+        //Given
+        long id = underTest.insertCustomer(new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().emailAddress() + "-" + UUID.randomUUID(),
+                20
+        )).orElseThrow();
+        CustomerCollectionVersion before = underTest.selectCollectionVersion();
+
+        try (Connection writer = DriverManager.getConnection(
+                postgreSQLContainer.getJdbcUrl(), postgreSQLContainer.getUsername(), postgreSQLContainer.getPassword());
+             PreparedStatement update = writer.prepareStatement("UPDATE customer SET age = 30 WHERE id = ?")) {
+            writer.setAutoCommit(false);
+            update.setLong(1, id);
+            update.executeUpdate();
+
+            //When
+            CustomerCollectionVersion uncommitted = underTest.selectCollectionVersion();
+            writer.commit();
+
+            //Then
+            assertThat(uncommitted).isEqualTo(before);
+            assertThat(underTest.selectCollectionVersion()).isNotEqualTo(before);
+        }
+    }
+
+    @Test
+    void collectionVersionMovesWhenALowerIdReplacesAnotherRow() {
+        //Given
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ids.add(underTest.insertCustomer(new Customer(
+                    FAKER.name().fullName(),
+                    FAKER.internet().emailAddress() + "-" + UUID.randomUUID(),
+                    20
+            )).orElseThrow());
+        }
+        underTest.deleteCustomer(ids.get(1));
+        CustomerCollectionVersion before = underTest.selectCollectionVersion();
+
+        //When
+        // an id below the current max commits late, as ids from another node's pooled block do,
+        // and another row goes: count, max id and the sum of versions all end up where they were
+        getJdbcTemplate().update(
+                "INSERT INTO customer(id, name, email, age) VALUES (?, ?, ?, ?)",
+                ids.get(1), FAKER.name().fullName(), FAKER.internet().emailAddress() + "-" + UUID.randomUUID(), 20);
+        underTest.deleteCustomer(ids.get(0));
+
+        //Then
+        assertThat(underTest.selectCollectionVersion()).isNotEqualTo(before);
+    }
+
+    @Test
+    void updateCustomerWithStaleVersionThrows() {
+        //Given
+        long id = underTest.insertCustomer(new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().emailAddress() + "-" + UUID.randomUUID(),
+                20
+        )).orElseThrow();
+        Customer first = new Customer();
+        first.setId(id);
+        first.setAge(21);
+        first.setVersion(0L);
+        underTest.updateCustomer(first);
+
+        Customer second = new Customer();
+        second.setId(id);
+        second.setAge(22);
+        second.setVersion(0L);
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.updateCustomer(second))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        assertThat(underTest.selectCustomerById(id))
+                .hasValueSatisfying(c -> assertThat(c.getAge()).isEqualTo(21));
+    }
+
+    @Test
+    void updateCustomerThatWasDeletedThrows() {
+        //Given
+        long id = underTest.insertCustomer(new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().emailAddress() + "-" + UUID.randomUUID(),
+                20
+        )).orElseThrow();
+        underTest.deleteCustomer(id);
+        Customer changes = new Customer();
+        changes.setId(id);
+        changes.setAge(21);
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.updateCustomer(changes))
+                .isInstanceOf(EmptyResultDataAccessException.class);
+    }
+
+    @Test
+    void updateCustomerWithVersionThatWasDeletedThrowsNotFound() {
+        //Given
+        long id = underTest.insertCustomer(new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().emailAddress() + "-" + UUID.randomUUID(),
+                20
+        )).orElseThrow();
+        underTest.deleteCustomer(id);
+        Customer changes = new Customer();
+        changes.setId(id);
+        changes.setAge(21);
+        changes.setVersion(0L);
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.updateCustomer(changes))
+                .isInstanceOf(EmptyResultDataAccessException.class);
+    }
+}
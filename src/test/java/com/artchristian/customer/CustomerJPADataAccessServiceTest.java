@@ -1,25 +1,52 @@
 package com.artchristian.customer;
 
+import jakarta.persistence.EntityManager;
 import org.checkerframework.checker.units.qual.C;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.hibernate.exception.ConstraintViolationException;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.data.domain.PageRequest;
 
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class CustomerJPADataAccessServiceTest {
 
     @Mock private CustomerRepository customerRepository;
+    @Mock private EntityManager entityManager;
+    @Mock private Session session;
     private CustomerJPADataAccessService underTest;
 
     @BeforeEach
     void setUp() {
-        underTest = new CustomerJPADataAccessService(customerRepository);
+        underTest = new CustomerJPADataAccessService(customerRepository, entityManager);
+    }
+
+    private void givenSession() {
+        when(entityManager.unwrap(Session.class)).thenReturn(session);
+        when(session.getCacheMode()).thenReturn(CacheMode.NORMAL);
     }
 
     @AfterEach
@@ -28,17 +55,59 @@ class CustomerJPADataAccessServiceTest {
 
     @Test
     void selectAllCustomers() {
+        //Given
+        givenSession();
+        Customer art = new Customer(1L, "Art", "art@gmail.com", 30);
+        when(customerRepository.streamAllByOrderByIdAsc()).thenReturn(Stream.of(art));
+
+        //When
+        List<Customer> actual = underTest.selectAllCustomers();
+
+        //Then
+        assertThat(actual).containsExactly(art);
+        verify(customerRepository, never()).findAll();
+    }
+
+    @Test
+    void streamAllCustomersDetachesEachCustomerAndClosesTheStream() {
+        //Given
+        givenSession();
+        Customer art = new Customer(1L, "Art", "art@gmail.com", 30);
+        Customer mina = new Customer(2L, "Mina", "mina@gmail.com", 31);
+        AtomicBoolean closed = new AtomicBoolean();
+        when(customerRepository.streamAllByOrderByIdAsc())
+                .thenReturn(Stream.of(art, mina).onClose(() -> closed.set(true)));
+        List<Customer> consumed = new ArrayList<>();
+
+        //When
+        underTest.streamAllCustomers(consumed::add);
+
+        //Then
+        assertThat(consumed).containsExactly(art, mina);
+        verify(entityManager).detach(art);
+        verify(entityManager).detach(mina);
+        assertThat(closed).isTrue();
+        verify(session).setCacheMode(CacheMode.IGNORE);
+        verify(session).setCacheMode(CacheMode.NORMAL);
+    }
+
+    @Test
+    void selectCustomersAfterId() {
+        //Given
+        long afterId = 10;
+        int limit = 20;
+
         //When
-        underTest.selectAllCustomers();
+        underTest.selectCustomersAfterId(afterId, limit);
 
         //Then
-        verify(customerRepository).findAll();
+        verify(customerRepository).findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, limit));
     }
 
     @Test
     void selectCustomerById() {
         //Given
-        int id = 1;
+        long id = 1;
         //When
         underTest.selectCustomerById(id);
 
@@ -46,33 +115,99 @@ class CustomerJPADataAccessServiceTest {
         verify(customerRepository).findById(id);
     }
 
+    @Test
+    void selectCustomersByIds() {
+        //Given
+        List<Long> ids = List.of(1L, 2L);
+
+        //When
+        underTest.selectCustomersByIds(ids);
+
+        //Then
+        verify(customerRepository).findAllById(ids);
+    }
+
     @Test
     void deleteCustomer() {
         //Given
-        int id = 1;
+        long id = 1;
+        when(customerRepository.deleteCustomerById(id)).thenReturn(1);
+
+        //When
+        boolean actual = underTest.deleteCustomer(id);
+
+        //Then
+        assertThat(actual).isTrue();
+        verify(customerRepository).deleteCustomerById(id);
+    }
+
+    @Test
+    void deleteCustomersByIds() {
+        //Given
+        List<Long> ids = List.of(1L, 2L, 3L);
+        when(customerRepository.findIdsByIdIn(ids)).thenReturn(List.of(1L, 3L));
 
         //When
-        underTest.deleteCustomer(id);
+        List<Long> actual = underTest.deleteCustomersByIds(ids);
 
         //Then
-        verify(customerRepository).deleteById(id);
+        assertThat(actual).containsExactly(1L, 3L);
+        verify(customerRepository).deleteAllByIdInBatch(List.of(1L, 3L));
     }
 
     @Test
     void insertCustomer() {
         //Given
         Customer customer = new Customer(
-                2,
+                2L,
                 "Art",
                 "art@gmail.com",
                 34
         );
 
+        when(customerRepository.saveAndFlush(customer)).thenReturn(customer);
+
         //When
-        underTest.insertCustomer(customer);
+        Optional<Long> actual = underTest.insertCustomer(customer);
 
         //Then
-        verify(customerRepository).save(customer);
+        verify(customerRepository).saveAndFlush(customer);
+        assertThat(actual).hasValue(2L);
+    }
+
+    @Test
+    void insertCustomerReturnsEmptyWhenEmailIsTaken() {
+        //Given
+        Customer customer = new Customer(
+                "Art",
+                "art@gmail.com",
+                34
+        );
+        when(customerRepository.saveAndFlush(customer)).thenThrow(emailConflict());
+
+        //When
+        Optional<Long> actual = underTest.insertCustomer(customer);
+
+        //Then
+        assertThat(actual).isEmpty();
+    }
+
+    @Test
+    void insertCustomers() {
+        //Given
+        Customer art = new Customer("Art", "art@gmail.com", 34);
+        Customer taken = new Customer("Mina", "mina@gmail.com", 32);
+        Customer duplicate = new Customer("Art", "art@gmail.com", 35);
+        when(customerRepository.findEmailsByEmailIn(List.of("art@gmail.com", "mina@gmail.com", "art@gmail.com")))
+                .thenReturn(List.of("mina@gmail.com"));
+
+        //When
+        int[] actual = underTest.insertCustomers(List.of(art, taken, duplicate));
+
+        //Then
+        assertThat(actual).containsExactly(1, 0, 0);
+        verify(customerRepository).saveAll(List.of(art));
+        verify(customerRepository, never()).save(any());
     }
 
     @Test
@@ -90,7 +225,7 @@ class CustomerJPADataAccessServiceTest {
     @Test
     void existsPersonWithID() {
         ///Given
-        int id = 1;
+        long id = 1;
 
         //When
         underTest.existsPersonWithID(id);
@@ -102,17 +237,74 @@ class CustomerJPADataAccessServiceTest {
     @Test
     void updateCustomer() {
         //Given
+        long id = 2;
         Customer customer = new Customer(
-                2,
+                id,
                 "Art",
                 "art@gmail.com",
                 34
         );
+        when(customerRepository.findById(id)).thenReturn(Optional.of(customer));
+        Customer changes = new Customer();
+        changes.setId(id);
+        changes.setAge(35);
+
+        //When
+        underTest.updateCustomer(changes);
+
+        //Then
+        verify(customerRepository).saveAndFlush(customer);
+        assertThat(customer.getName()).isEqualTo("Art");
+        assertThat(customer.getEmail()).isEqualTo("art@gmail.com");
+        assertThat(customer.getAge()).isEqualTo(35);
+    }
+
+    @Test
+    void willNotUpdateCustomerThatDoesNotExist() {
+        //Given
+        long id = 2;
+        when(customerRepository.findById(id)).thenReturn(Optional.empty());
+        Customer changes = new Customer();
+        changes.setId(id);
+        changes.setAge(35);
 
         //When
-        underTest.updateCustomer(customer);
+        //Then
+        assertThatThrownBy(() -> underTest.updateCustomer(changes))
+                .isInstanceOf(EmptyResultDataAccessException.class);
+        verify(customerRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    void updateCustomerThrowsDuplicateKeyWhenEmailIsTaken() {
+        //Given
+        long id = 2;
+        Customer customer = new Customer(
+                id,
+                "Art",
+                "art@gmail.com",
+                34
+        );
+        when(customerRepository.findById(id)).thenReturn(Optional.of(customer));
+        when(customerRepository.saveAndFlush(customer)).thenThrow(emailConflict());
+        Customer changes = new Customer();
+        changes.setId(id);
+        changes.setEmail("mina@gmail.com");
 
+        //When
         //Then
-        verify(customerRepository).save(customer);
+        assertThatThrownBy(() -> underTest.updateCustomer(changes))
+                .isInstanceOf(DuplicateKeyException.class);
+    }
+
+    private static DataIntegrityViolationException emailConflict() {
+        return new DataIntegrityViolationException(
+                "duplicate key",
+                new ConstraintViolationException(
+                        "duplicate key",
+                        new SQLException("duplicate key", "23505"),
+                        "customer_email_unique"
+                )
+        );
     }
 }
\ No newline at end of file
@@ -0,0 +1,124 @@
+package com.artchristian.customer;
+
+import com.artchristian.AbstractTestContainer;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({CustomerJpaCacheConfig.class, CustomerJPADataAccessService.class})
+@TestPropertySource(properties = "customer.jpa-cache.enabled=true")
+// every call commits on its own, the cache is only written on commit
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CustomerJpaCacheTest extends AbstractTestContainer {
+
+    @Autowired
+    private CustomerJPADataAccessService underTest;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void selectCustomerByIdIsServedFromTheEntityCache() {
+        //Given
+        Long id = underTest.insertCustomer(newCustomer()).orElseThrow();
+
+        //When
+        underTest.selectCustomerById(id);
+        underTest.selectCustomerById(id);
+
+        //Then
+        assertThat(statistics.getDomainDataRegionStatistics(Customer.CACHE_REGION).getHitCount())
+                .isEqualTo(2);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void updateCustomerRefreshesTheCachedEntity() {
+        //Given
+        Long id = underTest.insertCustomer(newCustomer()).orElseThrow();
+        underTest.selectCustomerById(id);
+        Customer changes = new Customer();
+        changes.setId(id);
+        changes.setAge(45);
+
+        //When
+        underTest.updateCustomer(changes);
+
+        //Then
+        Customer actual = underTest.selectCustomerById(id).orElseThrow();
+        assertThat(actual.getAge()).isEqualTo(45);
+        assertThat(actual.getVersion()).isEqualTo(1L);
+    }
+
+    @Test
+    void existsQueriesAreCachedUntilTheCustomerIsDeleted() {
+        //Given
+        Customer customer = newCustomer();
+        Long id = underTest.insertCustomer(customer).orElseThrow();
+        underTest.existsPersonWithEmail(customer.getEmail());
+        underTest.existsPersonWithID(id);
+
+        //When
+        boolean cachedEmail = underTest.existsPersonWithEmail(customer.getEmail());
+        boolean cachedId = underTest.existsPersonWithID(id);
+        underTest.deleteCustomer(id);
+
+        //Then
+        assertThat(cachedEmail).isTrue();
+        assertThat(cachedId).isTrue();
+        assertThat(statistics.getQueryRegionStatistics(Customer.QUERY_CACHE_REGION).getHitCount())
+                .isEqualTo(2);
+        assertThat(underTest.existsPersonWithEmail(customer.getEmail())).isFalse();
+        assertThat(underTest.existsPersonWithID(id)).isFalse();
+        assertThat(underTest.selectCustomerById(id)).isEmpty();
+    }
+
+    @Test
+    void streamAllCustomersBypassesTheCache() {
+        //Given
+        Long id = underTest.insertCustomer(newCustomer()).orElseThrow();
+        statistics.clear();
+        List<Long> ids = new ArrayList<>();
+
+        //When
+        underTest.streamAllCustomers(customer -> ids.add(customer.getId()));
+
+        //Then
+        assertThat(ids).contains(id);
+        assertThat(statistics.getDomainDataRegionStatistics(Customer.CACHE_REGION).getPutCount()).isZero();
+        assertThat(statistics.getDomainDataRegionStatistics(Customer.CACHE_REGION).getHitCount()).isZero();
+    }
+
+    private static Customer newCustomer() {
+        return new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().emailAddress() + "-" + UUID.randomUUID(),
+                20
+        );
+    }
+}
@@ -0,0 +1,227 @@
+package com.artchristian.customer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerListDataAccessServiceTest {
+
+    private CustomerListDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerListDataAccessService();
+    }
+
+    @Test
+    void selectAllCustomers() {
+        //When
+        List<Customer> actual = underTest.selectAllCustomers();
+
+        //Then
+        assertThat(actual).extracting(Customer::getId).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void selectCustomersAfterId() {
+        //Given
+        underTest.insertCustomer(new Customer("Jo", "jo@gmail.com", 20));
+        underTest.insertCustomer(new Customer("Al", "al@gmail.com", 21));
+
+        //When
+        List<Customer> actual = underTest.selectCustomersAfterId(1L, 2);
+
+        //Then
+        assertThat(actual).extracting(Customer::getId).containsExactly(2L, 3L);
+    }
+
+    @Test
+    void selectCustomerByIdReturnsCopy() {
+        //Given
+        Customer customer = underTest.selectCustomerById(1L).orElseThrow();
+
+        //When
+        customer.setName("Changed");
+
+        //Then
+        assertThat(underTest.selectCustomerById(1L))
+                .hasValueSatisfying(c -> assertThat(c.getName()).isEqualTo("Art"));
+    }
+
+    @Test
+    void selectCustomersByIds() {
+        //When
+        List<Customer> actual = underTest.selectCustomersByIds(List.of(2L, 99L, 1L));
+
+        //Then
+        assertThat(actual).extracting(Customer::getId).containsExactly(2L, 1L);
+    }
+
+    @Test
+    void insertCustomer() {
+        //Given
+        Customer customer = new Customer("Jo", "jo@gmail.com", 20);
+
+        //When
+        Optional<Long> actual = underTest.insertCustomer(customer);
+
+        //Then
+        assertThat(actual).hasValue(3L);
+        assertThat(underTest.existsPersonWithEmail("jo@gmail.com")).isTrue();
+        assertThat(underTest.existsPersonWithID(3L)).isTrue();
+    }
+
+    @Test
+    void insertCustomerReturnsEmptyWhenEmailIsTaken() {
+        //When
+        Optional<Long> actual = underTest.insertCustomer(new Customer("Art", "art@gmail.com", 20));
+
+        //Then
+        assertThat(actual).isEmpty();
+        assertThat(underTest.selectAllCustomers()).hasSize(2);
+    }
+
+    @Test
+    void existsPersonWithID() {
+        //When
+        //Then
+        assertThat(underTest.existsPersonWithID(1L)).isTrue();
+        assertThat(underTest.existsPersonWithID(99L)).isFalse();
+    }
+
+    @Test
+    void deleteCustomer() {
+        //When
+        boolean actual = underTest.deleteCustomer(1L);
+
+        //Then
+        assertThat(actual).isTrue();
+        assertThat(underTest.deleteCustomer(1L)).isFalse();
+        assertThat(underTest.existsPersonWithID(1L)).isFalse();
+        assertThat(underTest.existsPersonWithEmail("art@gmail.com")).isFalse();
+    }
+
+    @Test
+    void deleteCustomersByIds() {
+        //When
+        List<Long> actual = underTest.deleteCustomersByIds(List.of(2L, 99L));
+
+        //Then
+        assertThat(actual).containsExactly(2L);
+        assertThat(underTest.selectAllCustomers()).extracting(Customer::getId).containsExactly(1L);
+    }
+
+    @Test
+    void updateCustomer() {
+        //Given
+        Customer changes = new Customer();
+        changes.setId(1L);
+        changes.setEmail("art.new@gmail.com");
+
+        //When
+        underTest.updateCustomer(changes);
+
+        //Then
+        Customer actual = underTest.selectCustomerById(1L).orElseThrow();
+        assertThat(actual.getName()).isEqualTo("Art");
+        assertThat(actual.getEmail()).isEqualTo("art.new@gmail.com");
+        assertThat(underTest.existsPersonWithEmail("art@gmail.com")).isFalse();
+    }
+
+    @Test
+    void updateCustomerThrowsDuplicateKeyWhenEmailIsTaken() {
+        //Given
+        Customer changes = new Customer();
+        changes.setId(1L);
+        changes.setEmail("mina@gmail.com");
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.updateCustomer(changes))
+                .isInstanceOf(DuplicateKeyException.class);
+        assertThat(underTest.selectCustomerById(1L))
+                .hasValueSatisfying(c -> assertThat(c.getEmail()).isEqualTo("art@gmail.com"));
+    }
+
+    @Test
+    void updateMissingCustomerThrows() {
+        //Given
+        Customer changes = new Customer();
+        changes.setId(99L);
+        changes.setAge(40);
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.updateCustomer(changes))
+                .isInstanceOf(EmptyResultDataAccessException.class);
+    }
+
+    @Test
+    void updateCustomerWithStaleVersionThrows() {
+        //Given
+        Customer changes = new Customer();
+        changes.setId(1L);
+        changes.setAge(40);
+        changes.setVersion(5L);
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.updateCustomer(changes))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        changes.setVersion(0L);
+        underTest.updateCustomer(changes);
+        assertThat(underTest.selectCustomerById(1L))
+                .hasValueSatisfying(c -> assertThat(c.getVersion()).isEqualTo(1L));
+    }
+
+    @Test
+    void concurrentInsertsAssignUniqueIdsAndRejectDuplicateEmails() throws Exception {
+        //Given
+        int threads = 8;
+        int perThread = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Integer>> futures = new ArrayList<>();
+
+        //When
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                int inserted = 0;
+                for (int i = 0; i < perThread; i++) {
+                    // every thread races for the same emails
+                    Customer customer = new Customer("Name", "user" + i + "@gmail.com", 20);
+                    if (underTest.insertCustomer(customer).isPresent()) {
+                        inserted++;
+                    }
+                    underTest.selectAllCustomers();
+                }
+                return inserted;
+            }));
+        }
+        int inserted = 0;
+        for (Future<Integer> future : futures) {
+            inserted += future.get();
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        //Then
+        List<Customer> all = underTest.selectAllCustomers();
+        assertThat(inserted).isEqualTo(perThread);
+        assertThat(all).hasSize(perThread + 2);
+        assertThat(all).extracting(Customer::getId).doesNotHaveDuplicates().isSorted();
+        assertThat(all).extracting(Customer::getEmail).doesNotHaveDuplicates();
+    }
+}
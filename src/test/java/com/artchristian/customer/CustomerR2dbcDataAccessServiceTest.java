@@ -0,0 +1,177 @@
+package com.artchristian.customer;
+
+import com.artchristian.AbstractTestContainer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerR2dbcDataAccessServiceTest extends AbstractTestContainer {
+
+    private CustomerR2dbcDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerR2dbcDataAccessService(getDatabaseClient());
+    }
+
+    @Test
+    void selectAllCustomers() {
+        //Given
+        Long id = insertCustomer(randomEmail());
+
+        //When
+        List<Customer> actual = underTest.selectAllCustomers().collectList().block();
+
+        //Then
+        assertThat(actual).extracting(Customer::getId).contains(id);
+        assertThat(actual).extracting(Customer::getId).isSorted();
+    }
+
+    @Test
+    void selectCustomersAfterId() {
+        //Given
+        for (int i = 0; i < 3; i++) {
+            insertCustomer(randomEmail());
+        }
+        List<Customer> firstPage = underTest.selectCustomersAfterId(null, 2).collectList().block();
+        long cursor = firstPage.get(firstPage.size() - 1).getId();
+
+        //When
+        List<Customer> actual = underTest.selectCustomersAfterId(cursor, 2).collectList().block();
+
+        //Then
+        assertThat(firstPage).hasSize(2);
+        assertThat(actual).isNotEmpty()
+                .allSatisfy(c -> assertThat(c.getId()).isGreaterThan(cursor));
+    }
+
+    @Test
+    void selectCustomerById() {
+        //Given
+        String email = randomEmail();
+        Long id = insertCustomer(email);
+
+        //When
+        Customer actual = underTest.selectCustomerById(id).block();
+
+        //Then
+        assertThat(actual).isNotNull();
+        assertThat(actual.getId()).isEqualTo(id);
+        assertThat(actual.getEmail()).isEqualTo(email);
+        assertThat(actual.getAge()).isEqualTo(20);
+    }
+
+    @Test
+    void willReturnEmptyWhenSelectCustomerById() {
+        //When
+        //Then
+        assertThat(underTest.selectCustomerById(-1L).blockOptional()).isEmpty();
+    }
+
+    @Test
+    void insertCustomerReturnsEmptyWhenEmailIsTaken() {
+        //Given
+        String email = randomEmail();
+        insertCustomer(email);
+
+        //When
+        Long actual = underTest.insertCustomer(
+                new Customer(FAKER.name().fullName(), email, 30)).block();
+
+        //Then
+        assertThat(actual).isNull();
+    }
+
+    @Test
+    void deleteCustomer() {
+        //Given
+        Long id = insertCustomer(randomEmail());
+
+        //When
+        Boolean deleted = underTest.deleteCustomer(id).block();
+
+        //Then
+        assertThat(deleted).isTrue();
+        assertThat(underTest.existsPersonWithID(id).block()).isFalse();
+        assertThat(underTest.deleteCustomer(id).block()).isFalse();
+    }
+
+    @Test
+    void updateCustomer() {
+        //Given
+        String email = randomEmail();
+        Long id = insertCustomer(email);
+        Customer changes = new Customer();
+        changes.setId(id);
+        changes.setAge(45);
+
+        //When
+        underTest.updateCustomer(changes).block();
+
+        //Then
+        Customer actual = underTest.selectCustomerById(id).block();
+        assertThat(actual.getEmail()).isEqualTo(email);
+        assertThat(actual.getAge()).isEqualTo(45);
+    }
+
+    @Test
+    void updateCustomerThrowsDuplicateKeyWhenEmailIsTaken() {
+        //Given
+        String taken = randomEmail();
+        insertCustomer(taken);
+        Customer changes = new Customer();
+        changes.setId(insertCustomer(randomEmail()));
+        changes.setEmail(taken);
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.updateCustomer(changes).block())
+                .isInstanceOf(DuplicateKeyException.class);
+    }
+
+    @Test
+    void updateCustomerWithStaleVersionThrowsOptimisticLockingFailure() {
+        //Given
+        Customer changes = new Customer();
+        changes.setId(insertCustomer(randomEmail()));
+        changes.setAge(45);
+        changes.setVersion(1L);
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.updateCustomer(changes).block())
+                .isInstanceOf(OptimisticLockingFailureException.class);
+    }
+
+    @Test
+    void updateCustomerWithVersionThatWasDeletedThrowsNotFound() {
+        //Given
+        Long id = insertCustomer(randomEmail());
+        underTest.deleteCustomer(id).block();
+        Customer changes = new Customer();
+        changes.setId(id);
+        changes.setAge(45);
+        changes.setVersion(0L);
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.updateCustomer(changes).block())
+                .isInstanceOf(EmptyResultDataAccessException.class);
+    }
+
+    private Long insertCustomer(String email) {
+        return underTest.insertCustomer(new Customer(FAKER.name().fullName(), email, 20)).block();
+    }
+
+    private static String randomEmail() {
+        return FAKER.internet().emailAddress() + "-" + UUID.randomUUID();
+    }
+}
@@ -7,8 +7,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -43,6 +45,22 @@ class CustomerRepositoryTest extends AbstractTestContainer {
         assertThat(actual).isTrue();
     }
 
+    @Test
+    void savedIdsComeFromTheJpaRangeBelowTwoToTheFiftyThree() {
+        //Given
+        Customer customer = new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().emailAddress() + "-" + UUID.randomUUID(),
+                20
+        );
+
+        //When
+        Long actual = underTest.saveAndFlush(customer).getId();
+
+        //Then
+        assertThat(actual).isBetween(1L << 52, (1L << 53) - 1);
+    }
+
     @Test
     void existsCustomerByEmailFailsWhenEmailNotPresent() {
         //Given
@@ -66,7 +84,7 @@ class CustomerRepositoryTest extends AbstractTestContainer {
         );
 
         underTest.save(customer);
-        int id = underTest.findAll()
+        long id = underTest.findAll()
                 .stream()
                 .filter(c -> c.getEmail().equals(email))
                 .map(Customer::getId)
@@ -84,7 +102,7 @@ class CustomerRepositoryTest extends AbstractTestContainer {
     @Test
     void existsCustomerByIdFailsWhenIdDoesNotExists() {
         //Given
-        int id = -1;
+        long id = -1;
 
         //When
 
@@ -93,4 +111,60 @@ class CustomerRepositoryTest extends AbstractTestContainer {
         //Then
         assertThat(actual).isFalse();
     }
-}
\ No newline at end of file
+
+    @Test
+    void findCollectionVersionChangesOnInsertAndUpdate() {
+        //Given
+        Customer customer = underTest.saveAndFlush(new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().emailAddress() + "-" + UUID.randomUUID(),
+                20
+        ));
+        long before = underTest.findCollectionVersion();
+
+        //When
+        customer.setAge(21);
+        underTest.saveAndFlush(customer);
+        long actual = underTest.findCollectionVersion();
+
+        //Then
+        assertThat(customer.getVersion()).isEqualTo(1L);
+        assertThat(actual).isGreaterThan(before);
+    }
+
+    @Test
+    void findEmailsByEmailIn() {
+        //Given
+        String taken = FAKER.internet().emailAddress() + "-" + UUID.randomUUID();
+        String free = FAKER.internet().emailAddress() + "-" + UUID.randomUUID();
+        underTest.saveAll(List.of(
+                new Customer(FAKER.name().fullName(), taken, 20),
+                new Customer(FAKER.name().fullName(), FAKER.internet().emailAddress() + "-" + UUID.randomUUID(), 21)
+        ));
+
+        //When
+        List<String> actual = underTest.findEmailsByEmailIn(List.of(taken, free));
+
+        //Then
+        assertThat(actual).containsExactly(taken);
+    }
+
+    @Test
+    void streamAllByOrderByIdAsc() {
+        //Given
+        Customer customer = underTest.saveAndFlush(new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().emailAddress() + "-" + UUID.randomUUID(),
+                20
+        ));
+
+        //When
+        List<Long> actual;
+        try (Stream<Customer> customers = underTest.streamAllByOrderByIdAsc()) {
+            actual = customers.map(Customer::getId).toList();
+        }
+
+        //Then
+        assertThat(actual).contains(customer.getId()).isSorted();
+    }
+}
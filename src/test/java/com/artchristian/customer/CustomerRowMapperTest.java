@@ -20,18 +20,20 @@ class CustomerRowMapperTest {
         //Given
         CustomerRowMapper customerRowMapper = new CustomerRowMapper();
         ResultSet resultSet = mock(ResultSet.class);
-        when(resultSet.getInt("id")).thenReturn(1);
+        when(resultSet.getLong("id")).thenReturn(1L);
         when(resultSet.getInt("age")).thenReturn(19);
         when(resultSet.getString("name")).thenReturn("Jamila");
         when(resultSet.getString("email")).thenReturn("jamila@gmail.com");
+        when(resultSet.getLong("version")).thenReturn(3L);
         //When
         Customer actual = customerRowMapper.mapRow(resultSet,1);
 
         //Then
         Customer expected = new Customer(
-                1, "Jamila", "jamila@gmail.com", 19
+                1L, "Jamila", "jamila@gmail.com", 19
         );
 
         assertThat(actual).isEqualTo(expected);
+        assertThat(actual.getVersion()).isEqualTo(3L);
     }
 }
\ No newline at end of file
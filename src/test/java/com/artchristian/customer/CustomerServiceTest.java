@@ -2,15 +2,23 @@ package com.artchristian.customer;
 
 import com.artchristian.exception.BadRequestException;
 import com.artchristian.exception.DuplicateResourceException;
+import com.artchristian.exception.PreconditionFailedException;
 import com.artchristian.exception.ResourceNotFoundException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.LongStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -22,6 +30,7 @@ import static org.mockito.Mockito.verify;
 class CustomerServiceTest {
 
     @Mock private CustomerDao customerDao;
+    @Captor private ArgumentCaptor<List<Customer>> customersArgumentCaptor;
     private CustomerService underTest;
 
     @BeforeEach
@@ -37,10 +46,81 @@ class CustomerServiceTest {
         verify(customerDao).selectAllCustomers();
     }
 
+    @Test
+    void canGetCustomersPageWithNextCursor() {
+        //Given
+        long after = 5;
+        int limit = 2;
+        List<Customer> customers = List.of(
+                new Customer(6L, "Art", "art@gmail.com", 30),
+                new Customer(8L, "Mina", "mina@gmail.com", 31)
+        );
+        when(customerDao.selectCustomersAfterId(after, limit)).thenReturn(customers);
+
+        //When
+        CustomerPage actual = underTest.getCustomersPage(after, limit);
+
+        //Then
+        assertThat(actual.customers()).isEqualTo(customers);
+        assertThat(actual.nextCursor()).isEqualTo(8);
+    }
+
+    @Test
+    void willReturnNoCursorOnLastCustomersPage() {
+        //Given
+        int limit = 2;
+        List<Customer> customers = List.of(
+                new Customer(6L, "Art", "art@gmail.com", 30)
+        );
+        when(customerDao.selectCustomersAfterId(null, limit)).thenReturn(customers);
+
+        //When
+        CustomerPage actual = underTest.getCustomersPage(null, limit);
+
+        //Then
+        assertThat(actual.customers()).isEqualTo(customers);
+        assertThat(actual.nextCursor()).isNull();
+    }
+
+    @Test
+    void willUseDefaultPageSizeWhenLimitIsMissing() {
+        //When
+        underTest.getCustomersPage(null, null);
+
+        //Then
+        verify(customerDao).selectCustomersAfterId(null, 100);
+    }
+
+    @Test
+    void willThrowWhenPageLimitIsOutOfRange() {
+        //When
+        assertThatThrownBy(() -> underTest.getCustomersPage(null, 0))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessage("limit must be between 1 and 1000");
+        assertThatThrownBy(() -> underTest.getCustomersPage(null, 1001))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessage("limit must be between 1 and 1000");
+
+        //Then
+        verify(customerDao, never()).selectCustomersAfterId(any(), anyInt());
+    }
+
+    @Test
+    void streamAllCustomers() {
+        //Given
+        Consumer<Customer> consumer = customer -> {};
+
+        //When
+        underTest.streamAllCustomers(consumer);
+
+        //Then
+        verify(customerDao).streamAllCustomers(consumer);
+    }
+
     @Test
     void canGetCustomer() {
         //Given
-        int id = 10;
+        long id = 10;
         Customer customer = new Customer(
                 id,
                 "Art",
@@ -55,10 +135,37 @@ class CustomerServiceTest {
         assertThat(actual).isEqualTo(customer);
     }
 
+    @Test
+    void canGetCustomersByIdsInRequestedOrderWithMissingIds() {
+        //Given
+        Customer art = new Customer(1L, "Art", "art@gmail.com", 30);
+        Customer mina = new Customer(2L, "Mina", "mina@gmail.com", 32);
+        when(customerDao.selectCustomersByIds(List.of(2L, 3L, 1L))).thenReturn(List.of(art, mina));
+
+        //When
+        CustomerLookup actual = underTest.getCustomersByIds(List.of(2L, 3L, 1L, 2L));
+
+        //Then
+        assertThat(actual.customers()).containsExactly(mina, art);
+        assertThat(actual.missingIds()).containsExactly(3L);
+    }
+
+    @Test
+    void willThrowWhenCustomersByIdsIsEmptyOrTooLarge() {
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.getCustomersByIds(List.of()))
+                .isInstanceOf(BadRequestException.class);
+        List<Long> tooMany = LongStream.rangeClosed(1, 1001).boxed().toList();
+        assertThatThrownBy(() -> underTest.getCustomersByIds(tooMany))
+                .isInstanceOf(BadRequestException.class);
+        verifyNoInteractions(customerDao);
+    }
+
     @Test
     void willThrowWhenGetCustomerReturnEmptyOptional() {
         //Given
-        int id = 10;
+        long id = 10;
         Customer customer = new Customer(
                 id,
                 "Art",
@@ -80,7 +187,7 @@ class CustomerServiceTest {
         //Given
         String email = "art@gmail.com";
 
-        when(customerDao.existsPersonWithEmail(email)).thenReturn(false);
+        when(customerDao.insertCustomer(any())).thenReturn(Optional.of(1L));
 
         CustomerRegistrationRequest request = new CustomerRegistrationRequest(
             "Art", email, 19
@@ -107,7 +214,7 @@ class CustomerServiceTest {
         //Given
         String email = "art@gmail.com";
 
-        when(customerDao.existsPersonWithEmail(email)).thenReturn(true);
+        when(customerDao.insertCustomer(any())).thenReturn(Optional.empty());
 
         CustomerRegistrationRequest request = new CustomerRegistrationRequest(
                 "Art", email, 19
@@ -119,42 +226,107 @@ class CustomerServiceTest {
                 .hasMessage("email already taken");
         //Then
 
-        verify(customerDao, never()).insertCustomer(any());
+        verify(customerDao, never()).existsPersonWithEmail(any());
+
+    }
+
+
 
+    @Test
+    void addCustomers() {
+        //Given
+        List<CustomerRegistrationRequest> requests = List.of(
+                new CustomerRegistrationRequest("Art", "art@gmail.com", 19),
+                new CustomerRegistrationRequest("Mina", null, 20),
+                new CustomerRegistrationRequest("Christian", "christian@gmail.com", 21)
+        );
+        when(customerDao.insertCustomers(anyList())).thenReturn(new int[]{1, 0});
+
+        //When
+        List<CustomerImportResult> actual = underTest.addCustomers(requests);
+
+        //Then
+        verify(customerDao).insertCustomers(customersArgumentCaptor.capture());
+        assertThat(customersArgumentCaptor.getValue())
+                .extracting(Customer::getEmail)
+                .containsExactly("art@gmail.com", "christian@gmail.com");
+
+        assertThat(actual).containsExactly(
+                new CustomerImportResult(0, "art@gmail.com", CustomerImportResult.Status.CREATED),
+                new CustomerImportResult(1, null, CustomerImportResult.Status.INVALID),
+                new CustomerImportResult(2, "christian@gmail.com", CustomerImportResult.Status.DUPLICATE)
+        );
     }
 
+    @Test
+    void willNotInsertWhenAllCustomersAreInvalid() {
+        //Given
+        List<CustomerRegistrationRequest> requests = List.of(
+                new CustomerRegistrationRequest(null, "art@gmail.com", 19)
+        );
 
+        //When
+        List<CustomerImportResult> actual = underTest.addCustomers(requests);
+
+        //Then
+        assertThat(actual).containsExactly(
+                new CustomerImportResult(0, "art@gmail.com", CustomerImportResult.Status.INVALID)
+        );
+        verify(customerDao, never()).insertCustomers(any());
+    }
 
     @Test
     void deleteCustomerByID() {
         //Given
-        int id = 10;
-        when(customerDao.existsPersonWithID(id)).thenReturn(true);
+        long id = 10;
+        when(customerDao.deleteCustomer(id)).thenReturn(true);
 
         //When
         underTest.deleteCustomerByID(id);
         //Then
         verify(customerDao).deleteCustomer(id);
+        verify(customerDao, never()).existsPersonWithID(any());
     }
 
     @Test
     void willThrowExceptionIfIdIsNotFoundWhenDeleteCustomerByID() {
         //Given
-        int id = 10;
-        when(customerDao.existsPersonWithID(id)).thenReturn(false);
+        long id = 10;
+        when(customerDao.deleteCustomer(id)).thenReturn(false);
 
         //When
+        //Then
         assertThatThrownBy(() -> underTest.deleteCustomerByID(id))
                 .isInstanceOf(ResourceNotFoundException.class)
                 .hasMessage("Customer with ID [%s] is not found".formatted(id));
+    }
+
+    @Test
+    void canDeleteCustomersByIdsWithMissingIds() {
+        //Given
+        when(customerDao.deleteCustomersByIds(List.of(2L, 3L, 1L))).thenReturn(List.of(1L, 2L));
+
+        //When
+        CustomerDeletion actual = underTest.deleteCustomersByIds(List.of(2L, 3L, 1L, 2L));
+
         //Then
-        verify(customerDao, never()).deleteCustomer(any());
+        assertThat(actual.deletedIds()).containsExactly(2L, 1L);
+        assertThat(actual.missingIds()).containsExactly(3L);
+    }
+
+    @Test
+    void willThrowWhenDeleteCustomersByIdsIsEmpty() {
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.deleteCustomersByIds(List.of()))
+                .isInstanceOf(BadRequestException.class);
+        verifyNoInteractions(customerDao);
     }
 
     @Test
     void canUpdateAllCustomerProperties() {
         //Given
-        int id = 10;
+        long id = 10;
         Customer customer = new Customer(
                 id,
                 "Art",
@@ -164,7 +336,6 @@ class CustomerServiceTest {
         when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
         //When
         String newEmail = "christian@gmail.com";
-        when(customerDao.existsPersonWithEmail(newEmail)).thenReturn(false);
         CustomerUpdateRequest updateRequest = new CustomerUpdateRequest("Christian", newEmail, 31);
         underTest.updateCustomerById(id, updateRequest);
 
@@ -184,7 +355,7 @@ class CustomerServiceTest {
     @Test
     void willThrowExceptionWhenEmailIsAlreadyTakenWhenUpdateAllCustomerProperties() {
         //Given
-        int id = 10;
+        long id = 10;
         Customer customer = new Customer(
                 id,
                 "Art",
@@ -194,7 +365,7 @@ class CustomerServiceTest {
         when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
         //When
         String newEmail = "christian@gmail.com";
-        when(customerDao.existsPersonWithEmail(newEmail)).thenReturn(true);
+        doThrow(new DuplicateKeyException("duplicate key")).when(customerDao).updateCustomer(any());
 
         CustomerUpdateRequest updateRequest = new CustomerUpdateRequest("Christian", newEmail, 31);
 
@@ -203,13 +374,80 @@ class CustomerServiceTest {
                 .hasMessage("email already taken");
         //Then
 
+        verify(customerDao, never()).existsPersonWithEmail(any());
+    }
+
+    @Test
+    void canUpdateCustomerWhenIfMatchVersionMatches() {
+        //Given
+        long id = 10;
+        Customer customer = new Customer(id, "Art", "art@gmail.com", 30, 3L);
+        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+
+        //When
+        underTest.updateCustomerById(id, new CustomerUpdateRequest(null, null, 31), List.of(2L, 3L));
+
+        //Then
+        ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(
+                Customer.class
+        );
+        verify(customerDao).updateCustomer(customerArgumentCaptor.capture());
+        assertThat(customerArgumentCaptor.getValue().getVersion()).isEqualTo(3L);
+    }
+
+    @Test
+    void willThrowPreconditionFailedWhenIfMatchVersionsDoNotMatch() {
+        //Given
+        long id = 10;
+        Customer customer = new Customer(id, "Art", "art@gmail.com", 30, 3L);
+        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.updateCustomerById(
+                id, new CustomerUpdateRequest(null, null, 31), List.of(1L, 2L)))
+                .isInstanceOf(PreconditionFailedException.class);
+        assertThatThrownBy(() -> underTest.updateCustomerById(
+                id, new CustomerUpdateRequest(null, null, 31), List.of()))
+                .isInstanceOf(PreconditionFailedException.class);
         verify(customerDao, never()).updateCustomer(any());
     }
 
+    @Test
+    void willThrowPreconditionFailedWhenVersionChangedConcurrently() {
+        //Given
+        long id = 10;
+        Customer customer = new Customer(id, "Art", "art@gmail.com", 30, 3L);
+        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        doThrow(new OptimisticLockingFailureException("stale")).when(customerDao).updateCustomer(any());
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.updateCustomerById(
+                id, new CustomerUpdateRequest(null, null, 31), List.of(3L)))
+                .isInstanceOf(PreconditionFailedException.class)
+                .hasMessage("Customer with ID [10] was modified by another request");
+    }
+
+    @Test
+    void willThrowNotFoundWhenCustomerIsDeletedBeforeUpdate() {
+        //Given
+        long id = 10;
+        Customer customer = new Customer(id, "Art", "art@gmail.com", 30, 3L);
+        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        doThrow(new EmptyResultDataAccessException(1)).when(customerDao).updateCustomer(any());
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.updateCustomerById(id, new CustomerUpdateRequest(null, null, 31)))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("Customer with ID [10] is not found");
+    }
+
     @Test
     void canUpdateOnlyCustomerName() {
         //Given
-        int id = 10;
+        long id = 10;
         Customer customer = new Customer(
                 id,
                 "Art",
@@ -232,15 +470,16 @@ class CustomerServiceTest {
         verify(customerDao).updateCustomer(customerArgumentCaptor.capture());
         Customer capturedCustomer = customerArgumentCaptor.getValue();
 
+        assertThat(capturedCustomer.getId()).isEqualTo(id);
         assertThat(capturedCustomer.getName()).isEqualTo(updateRequest.name());
-        assertThat(capturedCustomer.getEmail()).isEqualTo(customer.getEmail());
-        assertThat(capturedCustomer.getAge()).isEqualTo(customer.getAge());
+        assertThat(capturedCustomer.getEmail()).isNull();
+        assertThat(capturedCustomer.getAge()).isNull();
     }
 
     @Test
     void canUpdateOnlyCustomerEmail() {
         //Given
-        int id = 10;
+        long id = 10;
         Customer customer = new Customer(
                 id,
                 "Art",
@@ -251,7 +490,6 @@ class CustomerServiceTest {
         //When
         String newEmail = "christian@gmail.com";
 
-        when(customerDao.existsPersonWithEmail(newEmail)).thenReturn(false);
         CustomerUpdateRequest updateRequest = new CustomerUpdateRequest(null,newEmail,null);
         underTest.updateCustomerById(id, updateRequest);
 
@@ -263,15 +501,16 @@ class CustomerServiceTest {
         verify(customerDao).updateCustomer(customerArgumentCaptor.capture());
         Customer capturedCustomer = customerArgumentCaptor.getValue();
 
-        assertThat(capturedCustomer.getName()).isEqualTo(customer.getName());
+        assertThat(capturedCustomer.getId()).isEqualTo(id);
+        assertThat(capturedCustomer.getName()).isNull();
         assertThat(capturedCustomer.getEmail()).isEqualTo(updateRequest.email());
-        assertThat(capturedCustomer.getAge()).isEqualTo(customer.getAge());
+        assertThat(capturedCustomer.getAge()).isNull();
     }
 
     @Test
     void canUpdateOnlyCustomerAge() {
         //Given
-        int id = 10;
+        long id = 10;
         Customer customer = new Customer(
                 id,
                 "Art",
@@ -294,16 +533,46 @@ class CustomerServiceTest {
         verify(customerDao).updateCustomer(customerArgumentCaptor.capture());
         Customer capturedCustomer = customerArgumentCaptor.getValue();
 
-        assertThat(capturedCustomer.getName()).isEqualTo(customer.getName());
-        assertThat(capturedCustomer.getEmail()).isEqualTo(customer.getEmail());
+        assertThat(capturedCustomer.getId()).isEqualTo(id);
+        assertThat(capturedCustomer.getName()).isNull();
+        assertThat(capturedCustomer.getEmail()).isNull();
+        assertThat(capturedCustomer.getAge()).isEqualTo(updateRequest.age());
+    }
+
+    @Test
+    void canUpdateOnlyChangedCustomerProperties() {
+        //Given
+        long id = 10;
+        Customer customer = new Customer(
+                id,
+                "Art",
+                "art@gmail.com",
+                30
+        );
+        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        //When
+        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest("Art", "art@gmail.com", 31);
+        underTest.updateCustomerById(id, updateRequest);
+
+        //Then
+        ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(
+                Customer.class
+        );
+        verify(customerDao).updateCustomer(customerArgumentCaptor.capture());
+        Customer capturedCustomer = customerArgumentCaptor.getValue();
+
+        assertThat(capturedCustomer.getId()).isEqualTo(id);
+        assertThat(capturedCustomer.getName()).isNull();
+        assertThat(capturedCustomer.getEmail()).isNull();
         assertThat(capturedCustomer.getAge()).isEqualTo(updateRequest.age());
+        verify(customerDao, never()).existsPersonWithEmail(any());
     }
 
     @Test
     void willThrowExceptionWhenNoChangeUpdateCustomer(){
 
         //Given
-        int id = 10;
+        long id = 10;
         Customer customer = new Customer(
                 id,
                 "Art",
@@ -329,7 +598,7 @@ class CustomerServiceTest {
     void willThrowExceptionWhenNoDataUpdateCustomer(){
 
         //Given
-        int id = 10;
+        long id = 10;
         Customer customer = new Customer(
                 id,
                 "Art",
@@ -0,0 +1,153 @@
+package com.artchristian.customer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerStoreTest {
+
+    private CustomerStore underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerStore();
+    }
+
+    @Test
+    void putKeepsALaterVersion() {
+        //Given
+        underTest.put(customer(1L, "art@gmail.com", 3L));
+
+        //When
+        underTest.put(customer(1L, "old@gmail.com", 2L));
+
+        //Then
+        assertThat(underTest.get(1L)).hasValueSatisfying(c -> {
+            assertThat(c.getVersion()).isEqualTo(3L);
+            assertThat(c.getEmail()).isEqualTo("art@gmail.com");
+        });
+        assertThat(underTest.containsEmail("old@gmail.com")).isFalse();
+    }
+
+    @Test
+    void putReplacesAnEarlierVersion() {
+        //Given
+        underTest.put(customer(1L, "old@gmail.com", 2L));
+
+        //When
+        underTest.put(customer(1L, "art@gmail.com", 3L));
+
+        //Then
+        assertThat(underTest.get(1L)).map(Customer::getVersion).hasValue(3L);
+        assertThat(underTest.containsEmail("old@gmail.com")).isFalse();
+        assertThat(underTest.containsEmail("art@gmail.com")).isTrue();
+    }
+
+    @Test
+    void collectionVersionMovesWithWritesAndNotWithReads() {
+        //Given
+        underTest.put(customer(1L, "art@gmail.com", 0L));
+        CustomerCollectionVersion before = underTest.collectionVersion();
+
+        //When
+        underTest.snapshot();
+        underTest.afterId(null, 10);
+        CustomerCollectionVersion afterReads = underTest.collectionVersion();
+        underTest.delete(1L);
+
+        //Then
+        assertThat(afterReads).isEqualTo(before);
+        assertThat(underTest.collectionVersion()).isNotEqualTo(before);
+    }
+
+    @Test
+    void aWriteIsNotVisibleUntilTheJournalHasIt() {
+        //Given
+        TestJournal journal = new TestJournal();
+        underTest = new CustomerStore(journal);
+        journal.store = underTest;
+
+        //When
+        Long id = underTest.insert(new Customer("Art", "art@gmail.com", 30)).orElseThrow();
+        underTest.update(new Customer(id, null, "christian@gmail.com", 31));
+        underTest.delete(id);
+
+        //Then
+        assertThat(journal.seenWhileAwaiting).containsExactly(
+                "absent",
+                "art@gmail.com 30",
+                "christian@gmail.com 31");
+    }
+
+    @Test
+    void aWriteTheJournalFailsIsNotApplied() {
+        //Given
+        TestJournal journal = new TestJournal();
+        underTest = new CustomerStore(journal);
+        Long id = underTest.insert(new Customer("Art", "art@gmail.com", 30)).orElseThrow();
+        journal.failing = true;
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.insert(new Customer("Mina", "mina@gmail.com", 20)))
+                .isInstanceOf(DataAccessResourceFailureException.class);
+        assertThatThrownBy(() -> underTest.update(new Customer(id, null, "christian@gmail.com", 31)))
+                .isInstanceOf(DataAccessResourceFailureException.class);
+        assertThatThrownBy(() -> underTest.delete(id))
+                .isInstanceOf(DataAccessResourceFailureException.class);
+        assertThat(underTest.snapshot()).extracting(Customer::getEmail).containsExactly("art@gmail.com");
+        assertThat(underTest.get(id)).map(Customer::getAge).hasValue(30);
+        assertThat(underTest.containsEmail("mina@gmail.com")).isFalse();
+        assertThat(underTest.containsEmail("christian@gmail.com")).isFalse();
+        journal.failing = false;
+        assertThat(underTest.insert(new Customer("Mina", "mina@gmail.com", 20))).isPresent();
+        assertThat(underTest.update(new Customer(id, null, "christian@gmail.com", 31))).isTrue();
+    }
+
+    private static Customer customer(Long id, String email, Long version) {
+        Customer customer = new Customer(id, "Art", email, 30);
+        customer.setVersion(version);
+        return customer;
+    }
+
+    private static final class TestJournal implements CustomerJournal {
+        private final List<String> seenWhileAwaiting = new ArrayList<>();
+        private CustomerStore store;
+        private boolean failing;
+
+        @Override
+        public void beginWrite() {
+        }
+
+        @Override
+        public void put(Customer customer) {
+        }
+
+        @Override
+        public void delete(long id) {
+        }
+
+        @Override
+        public void endWrite() {
+        }
+
+        @Override
+        public void awaitDurable() {
+            if (failing) {
+                throw new DataAccessResourceFailureException("could not write the customer log");
+            }
+            if (store != null) {
+                seenWhileAwaiting.add(store.snapshot().stream()
+                        .map(c -> c.getEmail() + " " + c.getAge())
+                        .findFirst()
+                        .orElse("absent"));
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.artchristian.customer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerWriteAheadLogTest {
+
+    @TempDir
+    Path directory;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<CustomerWriteAheadLog> opened = new ArrayList<>();
+    private CustomerWriteAheadLog writeAheadLog;
+    private CustomerListDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        writeAheadLog = open(directory.resolve("live"));
+        underTest = new CustomerListDataAccessService(writeAheadLog);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (CustomerWriteAheadLog log : opened) {
+            log.close();
+        }
+    }
+
+    @Test
+    void durableListStartsEmpty() {
+        //Then
+        assertThat(underTest.selectAllCustomers()).isEmpty();
+    }
+
+    @Test
+    void everyReturnedWriteSurvivesACrash() throws IOException {
+        //Given
+        Long updated = underTest.insertCustomer(new Customer("Alex", "alex@gmail.com", 20)).orElseThrow();
+        Long deleted = underTest.insertCustomer(new Customer("Mina", "mina@gmail.com", 30)).orElseThrow();
+        underTest.insertCustomer(new Customer("Zoë", "zoë@gmail.com", 40));
+        underTest.updateCustomer(new Customer(updated, null, "alexander@gmail.com", 21));
+        underTest.deleteCustomer(deleted);
+        List<Customer> before = underTest.selectAllCustomers();
+
+        //When
+        CustomerListDataAccessService restarted = new CustomerListDataAccessService(open(crashCopy()));
+
+        //Then
+        assertThat(restarted.selectAllCustomers()).containsExactlyElementsOf(before);
+        assertThat(restarted.selectCollectionVersion()).isNotEqualTo(underTest.selectCollectionVersion());
+        assertThat(restarted.existsPersonWithEmail("alex@gmail.com")).isFalse();
+        assertThat(restarted.existsPersonWithEmail("mina@gmail.com")).isFalse();
+        // ids are not handed out twice, not even the last one deleted
+        underTest.deleteCustomer(3L);
+        CustomerListDataAccessService restartedAgain = new CustomerListDataAccessService(open(crashCopy()));
+        assertThat(restartedAgain.insertCustomer(new Customer("Mina", "mina@gmail.com", 30))).hasValue(4L);
+    }
+
+    @Test
+    void snapshotReplacesTheLogsItCovers() throws IOException {
+        //Given
+        for (int i = 0; i < 100; i++) {
+            underTest.insertCustomer(new Customer("Customer " + i, "customer" + i + "@gmail.com", 20));
+        }
+        List<String> logsBefore = files(directory.resolve("live"), ".log");
+
+        //When
+        writeAheadLog.snapshot();
+        underTest.updateCustomer(new Customer(1L, null, null, 99));
+        underTest.deleteCustomer(2L);
+
+        //Then
+        assertThat(files(directory.resolve("live"), ".snapshot")).hasSize(1);
+        assertThat(files(directory.resolve("live"), ".log")).doesNotContainAnyElementsOf(logsBefore);
+        CustomerListDataAccessService restarted = new CustomerListDataAccessService(open(crashCopy()));
+        assertThat(restarted.selectAllCustomers()).containsExactlyElementsOf(underTest.selectAllCustomers());
+        assertThat(restarted.selectCustomerById(1L)).map(Customer::getAge).hasValue(99);
+    }
+
+    @Test
+    void tornLastRecordIsDropped() throws IOException {
+        //Given
+        underTest.insertCustomer(new Customer("Alex", "alex@gmail.com", 20));
+        Path copy = crashCopy();
+        Path newestLog = copy.resolve(files(copy, ".log").get(files(copy, ".log").size() - 1));
+        Files.write(newestLog, new byte[]{0, 0, 0, 42, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        //When
+        CustomerListDataAccessService restarted = new CustomerListDataAccessService(open(copy));
+
+        //Then
+        assertThat(restarted.selectAllCustomers()).extracting(Customer::getEmail).containsExactly("alex@gmail.com");
+        assertThat(restarted.insertCustomer(new Customer("Mina", "mina@gmail.com", 30))).hasValue(2L);
+    }
+
+    @Test
+    void concurrentWritersShareSyncs() throws Exception {
+        //Given
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> writers = new ArrayList<>();
+
+        //When
+        for (int thread = 0; thread < 8; thread++) {
+            int first = thread * 100;
+            writers.add(executor.submit(() -> {
+                for (int i = first; i < first + 100; i++) {
+                    underTest.insertCustomer(new Customer("Customer " + i, "customer" + i + "@gmail.com", 20));
+                }
+            }));
+        }
+        for (Future<?> writer : writers) {
+            writer.get();
+        }
+        executor.shutdown();
+
+        //Then
+        assertThat(meterRegistry.get("customer.list.wal.batch.size").summary().totalAmount()).isEqualTo(800);
+        CustomerListDataAccessService restarted = new CustomerListDataAccessService(open(crashCopy()));
+        assertThat(restarted.selectAllCustomers()).hasSize(800);
+    }
+
+    @Test
+    void closeLeavesOnlyASnapshot() throws IOException {
+        //Given
+        underTest.insertCustomer(new Customer("Alex", "alex@gmail.com", 20));
+
+        //When
+        writeAheadLog.close();
+        CustomerListDataAccessService restarted =
+                new CustomerListDataAccessService(open(directory.resolve("live")));
+
+        //Then
+        assertThat(restarted.selectAllCustomers()).extracting(Customer::getEmail).containsExactly("alex@gmail.com");
+        assertThat(files(directory.resolve("live"), ".snapshot")).hasSize(1);
+        assertThat(Files.size(directory.resolve("live").resolve(files(directory.resolve("live"), ".log").get(0))))
+                .isZero();
+    }
+
+    private CustomerWriteAheadLog open(Path logDirectory) {
+        CustomerWriteAheadLog log = new CustomerWriteAheadLog(
+                new CustomerListDurabilityProperties(true, logDirectory.toString(), 1000, Duration.ofHours(1)),
+                meterRegistry);
+        opened.add(log);
+        return log;
+    }
+
+    // the files as a crash would leave them, every write that returned is synced
+    private Path crashCopy() throws IOException {
+        Path copy = Files.createTempDirectory(directory, "crash");
+        for (String file : files(directory.resolve("live"), "")) {
+            if (!file.equals("lock")) {
+                Files.copy(directory.resolve("live").resolve(file), copy.resolve(file));
+            }
+        }
+        return copy;
+    }
+
+    private static List<String> files(Path logDirectory, String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(logDirectory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(suffix))
+                    .sorted()
+                    .toList();
+        }
+    }
+}
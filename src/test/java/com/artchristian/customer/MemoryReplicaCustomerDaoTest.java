@@ -0,0 +1,160 @@
+package com.artchristian.customer;
+
+import com.artchristian.AbstractTestContainer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class MemoryReplicaCustomerDaoTest extends AbstractTestContainer {
+
+    private final JdbcTemplate jdbcTemplate = getJdbcTemplate();
+    private MemoryReplicaCustomerDao underTest;
+
+    @BeforeEach
+    void setUp() {
+        CustomerRowMapper customerRowMapper = new CustomerRowMapper();
+        underTest = new MemoryReplicaCustomerDao(
+                new CustomerJDBCDataAccessService(
+                        jdbcTemplate,
+                        customerRowMapper,
+                        new CustomerImportProperties(2, CustomerImportProperties.Mode.BATCH)),
+                jdbcTemplate,
+                customerRowMapper,
+                2,
+                3);
+    }
+
+    @Test
+    void readsGoToTheDatabaseUntilTheFirstLoad() {
+        //Given
+        Long id = insertCustomer();
+
+        //When
+        Optional<Customer> actual = underTest.selectCustomerById(id);
+
+        //Then
+        assertThat(underTest.isLoaded()).isFalse();
+        assertThat(actual).isPresent();
+    }
+
+    @Test
+    void allCustomersChangedLoadsEveryIdRange() {
+        //Given
+        List<Long> ids = List.of(insertCustomer(), insertCustomer(), insertCustomer(), insertCustomer(),
+                insertCustomer());
+        Integer rows = jdbcTemplate.queryForObject("SELECT count(*) FROM customer", Integer.class);
+
+        //When
+        underTest.allCustomersChanged();
+
+        //Then
+        assertThat(underTest.isLoaded()).isTrue();
+        assertThat(underTest.size()).isEqualTo(rows);
+        assertThat(underTest.selectCustomersByIds(ids)).extracting(Customer::getId)
+                .containsExactlyInAnyOrderElementsOf(ids);
+        assertThat(underTest.lastLoad()).isPresent();
+    }
+
+    @Test
+    void allCustomersChangedLoadsSparseIdsInChunksOfExistingRows() {
+        //Given
+        Long low = insertCustomer();
+        Long high = jdbcTemplate.queryForObject(
+                "INSERT INTO customer(id, name, email, age) VALUES (?, ?, ?, ?) RETURNING id",
+                Long.class,
+                1L << 62,
+                FAKER.name().fullName(),
+                randomEmail(),
+                20);
+
+        //When
+        assertTimeoutPreemptively(Duration.ofSeconds(30), underTest::allCustomersChanged);
+
+        //Then
+        assertThat(underTest.selectCustomersByIds(List.of(low, high))).extracting(Customer::getId)
+                .containsExactlyInAnyOrder(low, high);
+    }
+
+    @Test
+    void readsAreServedFromMemoryUntilTheChangeArrives() {
+        //Given
+        Long updated = insertCustomer();
+        Long deleted = insertCustomer();
+        underTest.allCustomersChanged();
+        jdbcTemplate.update("UPDATE customer SET age = 77, version = version + 1 WHERE id = ?", updated);
+        jdbcTemplate.update("DELETE FROM customer WHERE id = ?", deleted);
+
+        //When
+        Customer beforeChange = underTest.selectCustomerById(updated).orElseThrow();
+        boolean deletedBeforeChange = underTest.existsPersonWithID(deleted);
+        underTest.customersChanged(List.of(updated, deleted));
+
+        //Then
+        assertThat(beforeChange.getAge()).isEqualTo(20);
+        assertThat(deletedBeforeChange).isTrue();
+        Customer afterChange = underTest.selectCustomerById(updated).orElseThrow();
+        assertThat(afterChange.getAge()).isEqualTo(77);
+        assertThat(afterChange.getVersion()).isEqualTo(1L);
+        assertThat(underTest.existsPersonWithID(deleted)).isFalse();
+    }
+
+    @Test
+    void collectionVersionIsKeptByTheCopyOnceLoaded() {
+        //Given
+        Long updated = insertCustomer();
+        underTest.allCustomersChanged();
+        CustomerCollectionVersion before = underTest.selectCollectionVersion();
+
+        //When
+        jdbcTemplate.update("UPDATE customer SET age = 78, version = version + 1 WHERE id = ?", updated);
+        CustomerCollectionVersion beforeChange = underTest.selectCollectionVersion();
+        underTest.customersChanged(List.of(updated));
+
+        //Then
+        assertThat(beforeChange).isEqualTo(before);
+        assertThat(underTest.selectCollectionVersion()).isNotEqualTo(before);
+    }
+
+    @Test
+    void writesGoThroughAndAreReadBackWithoutANotification() {
+        //Given
+        underTest.allCustomersChanged();
+        String email = randomEmail();
+
+        //When
+        Long id = underTest.insertCustomer(new Customer(FAKER.name().fullName(), email, 20)).orElseThrow();
+        Customer changes = new Customer();
+        changes.setId(id);
+        changes.setAge(33);
+        underTest.updateCustomer(changes);
+
+        //Then
+        assertThat(jdbcTemplate.queryForObject("SELECT age FROM customer WHERE id = ?", Integer.class, id))
+                .isEqualTo(33);
+        assertThat(underTest.existsPersonWithEmail(email)).isTrue();
+        assertThat(underTest.selectCustomerById(id)).map(Customer::getAge).hasValue(33);
+        assertThat(underTest.deleteCustomer(id)).isTrue();
+        assertThat(underTest.existsPersonWithID(id)).isFalse();
+    }
+
+    private Long insertCustomer() {
+        return jdbcTemplate.queryForObject(
+                "INSERT INTO customer(name, email, age) VALUES (?, ?, ?) RETURNING id",
+                Long.class,
+                FAKER.name().fullName(),
+                randomEmail(),
+                20);
+    }
+
+    private static String randomEmail() {
+        return FAKER.internet().emailAddress() + "-" + UUID.randomUUID();
+    }
+}
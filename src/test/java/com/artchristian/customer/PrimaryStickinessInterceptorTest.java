@@ -0,0 +1,98 @@
+package com.artchristian.customer;
+
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PrimaryStickinessInterceptorTest {
+
+    private final Clock clock = Clock.fixed(Instant.ofEpochMilli(1_000_000), ZoneOffset.UTC);
+    private final PrimaryStickinessInterceptor underTest =
+            new PrimaryStickinessInterceptor(Duration.ofSeconds(6), clock);
+
+    @AfterEach
+    void tearDown() {
+        ReplicaRouting.unpin();
+    }
+
+    @Test
+    void writeIsPinnedAndLeavesACookie() {
+        //Given
+        MockHttpServletRequest request = new MockHttpServletRequest("PUT", "/api/v1/customers/1");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        //When
+        underTest.preHandle(request, response, new Object());
+
+        //Then
+        assertThat(ReplicaRouting.isPinnedToPrimary()).isTrue();
+        Cookie cookie = response.getCookie(PrimaryStickinessInterceptor.COOKIE);
+        assertThat(cookie).isNotNull();
+        assertThat(cookie.getValue()).isEqualTo("1006000");
+        assertThat(cookie.getMaxAge()).isEqualTo(6);
+    }
+
+    @Test
+    void readWithAnUnexpiredCookieIsPinnedUntilCompletion() {
+        //Given
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/customers/1");
+        request.setCookies(new Cookie(PrimaryStickinessInterceptor.COOKIE, "1006000"));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        //When
+        underTest.preHandle(request, response, new Object());
+        boolean pinned = ReplicaRouting.isPinnedToPrimary();
+        underTest.afterCompletion(request, response, new Object(), null);
+
+        //Then
+        assertThat(pinned).isTrue();
+        assertThat(ReplicaRouting.isPinnedToPrimary()).isFalse();
+        assertThat(response.getCookies()).isEmpty();
+    }
+
+    @Test
+    void readWithAnExpiredOrBrokenCookieIsNotPinned() {
+        //Given
+        MockHttpServletRequest expired = new MockHttpServletRequest("GET", "/api/v1/customers");
+        expired.setCookies(new Cookie(PrimaryStickinessInterceptor.COOKIE, "999999"));
+        MockHttpServletRequest broken = new MockHttpServletRequest("GET", "/api/v1/customers");
+        broken.setCookies(new Cookie(PrimaryStickinessInterceptor.COOKIE, "soon"));
+
+        //When
+        underTest.preHandle(expired, new MockHttpServletResponse(), new Object());
+        boolean expiredPinned = ReplicaRouting.isPinnedToPrimary();
+        underTest.preHandle(broken, new MockHttpServletResponse(), new Object());
+        boolean brokenPinned = ReplicaRouting.isPinnedToPrimary();
+
+        //Then
+        assertThat(expiredPinned).isFalse();
+        assertThat(brokenPinned).isFalse();
+    }
+
+    @Test
+    void pinFollowsTheStreamedResponseOntoTheAsyncThread() {
+        //Given
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/customers");
+        request.setCookies(new Cookie(PrimaryStickinessInterceptor.COOKIE, "1006000"));
+        ServletWebRequest webRequest = new ServletWebRequest(request);
+
+        //When
+        underTest.preProcess(webRequest, () -> null);
+        boolean pinned = ReplicaRouting.isPinnedToPrimary();
+        underTest.postProcess(webRequest, () -> null, null);
+
+        //Then
+        assertThat(pinned).isTrue();
+        assertThat(ReplicaRouting.isPinnedToPrimary()).isFalse();
+    }
+}
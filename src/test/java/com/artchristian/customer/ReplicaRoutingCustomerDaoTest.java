@@ -0,0 +1,137 @@
+package com.artchristian.customer;
+
+import com.artchristian.AbstractTestContainer;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Uses a second database on the same server as the replica. Nothing replicates between the two, so the
+ * database a call reads from shows which pool it was routed to.
+ */
+class ReplicaRoutingCustomerDaoTest extends AbstractTestContainer {
+
+    private static final String REPLICA_DATABASE = "customer_replica_test";
+
+    private ReplicaRoutingDataSource routingDataSource;
+    private JdbcTemplate replica;
+    private ReplicaRoutingCustomerDao underTest;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        JdbcTemplate primary = getJdbcTemplate();
+        if (primary.queryForList("SELECT 1 FROM pg_database WHERE datname = ?", REPLICA_DATABASE).isEmpty()) {
+            primary.execute("CREATE DATABASE " + REPLICA_DATABASE);
+        }
+        DataSource replicaDataSource = dataSource(postgreSQLContainer.getJdbcUrl()
+                .replaceFirst("/[^/?]+(\\?|$)", "/" + REPLICA_DATABASE + "$1"));
+        Flyway.configure().dataSource(replicaDataSource).load().migrate();
+        replica = new JdbcTemplate(replicaDataSource);
+
+        routingDataSource = new ReplicaRoutingDataSource(
+                dataSource(postgreSQLContainer.getJdbcUrl()),
+                Map.of("replica-0", replicaDataSource),
+                Duration.ofSeconds(5),
+                new SimpleMeterRegistry());
+        routingDataSource.afterPropertiesSet();
+        routingDataSource.checkLag();
+        underTest = new ReplicaRoutingCustomerDao(new CustomerJDBCDataAccessService(
+                new JdbcTemplate(routingDataSource),
+                new CustomerRowMapper(),
+                new CustomerImportProperties(2, CustomerImportProperties.Mode.BATCH)
+        ));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        ReplicaRouting.unpin();
+        routingDataSource.destroy();
+    }
+
+    @Test
+    void writesGoToThePrimaryAndReadsToTheReplica() {
+        //Given
+        String email = randomEmail();
+
+        //When
+        Long id = underTest.insertCustomer(new Customer(FAKER.name().fullName(), email, 20)).orElseThrow();
+
+        //Then
+        assertThat(getJdbcTemplate().queryForObject(
+                "SELECT count(*) FROM customer WHERE id = ?", Integer.class, id)).isEqualTo(1);
+        assertThat(underTest.existsPersonWithEmail(email)).isFalse();
+    }
+
+    @Test
+    void readsSeeRowsThatOnlyExistOnTheReplica() {
+        //Given
+        String email = randomEmail();
+        replica.update("INSERT INTO customer(name, email, age) VALUES (?, ?, ?)", "Replica", email, 30);
+
+        //When
+        boolean actual = underTest.existsPersonWithEmail(email);
+
+        //Then
+        assertThat(actual).isTrue();
+    }
+
+    @Test
+    void pinnedReadsSeeTheirOwnWrite() {
+        //Given
+        Long id = underTest.insertCustomer(new Customer(FAKER.name().fullName(), randomEmail(), 20))
+                .orElseThrow();
+        ReplicaRouting.pinToPrimary();
+
+        //When
+        Optional<Customer> actual = underTest.selectCustomerById(id);
+
+        //Then
+        assertThat(actual).isPresent();
+    }
+
+    @Test
+    void cacheMissesAreLoadedFromThePrimary() {
+        //Given
+        String email = randomEmail();
+        Long id = underTest.insertCustomer(new Customer(FAKER.name().fullName(), email, 20)).orElseThrow();
+        CachingCustomerDao cached = new CachingCustomerDao(underTest, Caffeine.newBuilder().build());
+
+        //When
+        Optional<Customer> actual = cached.selectCustomerById(id);
+        cached.invalidateAll();
+        List<Customer> batch = cached.selectCustomersByIds(List.of(id));
+
+        //Then
+        assertThat(actual).hasValueSatisfying(c -> assertThat(c.getEmail()).isEqualTo(email));
+        assertThat(batch).extracting(Customer::getEmail).containsExactly(email);
+        assertThat(underTest.existsPersonWithEmail(email)).isFalse();
+    }
+
+    private static DataSource dataSource(String url) {
+        return DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(url)
+                .username(postgreSQLContainer.getUsername())
+                .password(postgreSQLContainer.getPassword())
+                .build();
+    }
+
+    private static String randomEmail() {
+        return FAKER.internet().emailAddress() + "-" + UUID.randomUUID();
+    }
+}
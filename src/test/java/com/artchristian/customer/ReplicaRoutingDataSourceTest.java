@@ -0,0 +1,201 @@
+package com.artchristian.customer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class ReplicaRoutingDataSourceTest {
+
+    @Mock private DataSource primary;
+    @Mock private DataSource replicaA;
+    @Mock private DataSource replicaB;
+    @Mock private Connection primaryConnection;
+    @Mock private Connection replicaAConnection;
+    @Mock private Connection replicaBConnection;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ReplicaRoutingDataSource underTest;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        when(replicaA.getConnection()).thenReturn(replicaAConnection);
+        when(replicaB.getConnection()).thenReturn(replicaBConnection);
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("replica-0", replicaA);
+        replicas.put("replica-1", replicaB);
+        underTest = new ReplicaRoutingDataSource(primary, replicas, Duration.ofSeconds(5), meterRegistry);
+        underTest.afterPropertiesSet();
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReplicaRouting.unpin();
+    }
+
+    @Test
+    void writesGoToThePrimary() throws SQLException {
+        //Given
+        givenLag(replicaAConnection, 0);
+        givenLag(replicaBConnection, 0);
+        underTest.checkLag();
+
+        //When
+        Connection actual = underTest.getConnection();
+
+        //Then
+        assertThat(actual).isSameAs(primaryConnection);
+        assertThat(connections("primary", "write")).isEqualTo(1);
+    }
+
+    @Test
+    void readsAreSpreadOverTheReplicasInTurn() throws SQLException {
+        //Given
+        givenLag(replicaAConnection, 0);
+        givenLag(replicaBConnection, 100);
+        underTest.checkLag();
+
+        //When
+        List<Connection> actual = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            actual.add(ReplicaRouting.read(this::connection));
+        }
+
+        //Then
+        assertThat(actual).containsExactly(
+                replicaAConnection, replicaBConnection, replicaAConnection, replicaBConnection);
+        assertThat(connections("replica-0", "read")).isEqualTo(2);
+        assertThat(meterRegistry.get("customer.datasource.replica.lag").tag("pool", "replica-1").gauge().value())
+                .isEqualTo(100);
+    }
+
+    @Test
+    void laggingAndUnreachableReplicasAreSkipped() throws SQLException {
+        //Given
+        givenLag(replicaAConnection, 10_000);
+        when(replicaBConnection.createStatement()).thenThrow(new SQLException("connection refused"));
+        underTest.checkLag();
+
+        //When
+        Connection actual = ReplicaRouting.read(this::connection);
+
+        //Then
+        assertThat(actual).isSameAs(primaryConnection);
+        assertThat(connections("primary", "no_replica")).isEqualTo(1);
+        assertThat(meterRegistry.get("customer.datasource.replica.lag").tag("pool", "replica-1").gauge().value())
+                .isNaN();
+    }
+
+    @Test
+    void replicasThatStoppedStreamingAreSkipped() throws SQLException {
+        //Given
+        givenLag(replicaAConnection, 0);
+        givenLag(replicaBConnection, 0);
+        underTest.checkLag();
+        givenNotStreaming(replicaAConnection);
+        givenNotStreaming(replicaBConnection);
+        underTest.checkLag();
+
+        //When
+        Connection actual = ReplicaRouting.read(this::connection);
+
+        //Then
+        assertThat(actual).isSameAs(primaryConnection);
+        assertThat(meterRegistry.get("customer.datasource.replica.lag").tag("pool", "replica-0").gauge().value())
+                .isNaN();
+    }
+
+    @Test
+    void cacheFillsGoToThePrimary() throws SQLException {
+        //Given
+        givenLag(replicaAConnection, 0);
+        givenLag(replicaBConnection, 0);
+        underTest.checkLag();
+
+        //When
+        Connection actual = ReplicaRouting.cacheFill(() -> ReplicaRouting.read(this::connection));
+
+        //Then
+        assertThat(actual).isSameAs(primaryConnection);
+        assertThat(connections("primary", "cache_fill")).isEqualTo(1);
+    }
+
+    @Test
+    void readsBeforeTheFirstLagCheckGoToThePrimary() {
+        //When
+        Connection actual = ReplicaRouting.read(this::connection);
+
+        //Then
+        assertThat(actual).isSameAs(primaryConnection);
+    }
+
+    @Test
+    void pinnedReadsStayOnThePrimary() throws SQLException {
+        //Given
+        givenLag(replicaAConnection, 0);
+        givenLag(replicaBConnection, 0);
+        underTest.checkLag();
+        ReplicaRouting.pinToPrimary();
+
+        //When
+        Connection actual = ReplicaRouting.read(this::connection);
+
+        //Then
+        assertThat(actual).isSameAs(primaryConnection);
+        assertThat(connections("primary", "sticky")).isEqualTo(1);
+    }
+
+    private Connection connection() {
+        try {
+            return underTest.getConnection();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private double connections(String pool, String reason) {
+        return meterRegistry.get("customer.datasource.connections")
+                .tags("pool", pool, "reason", reason)
+                .counter()
+                .count();
+    }
+
+    private static void givenLag(Connection connection, long lagMillis) throws SQLException {
+        Statement statement = mock(Statement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(anyString())).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getLong(1)).thenReturn(lagMillis);
+    }
+
+    // the lag query answers NULL when the replica has no streaming WAL receiver
+    private static void givenNotStreaming(Connection connection) throws SQLException {
+        givenLag(connection, 0);
+        ResultSet resultSet = connection.createStatement().executeQuery("");
+        when(resultSet.wasNull()).thenReturn(true);
+    }
+}
@@ -0,0 +1,69 @@
+package com.artchristian.customer;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TimedCustomerDaoTest {
+
+    @Mock private CustomerDao customerDao;
+    private SimpleMeterRegistry meterRegistry;
+    private TimedCustomerDao underTest;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        underTest = new TimedCustomerDao(customerDao, meterRegistry, "jdbc");
+    }
+
+    @Test
+    void selectCustomerByIdIsTimedPerDaoAndMethod() {
+        //Given
+        Customer customer = new Customer(1L, "Art", "art@gmail.com", 30);
+        when(customerDao.selectCustomerById(1L)).thenReturn(Optional.of(customer));
+
+        //When
+        Optional<Customer> actual = underTest.selectCustomerById(1L);
+
+        //Then
+        assertThat(actual).hasValue(customer);
+        Timer timer = meterRegistry.get(TimedCustomerDao.METRIC_NAME)
+                .tags("dao", "jdbc", "method", "selectCustomerById", "exception", "none")
+                .timer();
+        assertThat(timer.count()).isEqualTo(1);
+    }
+
+    @Test
+    void failedCallIsTimedWithException() {
+        //Given
+        Customer changes = new Customer();
+        changes.setId(1L);
+        changes.setEmail("mina@gmail.com");
+        doThrow(new DuplicateKeyException("email already taken")).when(customerDao).updateCustomer(changes);
+
+        //When
+        assertThatThrownBy(() -> underTest.updateCustomer(changes))
+                .isInstanceOf(DuplicateKeyException.class);
+
+        //Then
+        verify(customerDao).updateCustomer(changes);
+        Timer timer = meterRegistry.get(TimedCustomerDao.METRIC_NAME)
+                .tags("dao", "jdbc", "method", "updateCustomer", "exception", "DuplicateKeyException")
+                .timer();
+        assertThat(timer.count()).isEqualTo(1);
+    }
+}
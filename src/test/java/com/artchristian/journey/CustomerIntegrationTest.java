@@ -1,6 +1,7 @@
 package com.artchristian.journey;
 
 import com.artchristian.customer.Customer;
+import com.artchristian.customer.CustomerPage;
 import com.artchristian.customer.CustomerRegistrationRequest;
 import com.artchristian.customer.CustomerUpdateRequest;
 import com.github.javafaker.Faker;
@@ -86,6 +87,19 @@ public class CustomerIntegrationTest {
                 .isOk()
                 .expectBody(new ParameterizedTypeReference<Customer>() {})
                 .isEqualTo(expectedCustomer);
+
+        //page from just before the customer, with the default limit
+        CustomerPage page = webTestClient.get()
+                .uri(CUSTOMER_URI + "?after={after}", id - 1)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(CustomerPage.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(page.customers()).first().isEqualTo(expectedCustomer);
     }
 
     @Test
@@ -122,7 +136,7 @@ public class CustomerIntegrationTest {
                 .getResponseBody();
 
 
-        int id = allCustomers.stream()
+        long id = allCustomers.stream()
                 .filter(customer -> customer.getEmail().equals(email))
                 .map(Customer::getId)
                 .findFirst()
@@ -180,7 +194,7 @@ public class CustomerIntegrationTest {
                 .getResponseBody();
 
 
-        int id = allCustomers.stream()
+        long id = allCustomers.stream()
                 .filter(customer -> customer.getEmail().equals(email))
                 .map(Customer::getId)
                 .findFirst()